@@ -10,6 +10,7 @@ import requests
 from typing import List
 from pydantic import BaseModel                          
 import numpy as np
+import struct
 
 class EncodedImage(BaseModel):
     message: str
@@ -35,10 +36,46 @@ async def image_processing(student_id: str = Query(..., title="Student ID"), fil
         raise HTTPException(status_code=400, detail="Error processing file")
     
     
+class ProbeEncodings(BaseModel):
+    message: str
+    encodings: List[List[float]]
+
+@app.post("/api/v1/embed")
+async def embed_faces(file: UploadFile = File(...), full_resolution: bool = Query(False)):
+    # Only computes the probe embeddings; matching against the gallery happens in the main API.
+    # Classroom photos keep their resolution, since shrinking them would leave the faces at the
+    # back of the room too small to detect
+    try:
+        image = ip.process_image(file)
+        if not full_resolution:
+            image = cv2.resize(image, (265, 240))
+        img_rgb = cv2.cvtColor(image, cv2.COLOR_BGR2RGB)
+        face_locations = face_recognition.face_locations(img_rgb)
+        face_encodings = face_recognition.face_encodings(img_rgb, face_locations)
+        return ProbeEncodings(message="Success", encodings=[encoding.tolist() for encoding in face_encodings])
+    except Exception as e:
+        print("Error processing file")
+        raise HTTPException(status_code=500, detail="Error processing file")
+
+
 class FaceRecognitionRequest(BaseModel):
     matriculation_numbers: List[str]
     encodings : list
 
+def decode_gallery(payload: bytes):
+    # Layout written by GalleryWireFormat: int32 count, int32 dimension,
+    # count x (uint16 length + utf-8 id), then count*dimension float32, all little-endian
+    count, dimension = struct.unpack_from("<ii", payload, 0)
+    offset = 8
+    ids = []
+    for _ in range(count):
+        (length,) = struct.unpack_from("<H", payload, offset)
+        offset += 2
+        ids.append(payload[offset:offset + length].decode("utf-8"))
+        offset += length
+    vectors = np.frombuffer(payload, dtype="<f4", count=count * dimension, offset=offset)
+    return ids, list(vectors.reshape(count, dimension).astype(np.float64))
+
 @app.post("/api/v1/recognize")
 async def recognize_face(subject_id: str = Query(..., title="Subject Id"), file: UploadFile = File(...)):
     try:
@@ -47,12 +84,11 @@ async def recognize_face(subject_id: str = Query(..., title="Subject Id"), file:
         
         # Send request to the endpoint to get student encodings for this subject id
         # response = requests.get("http://main_app:8080/api/v1/encodings?code=" + subject_id)
-        response = requests.get("http://localhost:8080/api/v1/encodings?code=" + subject_id, verify=False)
+        response = requests.get("http://localhost:8080/api/v1/encodings?code=" + subject_id,
+                                headers={"Accept": "application/octet-stream"}, verify=False)
         response.raise_for_status()  # Raise HTTPError for bad status codes
         
-        val = response.json()
-        matriculation_numbers = val.get("matriculation_numbers", [])
-        encodings = val.get("encodings", [])
+        matriculation_numbers, encodings = decode_gallery(response.content)
         print(f"matriculation_numbers => {matriculation_numbers} ")
         image = ip.process_image(file)
         image = cv2.resize(image, (265, 240))
@@ -0,0 +1,88 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores one 128-d probe against a whole gallery with each kernel, for float32 rows
+ * (campus exact index) and int8 codes (subject galleries).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class GalleryScanBenchmark {
+    private static final int DIMENSION = 128;
+    private static final int BLOCK = 1024;
+
+    @Param({"50", "500", "5000", "50000"})
+    public int size;
+
+    @Param({"scalar", "vector"})
+    public String kernelName;
+
+    private DistanceKernel kernel;
+    private float[] floatGallery;
+    private float[] floatProbe;
+    private byte[] byteGallery;
+    private byte[] byteProbe;
+    private float[] floatScores;
+    private int[] intScores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        kernel = "vector".equals(kernelName) ? DistanceKernels.vector() : DistanceKernels.scalar();
+        if (kernel == null) {
+            throw new IllegalStateException("jdk.incubator.vector is not available");
+        }
+        Random random = new Random(42);
+        floatGallery = new float[size * DIMENSION];
+        byteGallery = new byte[size * DIMENSION];
+        for (int i = 0; i < floatGallery.length; i++) {
+            floatGallery[i] = (float) (random.nextGaussian() * 0.1);
+            byteGallery[i] = (byte) (random.nextInt(255) - 127);
+        }
+        floatProbe = new float[DIMENSION];
+        byteProbe = new byte[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            floatProbe[i] = (float) (random.nextGaussian() * 0.1);
+            byteProbe[i] = (byte) (random.nextInt(255) - 127);
+        }
+        floatScores = new float[Math.min(BLOCK, size)];
+        intScores = new int[Math.min(BLOCK, size)];
+    }
+
+    @Benchmark
+    public void float32Scan(Blackhole blackhole) {
+        for (int firstRow = 0; firstRow < size; firstRow += BLOCK) {
+            int rows = Math.min(BLOCK, size - firstRow);
+            kernel.squaredDistances(floatProbe, floatGallery, firstRow, rows, floatScores);
+            blackhole.consume(floatScores);
+        }
+    }
+
+    @Benchmark
+    public void int8Scan(Blackhole blackhole) {
+        for (int firstRow = 0; firstRow < size; firstRow += BLOCK) {
+            int rows = Math.min(BLOCK, size - firstRow);
+            kernel.squaredDistances(byteProbe, byteGallery, firstRow, rows, intScores);
+            blackhole.consume(intScores);
+        }
+    }
+}
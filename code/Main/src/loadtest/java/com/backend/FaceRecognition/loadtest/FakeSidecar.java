@@ -0,0 +1,61 @@
+package com.backend.FaceRecognition.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Stands in for the image-processing sidecar during load tests. Every image, on the enrollment
+ * and on the embedding endpoint alike, encodes to the same vector after a fixed delay, so a
+ * student enrolled through it is recognized in every probe, and the server's time is measured
+ * against a sidecar with known latency and no capacity limit.
+ * <p>
+ * Usage: {@code FakeSidecar [--port 8000] [--latency-ms 150] [--dimension 128]}
+ */
+public class FakeSidecar {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = MarkingLoadTest.options(args);
+        int port = Integer.parseInt(options.getOrDefault("port", "8000"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "150"));
+        int dimension = Integer.parseInt(options.getOrDefault("dimension", "128"));
+
+        double[] vector = new double[dimension];
+        Arrays.fill(vector, 0.05);
+        String encoding = Arrays.stream(vector).mapToObj(Double::toString).collect(Collectors.joining(",", "[", "]"));
+        byte[] embedResponse = ("{\"message\":\"Success\",\"encodings\":[" + encoding + "]}").getBytes(StandardCharsets.UTF_8);
+        byte[] enrollResponse = ("{\"message\":\"Success\",\"encoded_image\":" + encoding + "}").getBytes(StandardCharsets.UTF_8);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/v1/embed", exchange -> respond(exchange, latencyMillis, embedResponse));
+        server.createContext("/api/v1/image-processing", exchange -> respond(exchange, latencyMillis, enrollResponse));
+        server.start();
+        System.out.printf("Fake sidecar on port %d: %d ms per call, %d-d encodings%n", port, latencyMillis, dimension);
+    }
+
+    private static void respond(HttpExchange exchange, long latencyMillis, byte[] body) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            request.transferTo(OutputStream.nullOutputStream());
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+}
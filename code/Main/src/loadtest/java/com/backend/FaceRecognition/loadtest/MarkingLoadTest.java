@@ -0,0 +1,167 @@
+package com.backend.FaceRecognition.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives POST /api/v1/students/update from many concurrent markers and reports throughput and
+ * latency percentiles, to compare the platform-thread and virtual-thread execution modes.
+ * Each request carries the same image with a few unique trailing bytes, so the submission
+ * dedupe cache never answers it and every request goes through recognition and the database.
+ * <p>
+ * Comparing the two modes:
+ * <ol>
+ *   <li>Start {@link FakeSidecar} and point {@code faceRecognition.ip} and {@code faceRecognition.embed}
+ *   at it. Raise {@code faceRecognition.sidecar.max-concurrent-calls} (e.g. to 512) so the sidecar
+ *   bulkhead is not what is being measured.</li>
+ *   <li>Enroll one student and open a session for a subject they take; with the fake sidecar every
+ *   probe matches that student, so all but the first submission end as "Already marked student".</li>
+ *   <li>Run the application once with {@code spring.threads.virtual.enabled=false} and once with
+ *   {@code true}. Either set {@code attendance.admission.enabled=false}, to measure request handling on
+ *   its own, or raise {@code attendance.admission.session-queue-capacity} and {@code max-concurrent} to
+ *   at least the concurrency under test. Add {@code -Djdk.tracePinnedThreads=short} to the virtual run
+ *   to log any remaining pinning. Give the application more than one CPU: virtual threads are not
+ *   preempted, so with a single carrier the image preparation of queued requests holds back the
+ *   sidecar client's callbacks until its calls time out and the circuit opens.</li>
+ *   <li>Run it on its own host, or at least keep the probe image small; on a shared CPU the JPEG
+ *   decoding and re-encoding of each probe, not the thread model, sets the throughput.</li>
+ *   <li>Run this class against each with the same arguments, a different {@code --label} and the same
+ *   {@code --csv} file.</li>
+ * </ol>
+ * Usage: {@code MarkingLoadTest --base-url http://localhost:8080 --code ABCD --image face.jpg
+ * [--concurrency 1000] [--requests 20000] [--warmup 2000] [--label platform] [--csv results.csv]}
+ */
+public class MarkingLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        if (options.containsKey("help") || !options.containsKey("code") || !options.containsKey("image")) {
+            System.out.println("Usage: MarkingLoadTest --base-url http://localhost:8080 --code <attendance code> "
+                    + "--image <face.jpg> [--concurrency 1000] [--requests 20000] [--warmup 2000] "
+                    + "[--label platform] [--csv results.csv]");
+            return;
+        }
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "20000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2000"));
+        String label = options.getOrDefault("label", "run");
+        byte[] image = Files.readAllBytes(Path.of(options.get("image")));
+        URI uri = URI.create(baseUrl + "/api/v1/students/update?attendanceCode="
+                + URLEncoder.encode(options.get("code"), StandardCharsets.UTF_8));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        int total = warmup + requests;
+        long[] latencies = new long[requests];
+        AtomicInteger tickets = new AtomicInteger();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder errors = new LongAdder();
+        long[] measuredFrom = {0};
+
+        System.out.printf("%s: %d markers, %d warm-up + %d measured requests against %s%n",
+                label, concurrency, warmup, requests, uri);
+        try (ExecutorService markers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                markers.execute(() -> {
+                    int ticket;
+                    while ((ticket = tickets.getAndIncrement()) < total) {
+                        if (ticket == warmup) {
+                            measuredFrom[0] = System.nanoTime();
+                        }
+                        long started = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request(uri, image), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (ticket >= warmup) {
+                            latencies[ticket - warmup] = System.nanoTime() - started;
+                            if (status < 0) {
+                                errors.increment();
+                            } else {
+                                statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - measuredFrom[0]) / 1e9;
+
+        Arrays.sort(latencies);
+        double throughput = requests / seconds;
+        Map<Integer, Long> byStatus = new TreeMap<>();
+        statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+        System.out.printf("%s: %.1f req/s, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms, statuses %s, I/O errors %d%n",
+                label, throughput, percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                latencies[latencies.length - 1] / 1e6, byStatus, errors.sum());
+        if (options.containsKey("csv")) {
+            Path csv = Path.of(options.get("csv"));
+            if (!Files.exists(csv)) {
+                Files.writeString(csv, "label,concurrency,requests,throughput_rps,p50_ms,p90_ms,p99_ms,max_ms,errors\n");
+            }
+            Files.writeString(csv, String.format("%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d%n", label, concurrency, requests,
+                    throughput, percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                    latencies[latencies.length - 1] / 1e6, errors.sum()), StandardOpenOption.APPEND);
+        }
+    }
+
+    private static HttpRequest request(URI uri, byte[] image) {
+        String boundary = "----marking" + UUID.randomUUID();
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"image\"; filename=\"probe.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        // Decoders ignore bytes after the end of the image; they only make the upload's hash unique
+        byte[] unique = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, image, unique, tail)))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String name = args[i].substring(2);
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(name, hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+}
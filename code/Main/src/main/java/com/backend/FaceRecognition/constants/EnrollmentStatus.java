@@ -0,0 +1,8 @@
+package com.backend.FaceRecognition.constants;
+
+public enum EnrollmentStatus {
+    QUEUED,
+    PROCESSING,
+    SUCCEEDED,
+    FAILED
+}
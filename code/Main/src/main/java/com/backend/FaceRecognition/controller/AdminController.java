@@ -6,7 +6,11 @@ import com.backend.FaceRecognition.repository.NotificationRepository;
 import com.backend.FaceRecognition.services.authentication_service.AuthenticationService;
 import com.backend.FaceRecognition.services.authorization_service.admin.AdminService;
 import com.backend.FaceRecognition.services.authorization_service.super_admin.SuperUserService;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceRecognitionService;
+import com.backend.FaceRecognition.services.image_request_service.BulkEnrollmentService;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport;
 import com.backend.FaceRecognition.utils.GetListOfUsers;
+import com.backend.FaceRecognition.utils.IdentifyResponse;
 import com.backend.FaceRecognition.utils.NotificationRequest;
 import com.backend.FaceRecognition.utils.Response;
 import com.backend.FaceRecognition.utils.application_user.ApplicationUserRequest;
@@ -20,6 +24,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 
@@ -33,13 +38,18 @@ public class AdminController {
     private final AuthenticationService authenticationService;
     private final NotificationRepository notificationRepository;
     private final SuperUserService superUserService;
+    private final FaceRecognitionService faceRecognitionService;
+    private final BulkEnrollmentService bulkEnrollmentService;
 
     public AdminController(AdminService adminService, AuthenticationService authenticationService,
-                           NotificationRepository notificationRepository, SuperUserService superUserService) {
+                           NotificationRepository notificationRepository, SuperUserService superUserService,
+                           FaceRecognitionService faceRecognitionService, BulkEnrollmentService bulkEnrollmentService) {
+        this.bulkEnrollmentService = bulkEnrollmentService;
         this.adminService = adminService;
         this.authenticationService = authenticationService;
         this.notificationRepository = notificationRepository;
         this.superUserService = superUserService;
+        this.faceRecognitionService = faceRecognitionService;
     }
 
     @PostMapping("/notification")
@@ -85,6 +95,15 @@ public class AdminController {
         log.info("Register User in bulk");
         return authenticationService.register(file, token);
     }
+    /**
+     * Takes the raw ZIP as the request body rather than a multipart part, so the archive is
+     * streamed and not subject to the multipart size limits.
+     */
+    @PostMapping(value = "/enrollment/bulk", consumes = {"application/zip", "application/octet-stream"})
+    public ResponseEntity<BulkEnrollmentReport> bulkEnroll(InputStream archive) {
+        log.info("Bulk face enrollment started");
+        return bulkEnrollmentService.enroll(archive);
+    }
     @PostMapping("/set-to-admin")
     @PreAuthorize("hasRole('ROLE_SUPER_ADMIN')")
     public ResponseEntity<Response> setToAdmin(@RequestParam String id) {
@@ -121,6 +140,10 @@ public class AdminController {
     private ResponseEntity<Response> build(ResponseEntity<String> response) {
         return new ResponseEntity<>(new Response(response.getBody()), response.getStatusCode());
     }
+    @PostMapping("/identify")
+    public ResponseEntity<IdentifyResponse> identify(@RequestParam("image") MultipartFile file) {
+        return faceRecognitionService.identifyFace(file);
+    }
     @GetMapping("/subject/{subjectCode}")
     public ResponseEntity<SubjectResponse> getSubject(@PathVariable String subjectCode) {
         return adminService.getSubject(subjectCode);
@@ -0,0 +1,39 @@
+package com.backend.FaceRecognition.controller;
+
+import com.backend.FaceRecognition.services.attendance_service.AttendanceService;
+import com.backend.FaceRecognition.services.attendance_service.OfflineSyncService;
+import com.backend.FaceRecognition.utils.ClassroomAttendanceResponse;
+import com.backend.FaceRecognition.utils.HardwareSyncReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/hardware")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+@Slf4j
+public class HardwareController {
+    private final AttendanceService attendanceService;
+    private final OfflineSyncService offlineSyncService;
+
+    @PostMapping("/classroom")
+    public ResponseEntity<ClassroomAttendanceResponse> markClassroomAttendance(
+            @RequestParam String attendanceCode,
+            @RequestParam(name = "image") MultipartFile file) {
+        return attendanceService.markClassroomAttendance(attendanceCode, file);
+    }
+
+    /**
+     * Uploads what a kiosk recorded while offline: a ZIP with a manifest.json and the frames it names.
+     */
+    @PostMapping(value = "/sync", consumes = {"application/zip", "application/octet-stream"})
+    public ResponseEntity<HardwareSyncReport> syncOfflineBatch(InputStream archive) {
+        log.info("Offline attendance batch received");
+        return offlineSyncService.sync(archive);
+    }
+}
@@ -1,7 +1,8 @@
 package com.backend.FaceRecognition.controller;
 
 import com.backend.FaceRecognition.services.face_recognition_service.FaceRecognitionService;
-import com.backend.FaceRecognition.utils.EncodeImageListResponse;
+import com.backend.FaceRecognition.services.face_recognition_service.GalleryWireFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,7 +17,13 @@ public class ImagesController {
     }
 
     @GetMapping
-    public ResponseEntity<EncodeImageListResponse> getEncodingsBySubject(@RequestParam("code") String code) {
-        return faceRecognitionService.getEncodings(code);
+    public ResponseEntity<?> getEncodingsBySubject(
+            @RequestParam("code") String code,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (accept != null && accept.contains(GalleryWireFormat.MEDIA_TYPE)) {
+            return faceRecognitionService.getEncodingsBinary(code, ifNoneMatch);
+        }
+        return faceRecognitionService.getEncodings(code, ifNoneMatch);
     }
 }
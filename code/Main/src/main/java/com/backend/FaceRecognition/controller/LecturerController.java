@@ -10,10 +10,12 @@ import jakarta.servlet.http.HttpServletRequest;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
@@ -66,6 +68,11 @@ public class LecturerController {
             return ResponseEntity.badRequest().build();
         }
     }
+    @GetMapping(value = "/record/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getLiveRecord(@RequestParam String subjectCode,
+            @RequestHeader("Authorization") String bearer) {
+        return attendanceService.getLiveRecord(subjectCode, bearer);
+    }
     @GetMapping("/record-history")
     public ResponseEntity<AttendanceRecordHistoryResponse> getRecordHistory(
             @RequestParam String subjectCode,
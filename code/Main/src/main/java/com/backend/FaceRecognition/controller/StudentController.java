@@ -2,7 +2,9 @@ package com.backend.FaceRecognition.controller;
 
 import com.backend.FaceRecognition.entities.Student;
 import com.backend.FaceRecognition.services.attendance_service.AttendanceService;
+import com.backend.FaceRecognition.services.authorization_service.student_service.EnrollmentService;
 import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
+import com.backend.FaceRecognition.utils.EnrollmentJobResponse;
 import com.backend.FaceRecognition.utils.Response;
 import com.backend.FaceRecognition.utils.StudentAttendanceRecordResponse;
 import jakarta.annotation.security.PermitAll;
@@ -17,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/students")
@@ -27,13 +30,16 @@ import java.util.Optional;
 public class StudentController {
     private final StudentService studentService;
     private final AttendanceService attendanceService;
+    private final EnrollmentService enrollmentService;
     @PostMapping("/update")
-    public ResponseEntity<Response> updateAttendanceStatus(
+    public CompletableFuture<ResponseEntity<Response>> updateAttendanceStatus(
             @RequestParam String attendanceCode,
-            @RequestParam(name="image") MultipartFile file) {
-        ResponseEntity<String> response = attendanceService.updateAttendanceStatus(attendanceCode,
-                file);
-        return new ResponseEntity<>(new Response(response.getBody()), response.getStatusCode());
+            @RequestParam(name="image") MultipartFile file,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        // The upload's temporary file is kept until the async result is written
+        return attendanceService.submitAttendance(attendanceCode, file, idempotencyKey)
+                .thenApply(response -> new ResponseEntity<>(new Response(response.getBody()),
+                        response.getHeaders(), response.getStatusCode()));
     }
     @GetMapping("/print")
     public ResponseEntity<ByteArrayResource> printAttendanceRecord(@RequestHeader("Authorization") String bearer,
@@ -41,10 +47,14 @@ public class StudentController {
         return attendanceService.printAttendanceRecord(bearer,subjectCode);
     }
     @PostMapping("/image")
-    public ResponseEntity<Response> addStudentImage(@RequestParam("file") MultipartFile file,
+    public ResponseEntity<EnrollmentJobResponse> addStudentImage(@RequestParam("file") MultipartFile file,
             @RequestHeader("Authorization") String auth) {
-        ResponseEntity<String> response = studentService.addStudentImage(file, auth);
-        return build(response);
+        return enrollmentService.submit(file, auth);
+    }
+    @GetMapping("/image/jobs/{jobId}")
+    public ResponseEntity<EnrollmentJobResponse> getEnrollmentJob(@PathVariable String jobId,
+            @RequestHeader("Authorization") String auth) {
+        return enrollmentService.status(jobId, auth);
     }
     private ResponseEntity<Response> build(ResponseEntity<String> initial) {
         var resp = new Response(initial.getBody());
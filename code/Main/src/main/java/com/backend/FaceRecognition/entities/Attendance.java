@@ -7,7 +7,8 @@ import lombok.Data;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "attendance")
+@Table(name = "attendance", uniqueConstraints = @UniqueConstraint(name = "uk_attendance_student_subject_date",
+        columnNames = {"student_id", "subject_id", "date"}))
 @Data
 public class Attendance {
     @Id
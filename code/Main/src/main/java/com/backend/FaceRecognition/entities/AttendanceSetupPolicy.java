@@ -11,6 +11,10 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_attendance_setup_policy_code", columnList = "code"),
+        @Index(name = "idx_attendance_setup_policy_date", columnList = "attendanceDate")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class AttendanceSetupPolicy {
@@ -23,6 +27,12 @@ public class AttendanceSetupPolicy {
    private int duration;
    private LocalDate attendanceDate;
    private LocalDateTime attendanceDateTime;
+   // When the session was created; null for sessions created before this column existed
+   private LocalDateTime openedAt;
+   // Set once when the session is closed, together with its final counts
+   private LocalDateTime closedAt;
+   private Integer presentCount;
+   private Integer absentCount;
    @Builder
    public AttendanceSetupPolicy(String code, String subjectId, int duration, LocalDate attendanceDate, LocalDateTime attendanceDateTime) {
       this.code = code;
@@ -31,4 +41,11 @@ public class AttendanceSetupPolicy {
       this.attendanceDate = attendanceDate;
       this.attendanceDateTime = attendanceDateTime;
    }
+
+   @PrePersist
+   void onCreate() {
+      if (openedAt == null) {
+         openedAt = LocalDateTime.now();
+      }
+   }
 }
@@ -13,13 +13,36 @@ public class EncodedImages {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Integer id;
     private String matriculationNumber;
+    /**
+     * Serialized double[] written before packed storage existed. Cleared by
+     * EncodedImagesMigration once the row has a packed vector.
+     */
     @Lob
-    private double[] data;
+    @Column(name = "data")
+    private double[] legacyData;
+    @Convert(converter = PackedVectorConverter.class)
+    @Column(name = "vector")
+    private float[] vector;
 
     @Builder
-    public EncodedImages(String matriculationNumber, double[] data) {
+    public EncodedImages(String matriculationNumber, float[] vector) {
         this.matriculationNumber = matriculationNumber;
-        this.data = data;
+        this.vector = vector;
+    }
+
+    /**
+     * Returns the packed vector, falling back to the legacy column for rows the
+     * migration has not reached yet.
+     */
+    public float[] templateVector() {
+        if (vector != null || legacyData == null) {
+            return vector;
+        }
+        float[] converted = new float[legacyData.length];
+        for (int i = 0; i < legacyData.length; i++) {
+            converted[i] = (float) legacyData[i];
+        }
+        return converted;
     }
 
 }
@@ -0,0 +1,39 @@
+package com.backend.FaceRecognition.entities;
+
+import com.backend.FaceRecognition.constants.EnrollmentStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A face enrollment upload waiting for, or done with, encoding by the sidecar.
+ * The image is kept only until the job finishes.
+ */
+@Entity
+@Table(name = "enrollment_job")
+@Data
+@NoArgsConstructor
+public class EnrollmentJob {
+    @Id
+    private String id;
+    @Column(name = "matriculation_number")
+    private String matriculationNumber;
+    @Enumerated(EnumType.STRING)
+    private EnrollmentStatus status;
+    private String message;
+    @Column(name = "image")
+    private byte[] image;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public EnrollmentJob(String id, String matriculationNumber, byte[] image) {
+        this.id = id;
+        this.matriculationNumber = matriculationNumber;
+        this.image = image;
+        this.status = EnrollmentStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+}
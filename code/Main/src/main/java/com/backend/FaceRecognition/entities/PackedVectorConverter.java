@@ -0,0 +1,47 @@
+package com.backend.FaceRecognition.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Stores a face template as a packed float32 bytea instead of a serialized Java array.
+ * Layout (little-endian): 1 byte format version, 1 reserved byte, uint16 dimension,
+ * followed by dimension float32 components.
+ */
+@Converter
+public class PackedVectorConverter implements AttributeConverter<float[], byte[]> {
+    public static final byte VERSION_FLOAT32 = 1;
+    private static final int HEADER_BYTES = 4;
+
+    @Override
+    public byte[] convertToDatabaseColumn(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(VERSION_FLOAT32).put((byte) 0).putShort((short) vector.length);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    @Override
+    public float[] convertToEntityAttribute(byte[] packed) {
+        if (packed == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+        byte version = buffer.get();
+        if (version != VERSION_FLOAT32) {
+            throw new IllegalArgumentException("Unsupported packed vector version " + version);
+        }
+        buffer.get();
+        int dimension = Short.toUnsignedInt(buffer.getShort());
+        float[] vector = new float[dimension];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -57,6 +57,8 @@ public class InitializeBeans {
     private String recognizeEndpoint;
     @Value("${faceRecognition.ip}")
     private String imageProcessingEndpoint;
+    @Value("${faceRecognition.embed}")
+    private String embedEndpoint;
 
     @Bean
     public FaceRecognitionEndpoints initializeEndpoints() {
@@ -64,6 +66,7 @@ public class InitializeBeans {
         Map<String, String> endpointMap = new HashMap<>();
         endpointMap.put("ip", imageProcessingEndpoint);
         endpointMap.put("rec", recognizeEndpoint);
+        endpointMap.put("embed", embedEndpoint);
         log.info("Face Recognition Endpoints initialized.");
         return new FaceRecognitionEndpoints(endpointMap);
     }
@@ -2,7 +2,7 @@ package com.backend.FaceRecognition.helper;
 
 import com.backend.FaceRecognition.constants.AttendanceStatus;
 import com.backend.FaceRecognition.entities.Attendance;
-import com.backend.FaceRecognition.repository.AttendanceRepository;
+import com.backend.FaceRecognition.services.attendance_service.AttendanceLedger;
 import com.backend.FaceRecognition.utils.AttendanceStatsDTO;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -15,9 +15,9 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 @Service
 public class Utility {
-    private final AttendanceRepository attendanceRepository;
-    public Utility(AttendanceRepository attendanceRepository) {
-        this.attendanceRepository = attendanceRepository;
+    private final AttendanceLedger attendanceLedger;
+    public Utility(AttendanceLedger attendanceLedger) {
+        this.attendanceLedger = attendanceLedger;
     }
 
     public ResponseEntity<AttendanceStatsDTO> generateAttendanceStatistics(String... subjects){
@@ -28,7 +28,7 @@ public class Utility {
             return Arrays.stream(subjects).anyMatch(st-> st.equalsIgnoreCase(value));
         };
 
-        List<Attendance> attendanceHistory = attendanceRepository.findAll();
+        List<Attendance> attendanceHistory = attendanceLedger.allRecords();
         attendanceHistory  = attendanceHistory.stream()
                 .filter(v-> contains.apply(v.getSubjectId(),subjects)) //filter if is part of subject list
                 .collect(Collectors.toList());
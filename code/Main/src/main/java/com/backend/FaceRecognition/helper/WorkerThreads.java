@@ -0,0 +1,49 @@
+package com.backend.FaceRecognition.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for the application's worker pools that block on the sidecar or on JDBC.
+ * With {@code spring.threads.virtual.enabled} their workers are virtual threads, like Tomcat's
+ * request handling and the task scheduler in that mode; otherwise they are daemon platform
+ * threads. Either way the pool sizes still bound how much work runs at once.
+ * <p>
+ * Code these threads run uses a {@link java.util.concurrent.locks.ReentrantLock} instead of
+ * synchronized wherever it blocks on the sidecar or the database while holding the lock: on JDK 21
+ * a virtual thread that blocks inside a monitor pins its carrier thread. Monitors that only guard
+ * in-memory state are left as they are.
+ */
+@Component
+@Slf4j
+public class WorkerThreads {
+    private final boolean virtual;
+
+    public WorkerThreads(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        this.virtual = virtual;
+        log.info("Blocking work runs on {} threads", virtual ? "virtual" : "platform");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @param prefix thread name prefix; threads are numbered from 1
+     */
+    public ThreadFactory factory(String prefix) {
+        if (virtual) {
+            return Thread.ofVirtual().name(prefix + "-", 1).factory();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,9 +1,15 @@
 package com.backend.FaceRecognition.repository;
 
+import com.backend.FaceRecognition.constants.AttendanceStatus;
 import com.backend.FaceRecognition.entities.Attendance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 @Repository
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
@@ -13,4 +19,46 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     List<Attendance>  findByStudentIdAndSubjectId(String studentId, String subjectId);
     List<Attendance> findBySubjectId(String subjectId);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Attendance a SET a.status = :status WHERE a.subjectId = :subjectId AND a.date = :date " +
+            "AND a.studentId IN :studentIds AND a.status <> :status")
+    int updateStatusForStudents(@Param("subjectId") String subjectId, @Param("date") LocalDate date,
+                                @Param("studentIds") Collection<String> studentIds,
+                                @Param("status") AttendanceStatus status);
+
+    /**
+     * Marks one student present only if they are still absent, in a single statement, so
+     * concurrent submissions for the same student cannot both succeed.
+     *
+     * @return 1 if the student was marked, 0 if already present or there is no row to mark
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Attendance a SET a.status = com.backend.FaceRecognition.constants.AttendanceStatus.PRESENT " +
+            "WHERE a.studentId = :studentId AND a.subjectId = :subjectId AND a.date = :date " +
+            "AND a.status = com.backend.FaceRecognition.constants.AttendanceStatus.ABSENT")
+    int markPresent(@Param("studentId") String studentId, @Param("subjectId") String subjectId,
+                    @Param("date") LocalDate date);
+
+    boolean existsByStudentIdAndSubjectIdAndDate(String studentId, String subjectId, LocalDate date);
+
+    /**
+     * Sessions that have attendance rows but no setup policy, as (subjectId, date) pairs.
+     */
+    @Query("SELECT DISTINCT a.subjectId, a.date FROM Attendance a WHERE NOT EXISTS " +
+            "(SELECT p.id FROM AttendanceSetupPolicy p WHERE p.subjectId = a.subjectId AND p.attendanceDate = a.date)")
+    List<Object[]> findSessionsWithoutPolicy();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM attendance WHERE id IN (SELECT id FROM attendance WHERE status = :status LIMIT :limit)",
+            nativeQuery = true)
+    int deleteBatchByStatus(@Param("status") int status, @Param("limit") int limit);
+
+    @Query("SELECT a.studentId FROM Attendance a WHERE a.subjectId = :subjectId AND a.date = :date AND a.status = :status")
+    List<String> findStudentIdsBySubjectIdAndDateAndStatus(@Param("subjectId") String subjectId,
+                                                           @Param("date") LocalDate date,
+                                                           @Param("status") AttendanceStatus status);
+
 }
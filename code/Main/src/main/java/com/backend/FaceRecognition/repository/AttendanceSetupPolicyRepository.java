@@ -1,10 +1,17 @@
 package com.backend.FaceRecognition.repository;
 
 import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +20,34 @@ public interface AttendanceSetupPolicyRepository extends JpaRepository<Attendanc
     Optional<AttendanceSetupPolicy> findBySubjectIdAndAttendanceDate(String subjectId, LocalDate date);
     List<AttendanceSetupPolicy> findAllBySubjectId(String subjectId);
     Optional<AttendanceSetupPolicy> findByCode(String subjectCode);
+    List<AttendanceSetupPolicy> findAllByAttendanceDate(LocalDate date);
+    boolean existsByCodeAndAttendanceDate(String code, LocalDate date);
+    List<AttendanceSetupPolicy> findAllByCodeAndAttendanceDate(String code, LocalDate date);
+    boolean existsBySubjectIdAndAttendanceDate(String subjectId, LocalDate date);
+    List<AttendanceSetupPolicy> findAllBySubjectIdIn(Collection<String> subjectIds);
+
+    @Query("SELECT p FROM AttendanceSetupPolicy p WHERE p.closedAt IS NULL AND p.attendanceDate >= :since " +
+            "AND p.id > :afterId ORDER BY p.id")
+    List<AttendanceSetupPolicy> findUnclosedSince(@Param("since") LocalDate since, @Param("afterId") int afterId,
+                                                  Pageable page);
+
+    @Query("SELECT p FROM AttendanceSetupPolicy p WHERE p.closedAt IS NULL AND p.attendanceDate < :before " +
+            "AND p.id > :afterId ORDER BY p.id")
+    List<AttendanceSetupPolicy> findUnclosedBefore(@Param("before") LocalDate before, @Param("afterId") int afterId,
+                                                   Pageable page);
+
+    boolean existsBySubjectIdAndAttendanceDateAndClosedAtIsNotNull(String subjectId, LocalDate date);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttendanceSetupPolicy p SET p.closedAt = :closedAt, p.presentCount = :present, " +
+            "p.absentCount = :absent WHERE p.id = :id AND p.closedAt IS NULL")
+    int close(@Param("id") int id, @Param("closedAt") LocalDateTime closedAt,
+              @Param("present") int present, @Param("absent") int absent);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttendanceSetupPolicy p SET p.presentCount = :present, p.absentCount = :absent " +
+            "WHERE p.id = :id AND p.closedAt IS NOT NULL")
+    int updateClosedCounts(@Param("id") int id, @Param("present") int present, @Param("absent") int absent);
 }
@@ -1,6 +1,8 @@
 package com.backend.FaceRecognition.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.backend.FaceRecognition.entities.EncodedImages;
@@ -10,4 +12,8 @@ import java.util.List;
 public interface EncodedImagesRepository extends JpaRepository<EncodedImages, Integer> {
     List<EncodedImages> findAllByMatriculationNumber(String matriculationNumber);
     List<EncodedImages> findAllByMatriculationNumberIn(List<String> matriculationNumbers);
+    List<EncodedImages> findTop200ByVectorIsNullAndIdGreaterThanOrderByIdAsc(Integer id);
+    List<EncodedImages> findTop1000ByIdGreaterThanOrderByIdAsc(Integer id);
+    @Query("SELECT e.matriculationNumber FROM EncodedImages e GROUP BY e.matriculationNumber HAVING COUNT(e) > :limit")
+    List<String> findMatriculationNumbersWithMoreTemplatesThan(@Param("limit") long limit);
 }
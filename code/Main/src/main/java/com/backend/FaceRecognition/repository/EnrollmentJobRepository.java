@@ -0,0 +1,38 @@
+package com.backend.FaceRecognition.repository;
+
+import com.backend.FaceRecognition.constants.EnrollmentStatus;
+import com.backend.FaceRecognition.entities.EnrollmentJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EnrollmentJobRepository extends JpaRepository<EnrollmentJob, String> {
+    Optional<EnrollmentJob> findByIdAndMatriculationNumber(String id, String matriculationNumber);
+
+    @Query("SELECT j.id FROM EnrollmentJob j WHERE j.status IN :statuses ORDER BY j.createdAt")
+    List<String> findIdsByStatusIn(@Param("statuses") Collection<EnrollmentStatus> statuses);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EnrollmentJob j SET j.status = :status, j.updatedAt = :now WHERE j.id = :id")
+    int updateStatus(@Param("id") String id, @Param("status") EnrollmentStatus status, @Param("now") LocalDateTime now);
+
+    /**
+     * Records the final outcome and drops the stored image, which is no longer needed.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE EnrollmentJob j SET j.status = :status, j.message = :message, j.updatedAt = :now, j.image = NULL " +
+            "WHERE j.id = :id")
+    int complete(@Param("id") String id, @Param("status") EnrollmentStatus status,
+                 @Param("message") String message, @Param("now") LocalDateTime now);
+}
@@ -16,5 +16,12 @@ public interface StudentRepository extends JpaRepository<Student,String> {
     Set<Student> findAllStudentsBySubjectCode(@Param("subjectCode") String subjectCode); // Change the return type to Set<Student>
     @Query("SELECT DISTINCT s FROM Student s JOIN s.subjects subj WHERE subj.subjectCode = :subjectCode")
     ArrayList<Student> findAllStudentsBySubjectCodeArrayList(@Param("subjectCode") String subjectCode); // Change the return type to Set<Student>
+    @Query("SELECT s.matriculationNumber FROM Student s JOIN s.subjects subj WHERE subj.subjectCode = :subjectCode")
+    Set<String> findMatriculationNumbersBySubjectCode(@Param("subjectCode") String subjectCode);
+    @Query("SELECT subj.subjectCode FROM Student s JOIN s.subjects subj WHERE s.matriculationNumber = :matriculationNumber")
+    List<String> findSubjectCodesByMatriculationNumber(@Param("matriculationNumber") String matriculationNumber);
+    @Query("SELECT COUNT(s) > 0 FROM Student s JOIN s.subjects subj " +
+            "WHERE s.matriculationNumber = :matriculationNumber AND subj.subjectCode = :subjectCode")
+    boolean isEnrolled(@Param("matriculationNumber") String matriculationNumber, @Param("subjectCode") String subjectCode);
 
 }
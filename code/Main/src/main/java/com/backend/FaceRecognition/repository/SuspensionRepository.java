@@ -4,10 +4,16 @@ import com.backend.FaceRecognition.entities.Suspension;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SuspensionRepository extends JpaRepository<Suspension, Integer> {
 
     Optional<Suspension> findByStudentIdAndSubjectId(String studentId, String subjectId);
+
+    List<Suspension> findAllBySubjectId(String subjectId);
+
+    List<Suspension> findAllBySubjectIdAndStudentIdIn(String subjectId, Collection<String> studentIds);
 }
\ No newline at end of file
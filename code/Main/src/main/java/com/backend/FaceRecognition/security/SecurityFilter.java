@@ -1,5 +1,6 @@
 package com.backend.FaceRecognition.security;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -36,6 +37,9 @@ public class SecurityFilter {
                     .sessionManagement(managementConfigure -> managementConfigure.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                     .authorizeHttpRequests(authorizationManagerRequestMatcherRegistry ->
                             authorizationManagerRequestMatcherRegistry
+                                    // Async re-dispatches (the live attendance feed, queued attendance submissions) were authorized on the original request
+                                    .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                                    .permitAll()
                                     .requestMatchers("api/v1/auth/**")
                                     .permitAll()
                                     .requestMatchers("test")
@@ -52,12 +56,16 @@ public class SecurityFilter {
                                     .permitAll()
                                     .requestMatchers("/api/v1/students/update")
                                     .permitAll()
-                                    .requestMatchers("/api/v1/students/image")
+                                    .requestMatchers("/api/v1/students/image", "/api/v1/students/image/**")
                                     .authenticated()
                                     .requestMatchers("api/v1/super-admin/**")
                                     .hasRole("SUPER_ADMIN")
                                     .requestMatchers("api/v1/hardware/**")
                                     .hasAuthority("ROLE_HARDWARE")
+                                    .requestMatchers("/actuator/health", "/actuator/health/**")
+                                    .permitAll()
+                                    .requestMatchers("/actuator/**")
+                                    .hasAnyAuthority("ROLE_ADMIN","ROLE_SUPER_ADMIN")
                                     .requestMatchers("test/**")
                                     .permitAll()
                                     .anyRequest()
@@ -0,0 +1,150 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The attendance sessions that are open right now, keyed by attendance code. Sessions are
+ * registered when they are initialized, rebuilt from today's {@link AttendanceSetupPolicy}
+ * rows on startup, and removed by a {@link TimerWheel} when they expire. The same wheel hands
+ * each session to {@link SessionLifecycleService} to be closed once the close grace period
+ * has passed. Resolving a code is a single map lookup.
+ */
+@Component
+@Slf4j
+public class ActiveSessionRegistry {
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final AttendanceSessionCache attendanceSessionCache;
+    private final SessionLifecycleService sessionLifecycleService;
+    private final ConcurrentMap<String, Registration> sessions = new ConcurrentHashMap<>();
+    private final TimerWheel timerWheel;
+    @Value("${attendance.sessions.close-grace-ms:15000}")
+    private long closeGraceMillis;
+
+    public ActiveSessionRegistry(AttendanceSetupPolicyRepository attendanceSetupRepository,
+                                 AttendanceSessionCache attendanceSessionCache,
+                                 SessionLifecycleService sessionLifecycleService,
+                                 @Value("${attendance.sessions.tick-ms:1000}") long tickMillis,
+                                 @Value("${attendance.sessions.wheel-size:512}") int wheelSize) {
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.attendanceSessionCache = attendanceSessionCache;
+        this.sessionLifecycleService = sessionLifecycleService;
+        this.timerWheel = new TimerWheel("attendance-session-expiry", Duration.ofMillis(tickMillis), wheelSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        int restored = 0;
+        for (AttendanceSetupPolicy policy : attendanceSetupRepository.findAllByAttendanceDate(LocalDate.now())) {
+            if (expiresAt(policy).isAfter(now)) {
+                register(policy);
+                restored++;
+            }
+        }
+        log.info("Restored {} active attendance sessions", restored);
+    }
+
+    /**
+     * Tracks a newly initialized session until it expires and starts warming its working set.
+     * Sessions that are already over, or not for today, are ignored.
+     */
+    public void register(AttendanceSetupPolicy policy) {
+        LocalDateTime expiresAt = expiresAt(policy);
+        Duration remaining = Duration.between(LocalDateTime.now(), expiresAt);
+        if (remaining.isNegative() || remaining.isZero() || !LocalDate.now().equals(policy.getAttendanceDate())) {
+            return;
+        }
+        String code = policy.getCode();
+        ActiveSession session = new ActiveSession(policy.getId(), code, policy.getSubjectId(),
+                policy.getAttendanceDate(), expiresAt);
+        Registration registration = new Registration(session,
+                timerWheel.schedule(() -> expire(code), remaining),
+                timerWheel.schedule(() -> sessionLifecycleService.close(session.policyId(), code,
+                        session.subjectCode(), session.attendanceDate()), remaining.plusMillis(closeGraceMillis)));
+        Registration previous = sessions.put(code, registration);
+        if (previous != null) {
+            previous.expiry().cancel();
+            previous.close().cancel();
+        }
+        attendanceSessionCache.warm(code, session.subjectCode(), expiresAt);
+    }
+
+    /**
+     * @return the open session for the code; empty once it has expired, even if the wheel
+     * has not removed it yet
+     */
+    public Optional<ActiveSession> find(String code) {
+        Registration registration = code == null ? null : sessions.get(code);
+        if (registration == null || !registration.session().expiresAt().isAfter(LocalDateTime.now())
+                || !LocalDate.now().equals(registration.session().attendanceDate())) {
+            return Optional.empty();
+        }
+        return Optional.of(registration.session());
+    }
+
+    /**
+     * @return the open session of the subject, if it has one today
+     */
+    public Optional<ActiveSession> findBySubject(String subjectCode) {
+        return sessions.values().stream()
+                .map(Registration::session)
+                .filter(session -> session.subjectCode().equals(subjectCode))
+                .map(ActiveSession::code)
+                .map(this::find)
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    public boolean isActive(String code) {
+        return find(code).isPresent();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void expire(String code) {
+        sessions.computeIfPresent(code, (key, registration) ->
+                registration.session().expiresAt().isAfter(LocalDateTime.now()) ? registration : null);
+    }
+
+    public static LocalDateTime expiresAt(AttendanceSetupPolicy policy) {
+        return policy.getAttendanceDateTime().plusMinutes(policy.getDuration());
+    }
+
+    /**
+     * @return when the session started accepting marks; older rows without openedAt fall back
+     * to one duration before attendanceDateTime
+     */
+    public static LocalDateTime opensAt(AttendanceSetupPolicy policy) {
+        return policy.getOpenedAt() != null
+                ? policy.getOpenedAt()
+                : policy.getAttendanceDateTime().minusMinutes(policy.getDuration());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timerWheel.shutdown();
+    }
+
+    public record ActiveSession(int policyId, String code, String subjectCode, LocalDate attendanceDate,
+                                LocalDateTime expiresAt) {
+    }
+
+    private record Registration(ActiveSession session, TimerWheel.Timeout expiry, TimerWheel.Timeout close) {
+    }
+}
@@ -0,0 +1,316 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Live attendance for lecturers over Server-Sent Events. A session gets a feed when its first
+ * subscriber connects: the roster and current marks are read once, and from then on the
+ * present and absent counters are kept in memory from {@link AttendanceMarkedEvent}s, so
+ * watching a session costs nothing per refresh. Sessions nobody watches have no feed.
+ * <p>
+ * Events: {@code snapshot} on connect, {@code mark} per newly present student and
+ * {@code closed} with the final counts, after which the stream completes.
+ * <p>
+ * Every subscriber has its own queue of events, drained on a sender thread, so a slow client
+ * never holds up marking or the other subscribers. A subscriber with more than
+ * {@code attendance.feed.max-queued-events} events not yet written, or whose write has been blocked
+ * longer than {@code attendance.feed.send-timeout-ms}, is dropped from its feed. Its stream is
+ * completed once the blocked write returns, and the client can reconnect for a fresh snapshot.
+ * <p>
+ * Clients authenticate with the same {@code Authorization: Bearer} header as every other
+ * endpoint. The browser {@code EventSource} cannot set request headers, so web clients read the
+ * stream with {@code fetch()} or an EventSource implementation that accepts headers. Tokens are
+ * not accepted in the query string, where they would end up in access logs.
+ */
+@Component
+@Slf4j
+public class AttendanceFeed {
+    private final AttendanceLedger attendanceLedger;
+    private final ConcurrentMap<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final ExecutorService sender;
+    private final long closeGraceMillis;
+    private final int maxQueuedEvents;
+    private final long sendTimeoutNanos;
+
+    public AttendanceFeed(AttendanceLedger attendanceLedger, WorkerThreads workerThreads,
+                          @Value("${attendance.sessions.close-grace-ms:15000}") long closeGraceMillis,
+                          @Value("${attendance.feed.max-queued-events:1000}") int maxQueuedEvents,
+                          @Value("${attendance.feed.send-timeout-ms:30000}") long sendTimeoutMillis) {
+        this.attendanceLedger = attendanceLedger;
+        // A client whose write blocks keeps its sender thread until the write returns
+        this.sender = workerThreads.isVirtual()
+                ? Executors.newThreadPerTaskExecutor(workerThreads.factory("attendance-feed"))
+                : Executors.newCachedThreadPool(workerThreads.factory("attendance-feed"));
+        this.closeGraceMillis = closeGraceMillis;
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.sendTimeoutNanos = Duration.ofMillis(sendTimeoutMillis).toNanos();
+    }
+
+    /**
+     * Opens a stream on an active session. The stream times out when the session is closed.
+     */
+    public SseEmitter subscribe(ActiveSessionRegistry.ActiveSession session) {
+        long timeout = Duration.between(LocalDateTime.now(), session.expiresAt()).toMillis() + closeGraceMillis;
+        return subscribe(session, new SseEmitter(Math.max(timeout, closeGraceMillis)));
+    }
+
+    /**
+     * @throws RuntimeException if the session could not be read; the feed stays unseeded and
+     *                          the next subscriber reads it again
+     */
+    SseEmitter subscribe(ActiveSessionRegistry.ActiveSession session, SseEmitter emitter) {
+        String key = key(session.subjectCode(), session.attendanceDate());
+        Feed feed = feeds.computeIfAbsent(key, ignored -> new Feed());
+        feed.seed(() -> attendanceLedger.sessionRecord(session.subjectCode(), session.attendanceDate()));
+        Subscriber subscriber = new Subscriber(feed, emitter);
+        Runnable remove = () -> feed.subscribers.remove(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        feed.subscribers.add(subscriber);
+        subscriber.send("snapshot", feed.snapshot());
+        return emitter;
+    }
+
+    /**
+     * Runs once the marks are committed, so the feed never shows marks that are rolled back.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarked(AttendanceMarkedEvent event) {
+        Feed feed = feeds.get(key(event.subjectCode(), event.date()));
+        if (feed == null) {
+            return;
+        }
+        List<Mark> marks = feed.record(event.studentIds());
+        marks.forEach(mark -> broadcast(feed, "mark", mark));
+    }
+
+    /**
+     * Sends the final counts to every subscriber of the session and completes their streams.
+     */
+    public void closed(String subjectCode, LocalDate date, int present, int absent) {
+        Feed feed = feeds.remove(key(subjectCode, date));
+        if (feed == null) {
+            return;
+        }
+        broadcast(feed, "closed", new Counts(present, absent));
+        feed.subscribers.forEach(Subscriber::complete);
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.feed.heartbeat-ms:15000}")
+    void heartbeat() {
+        long now = System.nanoTime();
+        feeds.values().forEach(feed -> feed.subscribers.forEach(subscriber -> {
+            if (subscriber.blockedLongerThan(now, sendTimeoutNanos)) {
+                log.info("Dropping live attendance subscriber whose write has been blocked for over {} ms",
+                        Duration.ofNanos(sendTimeoutNanos).toMillis());
+                subscriber.drop();
+            } else {
+                subscriber.enqueue(emitter -> emitter.send(SseEmitter.event().comment("keep-alive")));
+            }
+        }));
+        feeds.values().removeIf(feed -> feed.subscribers.isEmpty() && feed.idleSince(Duration.ofMinutes(5)));
+    }
+
+    private void broadcast(Feed feed, String name, Object data) {
+        feed.subscribers.forEach(subscriber -> subscriber.send(name, data));
+    }
+
+    private static String key(String subjectCode, LocalDate date) {
+        return subjectCode + '|' + date;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        feeds.values().forEach(feed -> feed.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private interface Delivery {
+        void deliver(SseEmitter emitter) throws IOException;
+    }
+
+    /**
+     * Delivers events to one client in order. At most one sender thread drains the queue at a time.
+     */
+    private final class Subscriber {
+        private final Feed feed;
+        private final SseEmitter emitter;
+        private final Queue<Delivery> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        // System.nanoTime() when the current write started, 0 while no write is in progress
+        private volatile long writingSince;
+
+        Subscriber(Feed feed, SseEmitter emitter) {
+            this.feed = feed;
+            this.emitter = emitter;
+        }
+
+        void send(String name, Object data) {
+            enqueue(emitter -> emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON)));
+        }
+
+        void complete() {
+            enqueue(SseEmitter::complete);
+        }
+
+        void enqueue(Delivery delivery) {
+            if (queued.get() >= maxQueuedEvents) {
+                log.info("Dropping live attendance subscriber with {} events waiting", maxQueuedEvents);
+                drop();
+                return;
+            }
+            queue.add(delivery);
+            if (queued.getAndIncrement() == 0) {
+                sender.execute(this::drain);
+            }
+        }
+
+        /**
+         * Stops queueing events for this client. Completing the emitter waits for the blocked
+         * write, so it is queued behind it rather than done here.
+         */
+        void drop() {
+            if (feed.subscribers.remove(this)) {
+                queue.add(SseEmitter::complete);
+                if (queued.getAndIncrement() == 0) {
+                    sender.execute(this::drain);
+                }
+            }
+        }
+
+        boolean blockedLongerThan(long now, long nanos) {
+            long since = writingSince;
+            return since != 0 && now - since > nanos;
+        }
+
+        private void drain() {
+            do {
+                Delivery delivery = queue.poll();
+                writingSince = System.nanoTime();
+                try {
+                    delivery.deliver(emitter);
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; the container completes the emitter
+                    feed.subscribers.remove(this);
+                } finally {
+                    writingSince = 0;
+                }
+            } while (queued.decrementAndGet() > 0);
+        }
+    }
+
+    /**
+     * Seeding reads the roster from the database while holding the lock.
+     */
+    private static final class Feed {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Set<String> roster = new HashSet<>();
+        private final Set<String> present = new HashSet<>();
+        private boolean seeded;
+        private volatile long lastSubscribed = System.nanoTime();
+
+        /**
+         * Reads the session once. Marks recorded before seeding are kept, so none are lost
+         * between creating the feed and reading the database.
+         */
+        void seed(Supplier<List<Attendance>> records) {
+            lastSubscribed = System.nanoTime();
+            lock.lock();
+            try {
+                if (seeded) {
+                    return;
+                }
+                for (Attendance attendance : records.get()) {
+                    roster.add(attendance.getStudentId());
+                    if (attendance.getStatus() == AttendanceStatus.PRESENT) {
+                        present.add(attendance.getStudentId());
+                    }
+                }
+                present.retainAll(roster);
+                seeded = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Mark> record(Collection<String> studentIds) {
+            List<Mark> marks = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            lock.lock();
+            try {
+                for (String studentId : studentIds) {
+                    if (!seeded) {
+                        present.add(studentId);
+                    } else if (roster.contains(studentId) && present.add(studentId)) {
+                        marks.add(new Mark(studentId, now, present.size(), absent()));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            return marks;
+        }
+
+        Snapshot snapshot() {
+            lock.lock();
+            try {
+                return new Snapshot(present.size(), absent(), List.copyOf(present));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Present students are always part of the roster once seeded; the floor only guards
+         * against reporting a negative count should that ever stop holding.
+         */
+        private int absent() {
+            return Math.max(0, roster.size() - present.size());
+        }
+
+        boolean idleSince(Duration duration) {
+            return System.nanoTime() - lastSubscribed > duration.toNanos();
+        }
+    }
+
+    public record Snapshot(int present, int absent, List<String> presentStudents) {
+    }
+
+    public record Mark(String matriculationNumber, LocalDateTime markedAt, int present, int absent) {
+    }
+
+    public record Counts(int present, int absent) {
+    }
+}
@@ -0,0 +1,268 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceRepository;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes attendance in one of two storage modes ({@code attendance.storage.mode}).
+ * <ul>
+ *   <li>{@code dense}: every session gets one ABSENT row per enrolled student when it is
+ *   initialized, and marking flips the row to PRESENT.</li>
+ *   <li>{@code sparse}: a session is recorded only by its {@link AttendanceSetupPolicy} and
+ *   only PRESENT marks are stored. ABSENT is derived at read time as the subject's current
+ *   roster minus the students marked present.</li>
+ * </ul>
+ * Both modes return the same {@link Attendance} lists and {@link MarkResult}s to callers;
+ * derived rows have no id. A student who left a subject no longer appears as absent for its
+ * past sessions in sparse mode, but keeps any PRESENT marks.
+ * <p>
+ * Sparse mode also reads and marks correctly over ABSENT rows left from dense mode, so it can
+ * run before, or without, {@link SparseAttendanceMigration} deleting them.
+ */
+@Component
+@Slf4j
+public class AttendanceLedger {
+    private static final String INSERT_ROW =
+            "INSERT INTO attendance (student_id, subject_id, date, status) VALUES (?, ?, ?, ?)";
+    // Skips students who already have a row instead of failing, which would abort the caller's transaction
+    private static final String INSERT_PRESENT =
+            "INSERT INTO attendance (student_id, subject_id, date, status) SELECT student_id, ?, ?, ? " +
+            "FROM unnest(?::varchar[]) AS student_id ON CONFLICT DO NOTHING";
+
+    private final AttendanceRepository attendanceRepository;
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final StudentRepository studentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean sparse;
+    private final int rosterBatchSize;
+
+    public AttendanceLedger(AttendanceRepository attendanceRepository,
+                            AttendanceSetupPolicyRepository attendanceSetupRepository,
+                            StudentRepository studentRepository, JdbcTemplate jdbcTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${attendance.storage.mode:dense}") String mode,
+                            @Value("${attendance.storage.roster-batch-size:1000}") int rosterBatchSize) {
+        this.attendanceRepository = attendanceRepository;
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.studentRepository = studentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.sparse = "sparse".equalsIgnoreCase(mode);
+        this.rosterBatchSize = rosterBatchSize;
+        log.info("Attendance storage mode: {}", sparse ? "sparse" : "dense");
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Writes what a new session needs before students can mark: the ABSENT rows in dense
+     * mode, nothing in sparse mode. The rows go through one JDBC batch rather than saveAll,
+     * because Hibernate does not batch inserts of IDENTITY entities; with
+     * reWriteBatchedInserts on the connection URL the driver sends them as multi-row inserts.
+     */
+    public void openSession(String subjectCode, LocalDate date, Collection<String> roster) {
+        if (sparse || roster.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<String> students = List.copyOf(roster);
+        Date sqlDate = Date.valueOf(date);
+        jdbcTemplate.batchUpdate(INSERT_ROW, students, rosterBatchSize, (statement, studentId) -> {
+            statement.setString(1, studentId);
+            statement.setString(2, subjectCode);
+            statement.setDate(3, sqlDate);
+            statement.setInt(4, AttendanceStatus.ABSENT.ordinal());
+        });
+        log.info("Created {} attendance rows for {} in {} ms", students.size(), subjectCode,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public boolean hasSession(String subjectCode, LocalDate date) {
+        return sparse
+                ? attendanceSetupRepository.existsBySubjectIdAndAttendanceDate(subjectCode, date)
+                : !attendanceRepository.findBySubjectIdAndDate(subjectCode, date).isEmpty();
+    }
+
+    /**
+     * Marks one student present in a single statement. In sparse mode a session that was never
+     * opened, or a student not enrolled in the subject, gives NOT_OPEN as the missing row does
+     * in dense mode.
+     */
+    public MarkResult markPresent(String studentId, String subjectCode, LocalDate date) {
+        MarkResult result = mark(studentId, subjectCode, date);
+        if (result == MarkResult.MARKED) {
+            eventPublisher.publishEvent(new AttendanceMarkedEvent(subjectCode, date, List.of(studentId)));
+        }
+        return result;
+    }
+
+    private MarkResult mark(String studentId, String subjectCode, LocalDate date) {
+        if (sparse) {
+            if (!attendanceSetupRepository.existsBySubjectIdAndAttendanceDate(subjectCode, date)) {
+                return MarkResult.NOT_OPEN;
+            }
+            // No insert when a concurrent or earlier submission got there first, or the session was
+            // opened in dense mode and its ABSENT row is still there
+            if (studentRepository.isEnrolled(studentId, subjectCode)
+                    && insertPresent(subjectCode, date, List.of(studentId)) == 1) {
+                return MarkResult.MARKED;
+            }
+        }
+        if (attendanceRepository.markPresent(studentId, subjectCode, date) == 1) {
+            return MarkResult.MARKED;
+        }
+        // Nothing changed: either someone already marked the student or there is no row for today
+        return attendanceRepository.existsByStudentIdAndSubjectIdAndDate(studentId, subjectCode, date)
+                ? MarkResult.ALREADY_MARKED
+                : MarkResult.NOT_OPEN;
+    }
+
+    /**
+     * @return the number of students newly marked present
+     */
+    public int markAllPresent(String subjectCode, LocalDate date, Collection<String> studentIds) {
+        int marked = markAll(subjectCode, date, studentIds);
+        if (marked > 0) {
+            eventPublisher.publishEvent(new AttendanceMarkedEvent(subjectCode, date, List.copyOf(studentIds)));
+        }
+        return marked;
+    }
+
+    private int markAll(String subjectCode, LocalDate date, Collection<String> studentIds) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+        // Flips the rows that exist: every roster row in dense mode, ABSENT rows left from dense mode in sparse mode
+        int flipped = attendanceRepository.updateStatusForStudents(subjectCode, date, studentIds, AttendanceStatus.PRESENT);
+        if (!sparse || !attendanceSetupRepository.existsBySubjectIdAndAttendanceDate(subjectCode, date)) {
+            return flipped;
+        }
+        // Only enrolled students get a new row, as only they had one to flip in dense mode
+        Set<String> enrolled = new LinkedHashSet<>(studentIds);
+        enrolled.retainAll(studentRepository.findMatriculationNumbersBySubjectCode(subjectCode));
+        return enrolled.isEmpty() ? flipped : flipped + insertPresent(subjectCode, date, enrolled);
+    }
+
+    /**
+     * @return the number of rows inserted, leaving out students who already had one
+     */
+    private int insertPresent(String subjectCode, LocalDate date, Collection<String> studentIds) {
+        return jdbcTemplate.update(INSERT_PRESENT, subjectCode, Date.valueOf(date), AttendanceStatus.PRESENT.ordinal(),
+                studentIds.toArray(String[]::new));
+    }
+
+    public List<Attendance> sessionRecord(String subjectCode, LocalDate date) {
+        if (!sparse) {
+            return attendanceRepository.findBySubjectIdAndDate(subjectCode, date);
+        }
+        if (!attendanceSetupRepository.existsBySubjectIdAndAttendanceDate(subjectCode, date)) {
+            return List.of();
+        }
+        Set<String> present = new HashSet<>(attendanceRepository.findStudentIdsBySubjectIdAndDateAndStatus(
+                subjectCode, date, AttendanceStatus.PRESENT));
+        return derive(subjectCode, date, studentRepository.findMatriculationNumbersBySubjectCode(subjectCode), present);
+    }
+
+    public List<Attendance> studentRecord(String studentId) {
+        if (!sparse) {
+            return attendanceRepository.findByStudentId(studentId);
+        }
+        List<Attendance> marks = attendanceRepository.findByStudentId(studentId);
+        Set<SessionKey> present = new HashSet<>();
+        marks.forEach(mark -> present.add(new SessionKey(mark.getSubjectId(), mark.getDate())));
+        List<Attendance> result = new ArrayList<>(marks);
+        for (SessionKey session : sessions(attendanceSetupRepository.findAllBySubjectIdIn(
+                studentRepository.findSubjectCodesByMatriculationNumber(studentId)))) {
+            if (!present.contains(session)) {
+                result.add(new Attendance(studentId, session.subjectCode(), session.date(), AttendanceStatus.ABSENT));
+            }
+        }
+        return result;
+    }
+
+    public List<Attendance> subjectRecord(String subjectCode) {
+        if (!sparse) {
+            return attendanceRepository.findBySubjectId(subjectCode);
+        }
+        return deriveAll(attendanceSetupRepository.findAllBySubjectId(subjectCode),
+                attendanceRepository.findBySubjectId(subjectCode));
+    }
+
+    public List<Attendance> allRecords() {
+        if (!sparse) {
+            return attendanceRepository.findAll();
+        }
+        return deriveAll(attendanceSetupRepository.findAll(), attendanceRepository.findAll());
+    }
+
+    private List<Attendance> deriveAll(List<AttendanceSetupPolicy> policies, List<Attendance> marks) {
+        Map<SessionKey, Set<String>> presentBySession = new HashMap<>();
+        for (Attendance mark : marks) {
+            if (mark.getStatus() != AttendanceStatus.PRESENT) {
+                // An ABSENT row not yet removed by the migration
+                continue;
+            }
+            presentBySession.computeIfAbsent(new SessionKey(mark.getSubjectId(), mark.getDate()), key -> new HashSet<>())
+                    .add(mark.getStudentId());
+        }
+        Map<String, Set<String>> rosters = new HashMap<>();
+        List<Attendance> result = new ArrayList<>();
+        for (SessionKey session : sessions(policies)) {
+            Set<String> roster = rosters.computeIfAbsent(session.subjectCode(),
+                    studentRepository::findMatriculationNumbersBySubjectCode);
+            result.addAll(derive(session.subjectCode(), session.date(), roster,
+                    presentBySession.getOrDefault(session, Set.of())));
+        }
+        return result;
+    }
+
+    private static List<Attendance> derive(String subjectCode, LocalDate date, Set<String> roster, Set<String> present) {
+        List<Attendance> result = new ArrayList<>(roster.size());
+        for (String studentId : roster) {
+            result.add(new Attendance(studentId, subjectCode, date,
+                    present.contains(studentId) ? AttendanceStatus.PRESENT : AttendanceStatus.ABSENT));
+        }
+        for (String studentId : present) {
+            if (!roster.contains(studentId)) {
+                result.add(new Attendance(studentId, subjectCode, date, AttendanceStatus.PRESENT));
+            }
+        }
+        return result;
+    }
+
+    private static Set<SessionKey> sessions(Collection<AttendanceSetupPolicy> policies) {
+        Set<SessionKey> sessions = new LinkedHashSet<>();
+        policies.forEach(policy -> sessions.add(new SessionKey(policy.getSubjectId(), policy.getAttendanceDate())));
+        return sessions;
+    }
+
+    public enum MarkResult {
+        MARKED, ALREADY_MARKED, NOT_OPEN
+    }
+
+    private record SessionKey(String subjectCode, LocalDate date) {
+    }
+}
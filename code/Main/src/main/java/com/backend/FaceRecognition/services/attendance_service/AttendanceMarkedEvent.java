@@ -0,0 +1,13 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Published by {@link AttendanceLedger} after students are marked present. The ids may include
+ * students who were already present; listeners that count must de-duplicate. Marks made inside a
+ * transaction are only final once it commits, so listeners should use
+ * {@code @TransactionalEventListener(fallbackExecution = true)}.
+ */
+public record AttendanceMarkedEvent(String subjectCode, LocalDate date, Collection<String> studentIds) {
+}
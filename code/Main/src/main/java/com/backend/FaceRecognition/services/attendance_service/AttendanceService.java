@@ -5,7 +5,9 @@ import com.backend.FaceRecognition.entities.*;
 import com.backend.FaceRecognition.repository.AttendanceRepository;
 import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
 import com.backend.FaceRecognition.repository.SuspensionRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
 import com.backend.FaceRecognition.services.face_recognition_service.FaceRecognitionService;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarUnavailableException;
 import com.backend.FaceRecognition.services.jwt_service.JwtService;
 import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
 import com.backend.FaceRecognition.services.subject.SubjectService;
@@ -27,6 +29,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -35,6 +38,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 @Service
 @Slf4j
@@ -48,6 +52,14 @@ public class AttendanceService {
     private final StudentService studentService;
     private final SuspensionRepository suspensionRepository;
     private final ObjectMapper objectMapper;
+    private final RecognitionDeduplicator recognitionDeduplicator;
+    private final AttendanceSessionCache attendanceSessionCache;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final WriteBehindMarker writeBehindMarker;
+    private final AttendanceLedger attendanceLedger;
+    private final SessionLifecycleService sessionLifecycleService;
+    private final AttendanceFeed attendanceFeed;
+    private final MarkingAdmission markingAdmission;
 
     public ResponseEntity<InitializeAttendanceResponse> initializeAttendance(String subjectCode, String authorization, int duration) {
         log.info("Ïnitializing Attendance code => {}, duration => {}",subjectCode,duration);
@@ -94,16 +106,11 @@ public class AttendanceService {
         }
         Set<Student> allPossibleAttendees = studentService.getAllStudentsOfferingCourse(subjectCode);
         LocalDate localDate = LocalDate.now();
-        List<Attendance> studentAttendance = allPossibleAttendees.stream()
-                .map(student -> new Attendance(student.getMatriculationNumber(),
-                        subject.getSubjectCode(),
-                        localDate,
-                        AttendanceStatus.ABSENT))
-                .toList();
+        List<String> roster = allPossibleAttendees.stream().map(Student::getMatriculationNumber).toList();
         log.info("Setting these students to absent {}",allPossibleAttendees);
         log.info("Build policy");
         AttendanceSetupPolicy setup = AttendanceSetupPolicy.builder()
-                .code(UniqueCodeGenerator.generateCode(4))
+                .code(newSessionCode(4, localDate))
                 .attendanceDateTime(LocalDateTime.now())
                 .duration(duration)
                 .subjectId(subjectCode)
@@ -111,7 +118,8 @@ public class AttendanceService {
                 .attendanceDateTime(LocalDateTime.now().plusMinutes(duration))
                 .build();
         setup = attendanceSetupRepository.save(setup);
-        attendanceRepository.saveAll(studentAttendance);
+        attendanceLedger.openSession(subject.getSubjectCode(), localDate, roster);
+        activeSessionRegistry.register(setup);
         log.info("Returning Success response");
         return new ResponseEntity<>(InitializeAttendanceResponse.builder()
                 .status("SUCCESS")
@@ -129,8 +137,7 @@ public class AttendanceService {
     public ResponseEntity<String> initializeAttendance(String subjectCode, String authorization, int duration, LocalDate date) {
         log.info("Initializing attendance for subject code: {}, date: {}, duration: {}", subjectCode, date, duration);
 
-        List<Attendance> attendances = attendanceRepository.findBySubjectIdAndDate(subjectCode, date);
-        if (!attendances.isEmpty()) {
+        if (attendanceLedger.hasSession(subjectCode, date)) {
             log.warn("Attendance already initialized for subject code: {} on date: {}", subjectCode, date);
             return ResponseEntity.badRequest().body("Attendance already initialized");
         }
@@ -156,15 +163,10 @@ public class AttendanceService {
         }
 
         Set<Student> allPossibleAttendees = new HashSet<>(studentService.getAllStudentsOfferingCourse2(subjectCode));
-        List<Attendance> studentAttendance = allPossibleAttendees.stream()
-                .map(student -> new Attendance(student.getMatriculationNumber(),
-                        subject.getSubjectCode(),
-                        date,
-                        AttendanceStatus.ABSENT))
-                .toList();
+        List<String> roster = allPossibleAttendees.stream().map(Student::getMatriculationNumber).toList();
 
         AttendanceSetupPolicy setup = AttendanceSetupPolicy.builder()
-                .code(UniqueCodeGenerator.generateCode(10))
+                .code(newSessionCode(10, date))
                 .duration(duration)
                 .subjectId(subjectCode)
                 .attendanceDate(date)
@@ -174,35 +176,69 @@ public class AttendanceService {
         setup = attendanceSetupRepository.save(setup);
         log.info("Attendance setup created with code: {}", setup.getCode());
 
-        attendanceRepository.saveAll(studentAttendance);
+        attendanceLedger.openSession(subject.getSubjectCode(), date, roster);
         log.info("Student attendance records saved for subject code: {}", subjectCode);
+        sessionLifecycleService.invalidate(subjectCode, date);
+        activeSessionRegistry.register(setup);
 
         return new ResponseEntity<>("code=" + setup.getCode(), HttpStatus.OK);
     }
 
 
+    /**
+     * Passes a submission through {@link MarkingAdmission}. Codes that are not open are answered
+     * straight away, so they never take a place in a session queue.
+     */
+    public CompletableFuture<ResponseEntity<String>> submitAttendance(String attendanceCode, MultipartFile multipartFile,
+                                                                      String idempotencyKey) {
+        if (!activeSessionRegistry.isActive(attendanceCode)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(inactiveSessionMessage(attendanceCode)));
+        }
+        return markingAdmission.submit(attendanceCode,
+                () -> updateAttendanceStatus(attendanceCode, multipartFile, idempotencyKey));
+    }
 
-    public ResponseEntity<String> updateAttendanceStatus(String attendanceCode, MultipartFile multipartFile) {
+    /**
+     * Marks the student recognized in the upload as present. Retries of the same submission, by
+     * Idempotency-Key or identical image, get the original outcome without another recognition.
+     */
+    public ResponseEntity<String> updateAttendanceStatus(String attendanceCode, MultipartFile multipartFile,
+                                                         String idempotencyKey) {
         log.info("Updating attendance status: attendanceCode={}", attendanceCode);
-        Optional<AttendanceSetupPolicy> attendanceSetup = attendanceSetupRepository.findAll().stream()
-                .filter(policy -> policy.getAttendanceDate().equals(LocalDate.now()) &&
-                        policy.getAttendanceDateTime().plusMinutes(policy.getDuration()).isAfter(LocalDateTime.now()))
-                .findAny();
-        if (attendanceSetup.isEmpty()) {
-            log.warn("No attendance setup found for today.");
-            return ResponseEntity.badRequest().body("Attendance is not initialized yet");
-        }
-        AttendanceSetupPolicy policy = attendanceSetup.get();
-        if (LocalDateTime.now().isAfter(policy.getAttendanceDateTime().plusMinutes(policy.getDuration()))) {
-            log.warn("Attendance marking time has expired.");
-            return ResponseEntity.badRequest().body("Time Expired");
-        }
-        String subjectCode = policy.getSubjectId();
-        Optional<Subject> subjectOptional = subjectService.findSubjectByCode(subjectCode);
-        if (subjectOptional.isEmpty()) {
-            log.warn("Subject not found for code: {}", subjectCode);
-            return new ResponseEntity<>("Subject not found", HttpStatus.BAD_REQUEST);
+        Optional<ActiveSessionRegistry.ActiveSession> session = activeSessionRegistry.find(attendanceCode);
+        if (session.isEmpty()) {
+            return ResponseEntity.badRequest().body(inactiveSessionMessage(attendanceCode));
         }
+        String subjectCode = session.get().subjectCode();
+        return recognitionDeduplicator.deduplicate(attendanceCode, idempotencyKey, multipartFile,
+                () -> recognizeAndMark(attendanceCode, subjectCode, multipartFile));
+    }
+
+    /**
+     * Only reached for codes that are not open, so the database lookup is off the marking path.
+     */
+    private String inactiveSessionMessage(String attendanceCode) {
+        if (attendanceCode != null && attendanceSetupRepository.existsByCodeAndAttendanceDate(attendanceCode, LocalDate.now())) {
+            log.warn("Attendance marking time has expired for code {}", attendanceCode);
+            return "Time Expired";
+        }
+        log.warn("No attendance session open for code {}", attendanceCode);
+        return "Attendance is not initialized yet";
+    }
+
+    /**
+     * Codes are looked up by code and date, so a new code must not clash with an open session
+     * or with any session already held that day, closed ones included.
+     */
+    private String newSessionCode(int length, LocalDate date) {
+        String code;
+        do {
+            code = UniqueCodeGenerator.generateCode(length);
+        } while (activeSessionRegistry.isActive(code) || attendanceSetupRepository.existsByCodeAndAttendanceDate(code, date));
+        return code;
+    }
+
+    private ResponseEntity<String> recognizeAndMark(String attendanceCode, String subjectCode, MultipartFile multipartFile) {
         try {
             ResponseEntity<Student> matriculationNumberResponse = faceRecognitionService.recognizeFace(multipartFile, subjectCode);
             Student student = matriculationNumberResponse.getBody();
@@ -210,24 +246,38 @@ public class AttendanceService {
                 log.warn("Student not recognized.");
                 return new ResponseEntity<>("Student not recognized", HttpStatus.NOT_FOUND);
             }
-            Optional<Suspension> isSuspended = suspensionRepository.findByStudentIdAndSubjectId(student.getMatriculationNumber(), subjectCode);
-            if (isSuspended.isPresent()) {
-                log.warn("Student is suspended.");
-                return new ResponseEntity<>("Student suspended", HttpStatus.FORBIDDEN);
+            Optional<WriteBehindMarker.Outcome> decided =
+                    writeBehindMarker.mark(attendanceCode, LocalDate.now(), student.getMatriculationNumber());
+            if (decided.isPresent()) {
+                return markingResponse(decided.get(), student.getMatriculationNumber());
             }
-            Attendance attendance = attendanceRepository.findByStudentIdAndSubjectIdAndDate(student.getMatriculationNumber(), subjectCode, LocalDate.now());
-            if (attendance == null) {
-                log.warn("Attendance record not found for studentId: {} and subjectId: {}", student.getMatriculationNumber(), subjectCode);
+            Optional<AttendanceSessionCache.SessionState> session = attendanceSessionCache.get(attendanceCode);
+            if (session.isPresent() && !session.get().roster().contains(student.getMatriculationNumber())) {
+                log.warn("Student {} is not enrolled in {}", student.getMatriculationNumber(), subjectCode);
                 return new ResponseEntity<>("Cannot mark attendance anymore", HttpStatus.FORBIDDEN);
             }
-            if (attendance.getStatus() == AttendanceStatus.PRESENT) {
+            boolean isSuspended = session.isPresent()
+                    ? session.get().suspended().contains(student.getMatriculationNumber())
+                    : suspensionRepository.findByStudentIdAndSubjectId(student.getMatriculationNumber(), subjectCode).isPresent();
+            if (isSuspended) {
+                log.warn("Student is suspended.");
+                return new ResponseEntity<>("Student suspended", HttpStatus.FORBIDDEN);
+            }
+            AttendanceLedger.MarkResult result =
+                    attendanceLedger.markPresent(student.getMatriculationNumber(), subjectCode, LocalDate.now());
+            if (result == AttendanceLedger.MarkResult.ALREADY_MARKED) {
                 log.warn("Attendance already marked for studentId: {}", student.getMatriculationNumber());
                 return new ResponseEntity<>("Already marked student", HttpStatus.CONFLICT);
             }
-            attendance.setStatus(AttendanceStatus.PRESENT);
-            attendanceRepository.save(attendance);
+            if (result == AttendanceLedger.MarkResult.NOT_OPEN) {
+                log.warn("Attendance record not found for studentId: {} and subjectId: {}", student.getMatriculationNumber(), subjectCode);
+                return new ResponseEntity<>("Cannot mark attendance anymore", HttpStatus.FORBIDDEN);
+            }
             log.info("Attendance successfully marked for studentId: {}", student.getMatriculationNumber());
             return new ResponseEntity<>("Successfully marked attendance: student Id=" + student.getMatriculationNumber(), HttpStatus.OK);
+        } catch (SidecarUnavailableException ex) {
+            log.warn("Face recognition unavailable: {}", ex.getMessage());
+            return new ResponseEntity<>("Face recognition is temporarily unavailable, try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
         } catch (HttpClientErrorException | HttpServerErrorException ex) {
             if (ex.getStatusCode().is4xxClientError()) {
                 log.error("Client error occurred: {}", ex.getMessage());
@@ -243,6 +293,85 @@ public class AttendanceService {
         return ResponseEntity.badRequest().build();
     }
 
+    private ResponseEntity<String> markingResponse(WriteBehindMarker.Outcome outcome, String studentId) {
+        return switch (outcome) {
+            case MARKED -> {
+                log.info("Attendance successfully marked for studentId: {}", studentId);
+                yield new ResponseEntity<>("Successfully marked attendance: student Id=" + studentId, HttpStatus.OK);
+            }
+            case PENDING -> new ResponseEntity<>("Attendance recorded, saving is delayed: student Id=" + studentId,
+                    HttpStatus.ACCEPTED);
+            case ALREADY_MARKED -> new ResponseEntity<>("Already marked student", HttpStatus.CONFLICT);
+            case SUSPENDED -> new ResponseEntity<>("Student suspended", HttpStatus.FORBIDDEN);
+            case NOT_ENROLLED -> new ResponseEntity<>("Cannot mark attendance anymore", HttpStatus.FORBIDDEN);
+            case FAILED -> new ResponseEntity<>("Attendance could not be saved, try again shortly",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        };
+    }
+
+    /**
+     * Marks every student recognized in a single classroom photo as present.
+     * Recognition runs before any database work; the matched students are then
+     * updated with one bulk statement in its own transaction.
+     */
+    public ResponseEntity<ClassroomAttendanceResponse> markClassroomAttendance(String attendanceCode, MultipartFile multipartFile) {
+        log.info("Marking classroom attendance: attendanceCode={}", attendanceCode);
+        Optional<ActiveSessionRegistry.ActiveSession> active = activeSessionRegistry.find(attendanceCode);
+        if (active.isEmpty()) {
+            return ResponseEntity.badRequest().body(ClassroomAttendanceResponse.builder()
+                    .message(inactiveSessionMessage(attendanceCode)).build());
+        }
+        String subjectCode = active.get().subjectCode();
+        try {
+            FaceRecognitionService.ClassroomRecognition recognition =
+                    faceRecognitionService.recognizeClassroom(multipartFile, subjectCode);
+            List<String> recognized = recognition.matches().stream()
+                    .map(FaceGallery.Match::matriculationNumber)
+                    .sorted()
+                    .toList();
+            if (recognized.isEmpty()) {
+                return new ResponseEntity<>(ClassroomAttendanceResponse.builder()
+                        .message("No student recognized")
+                        .facesDetected(recognition.facesDetected())
+                        .recognized(List.of())
+                        .suspended(List.of())
+                        .build(), HttpStatus.NOT_FOUND);
+            }
+            Optional<AttendanceSessionCache.SessionState> session = attendanceSessionCache.get(attendanceCode);
+            Set<String> suspended = session.isPresent()
+                    ? recognized.stream().filter(session.get().suspended()::contains).collect(Collectors.toSet())
+                    : suspensionRepository.findAllBySubjectIdAndStudentIdIn(subjectCode, recognized).stream()
+                            .map(Suspension::getStudentId)
+                            .collect(Collectors.toSet());
+            List<String> toMark = recognized.stream().filter(id -> !suspended.contains(id)).toList();
+            int updated = attendanceLedger.markAllPresent(subjectCode, LocalDate.now(), toMark);
+            writeBehindMarker.markedElsewhere(attendanceCode, toMark);
+            log.info("Classroom photo for {}: {} faces, {} recognized, {} suspended, {} newly marked",
+                    subjectCode, recognition.facesDetected(), recognized.size(), suspended.size(), updated);
+            return ResponseEntity.ok(ClassroomAttendanceResponse.builder()
+                    .message("Marked attendance for recognized students")
+                    .facesDetected(recognition.facesDetected())
+                    .recognized(toMark)
+                    .suspended(suspended.stream().sorted().toList())
+                    .newlyMarked(updated)
+                    .build());
+        } catch (SidecarUnavailableException ex) {
+            log.warn("Face recognition unavailable: {}", ex.getMessage());
+            return new ResponseEntity<>(ClassroomAttendanceResponse.builder()
+                    .message("Face recognition is temporarily unavailable, try again shortly").build(),
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (HttpClientErrorException | HttpServerErrorException ex) {
+            log.error("Sidecar error while processing classroom photo: {}", ex.getMessage());
+            return new ResponseEntity<>(ClassroomAttendanceResponse.builder()
+                    .message("Error when processing file occurred").build(),
+                    ex.getStatusCode().is4xxClientError() ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            log.error("Unexpected error occurred: ", e);
+            return ResponseEntity.badRequest().body(ClassroomAttendanceResponse.builder()
+                    .message("Failed to mark attendance").build());
+        }
+    }
+
     public ResponseEntity<AttendanceRecordResponse> getRecord(String subjectCode, LocalDate date, int sort,
             String bearer) {
         log.info("Received request to get attendance record for subjectCode: {}, date: {}, sort: {}, bearer: {}",
@@ -266,31 +395,57 @@ public class AttendanceService {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
 
-        // Fetch the attendance records
-        List<Attendance> studentAttendance = attendanceRepository.findBySubjectIdAndDate(subjectCode, date);
-        if (studentAttendance.isEmpty()) {
+        // Closed sessions are served from the cache until the subject's roster changes
+        AttendanceRecordResponse attendanceRecordResponse = sessionLifecycleService.record(subjectCode, date, () -> {
+            List<Attendance> studentAttendance = attendanceLedger.sessionRecord(subjectCode, date);
+            return studentAttendance.isEmpty() ? null : buildAttendanceRecordResponse(subject, date, studentAttendance);
+        });
+        if (attendanceRecordResponse == null) {
             log.info("No attendance records found for subjectCode: {}, date: {}", subjectCode, date);
             return ResponseEntity.notFound().build();
         }
 
         // Sort the records based on the provided parameter
         switch (sort) {
-            case 1 -> studentAttendance = filterAttendanceByStatus(studentAttendance, AttendanceStatus.PRESENT);
-            case 2 -> studentAttendance = filterAttendanceByStatus(studentAttendance, AttendanceStatus.ABSENT);
+            case 1 -> attendanceRecordResponse = filterRecordByStatus(attendanceRecordResponse, AttendanceStatus.PRESENT);
+            case 2 -> attendanceRecordResponse = filterRecordByStatus(attendanceRecordResponse, AttendanceStatus.ABSENT);
             case 0 -> {}
             default -> {
                 log.warn("Invalid sort parameter: {}", sort);
                 return ResponseEntity.badRequest().build();
             }
         }
-
-        // Build the response
-        AttendanceRecordResponse attendanceRecordResponse = buildAttendanceRecordResponse(subject, date, studentAttendance);
         log.info("Successfully fetched attendance record for subjectCode: {}, date: {}", subjectCode, date);
         return ResponseEntity.ok(attendanceRecordResponse);
 
     }
 
+    /**
+     * Streams the subject's open session to its lecturer instead of having them poll {@link #getRecord}.
+     */
+    public ResponseEntity<SseEmitter> getLiveRecord(String subjectCode, String bearer) {
+        Optional<Subject> subjectOptional = subjectService.findSubjectByCode(subjectCode);
+        if (subjectOptional.isEmpty()) {
+            log.warn("Subject not found for subjectCode: {}", subjectCode);
+            return ResponseEntity.badRequest().build();
+        }
+        Subject subject = subjectOptional.get();
+        String userId = jwtService.getId(jwtService.extractTokenFromHeader(bearer));
+        if (subject.getLecturerInCharge() == null || !subject.getLecturerInCharge().getId().equals(userId)) {
+            log.warn("Unauthorized access attempt by userId: {} for subjectCode: {}", userId, subjectCode);
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        Optional<ActiveSessionRegistry.ActiveSession> session = activeSessionRegistry.findBySubject(subjectCode);
+        if (session.isEmpty()) {
+            log.info("No open attendance session for subjectCode: {}", subjectCode);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(attendanceFeed.subscribe(session.get()));
+    }
+
     public ResponseEntity<ByteArrayResource> getAttendanceExcel(String subjectCode, LocalDate date, int sort,
             String bearer) {
         log.info("Received request to generate attendance Excel for subjectCode: {}, date: {}, sort: {}, bearer: {}",
@@ -364,10 +519,11 @@ public class AttendanceService {
                 .body(resource);
     }
 
-    private List<Attendance> filterAttendanceByStatus(List<Attendance> attendanceList, AttendanceStatus status) {
-        return attendanceList.stream()
-                .filter(attendance -> attendance.getStatus().equals(status))
-                .collect(Collectors.toList());
+    private AttendanceRecordResponse filterRecordByStatus(AttendanceRecordResponse record, AttendanceStatus status) {
+        return new AttendanceRecordResponse(record.getTitle(), record.getSubjectCode(), record.getDate(),
+                record.getAttendanceData().stream()
+                        .filter(data -> data != null && data.getStatus() == status)
+                        .collect(Collectors.toList()));
     }
 
     private AttendanceRecordResponse buildAttendanceRecordResponse(Subject subject, LocalDate date,
@@ -487,7 +643,7 @@ public class AttendanceService {
         return new ResponseEntity<>(new ByteArrayResource(outputStream.toByteArray()), headers, HttpStatus.OK);
     }
     public ResponseEntity<List<Attendance>> getStudentRecord(String studentId) {
-        List<Attendance> attendances = attendanceRepository.findByStudentId(studentId);
+        List<Attendance> attendances = attendanceLedger.studentRecord(studentId);
         if (attendances == null || attendances.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -511,7 +667,7 @@ public class AttendanceService {
         }
 
         log.info("Fetching attendance data for subjectCode: {}", subject.getSubjectCode());
-        var data = attendanceRepository.findByStudentId(subject.getSubjectCode());
+        var data = attendanceLedger.subjectRecord(subject.getSubjectCode());
         final Map<String, Double> userScore = new HashMap<>();
 
         int total;
@@ -592,7 +748,7 @@ public class AttendanceService {
         // Process the records
         log.info("Processing attendance setup policies");
         List<AvailableRecords.Data> set = attendanceSetupPolicyList.stream()
-                .map(ob -> new AvailableRecords.Data(ob.getAttendanceDate().toString()))
+                .map(ob -> new AvailableRecords.Data(ob.getAttendanceDate().toString(), ob.getPresentCount(), ob.getAbsentCount()))
                 .toList();
 
         List<AvailableRecords.Data> sortedList = set.stream()
@@ -0,0 +1,126 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.entities.Student;
+import com.backend.FaceRecognition.entities.Suspension;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.repository.SuspensionRepository;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Per-session working set of an attendance session: the subject gallery (held warm in
+ * {@link GalleryCache}), the enrolled students and the suspended students. Loading starts in
+ * the background when the session is initialized, so the first students of the class do not
+ * pay for it, and {@link ActiveSessionRegistry} evicts the state when the session expires.
+ * Readers never wait for a load; until it completes, or after the roster changed, they get
+ * an empty result and use the database as before.
+ */
+@Component
+@Slf4j
+public class AttendanceSessionCache {
+    private final GalleryCache galleryCache;
+    private final StudentRepository studentRepository;
+    private final SuspensionRepository suspensionRepository;
+    private final ConcurrentMap<String, SessionLoad> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService loader;
+
+    public AttendanceSessionCache(GalleryCache galleryCache, StudentRepository studentRepository,
+                                  SuspensionRepository suspensionRepository, WorkerThreads workerThreads) {
+        this.loader = Executors.newFixedThreadPool(2, workerThreads.factory("attendance-session-warm"));
+        this.galleryCache = galleryCache;
+        this.studentRepository = studentRepository;
+        this.suspensionRepository = suspensionRepository;
+    }
+
+    /**
+     * Starts loading the session's working set; returns immediately.
+     */
+    public void warm(String code, String subjectCode, LocalDateTime expiresAt) {
+        sessions.put(code, startLoad(code, subjectCode, expiresAt));
+    }
+
+    /**
+     * @return the loaded state, or empty if it is still loading, failed, or was built from an
+     * older roster than the current gallery version (a reload is started in that case)
+     */
+    public Optional<SessionState> get(String code) {
+        SessionLoad current = sessions.get(code);
+        if (current == null || !current.state().isDone() || current.state().isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        SessionState state = current.state().join();
+        if (galleryCache.currentVersion(state.subjectCode()) != state.galleryVersion()) {
+            sessions.replace(code, current, startLoad(code, current.subjectCode(), current.expiresAt()));
+            return Optional.empty();
+        }
+        return Optional.of(state);
+    }
+
+    public boolean isActive(String code) {
+        return sessions.containsKey(code);
+    }
+
+    /**
+     * Reloads every live session of the subject, e.g. after a suspension was added or lifted.
+     * Loads still in flight are replaced as well, since they may have read the roster or the
+     * suspensions before the change; their result is discarded.
+     */
+    public void refreshSubject(String subjectCode) {
+        sessions.forEach((code, current) -> {
+            if (current.subjectCode().equals(subjectCode)) {
+                sessions.replace(code, current, startLoad(code, subjectCode, current.expiresAt()));
+            }
+        });
+    }
+
+    public void evict(String code) {
+        if (sessions.remove(code) != null) {
+            log.info("Evicted attendance session {}", code);
+        }
+    }
+
+    private SessionLoad startLoad(String code, String subjectCode, LocalDateTime expiresAt) {
+        return new SessionLoad(subjectCode, expiresAt,
+                CompletableFuture.supplyAsync(() -> load(code, subjectCode, expiresAt), loader));
+    }
+
+    private SessionState load(String code, String subjectCode, LocalDateTime expiresAt) {
+        long started = System.currentTimeMillis();
+        GalleryCache.SubjectGallery gallery = galleryCache.get(subjectCode);
+        Set<String> roster = studentRepository.findAllStudentsBySubjectCode(subjectCode).stream()
+                .map(Student::getMatriculationNumber)
+                .collect(Collectors.toUnmodifiableSet());
+        Set<String> suspended = suspensionRepository.findAllBySubjectId(subjectCode).stream()
+                .map(Suspension::getStudentId)
+                .collect(Collectors.toUnmodifiableSet());
+        log.info("Warmed attendance session {} for {}: {} templates, {} students, {} suspended in {} ms",
+                code, subjectCode, gallery.gallery().size(), roster.size(), suspended.size(),
+                System.currentTimeMillis() - started);
+        return new SessionState(code, subjectCode, expiresAt, gallery.version(), roster, suspended);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private record SessionLoad(String subjectCode, LocalDateTime expiresAt, CompletableFuture<SessionState> state) {
+    }
+
+    public record SessionState(String code, String subjectCode, LocalDateTime expiresAt, long galleryVersion,
+                               Set<String> roster, Set<String> suspended) {
+    }
+}
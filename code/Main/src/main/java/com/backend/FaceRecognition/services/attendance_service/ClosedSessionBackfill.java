@@ -0,0 +1,78 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Marks sessions held before the startup catch-up window of {@link SessionLifecycleService} as
+ * closed and stores their present and absent counts. The closed-at column was added after those
+ * sessions ended, so on the first start after the upgrade every historical setup policy is
+ * unclosed; closing them here, page by page in the background, keeps that history off the
+ * session-close worker and out of the live feed. Runs after startup and is idempotent: each page
+ * only selects rows that are still unclosed, so an interrupted run continues on the next start.
+ * <p>
+ * The backfilled closed-at is the time of the migration, not the end of the session.
+ */
+@Component
+@Slf4j
+public class ClosedSessionBackfill {
+    private static final int PAGE_SIZE = 200;
+
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final AttendanceLedger attendanceLedger;
+    private final WorkerThreads workerThreads;
+    private final int catchUpDays;
+
+    public ClosedSessionBackfill(AttendanceSetupPolicyRepository attendanceSetupRepository,
+                                 AttendanceLedger attendanceLedger, WorkerThreads workerThreads,
+                                 @Value("${attendance.sessions.startup-catch-up-days:2}") int catchUpDays) {
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.attendanceLedger = attendanceLedger;
+        this.workerThreads = workerThreads;
+        this.catchUpDays = catchUpDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        workerThreads.factory("closed-session-backfill").newThread(this::backfill).start();
+    }
+
+    void backfill() {
+        LocalDate before = LocalDate.now().minusDays(catchUpDays);
+        int closed = 0;
+        int afterId = 0;
+        try {
+            List<AttendanceSetupPolicy> page;
+            do {
+                page = attendanceSetupRepository.findUnclosedBefore(before, afterId, PageRequest.ofSize(PAGE_SIZE));
+                LocalDateTime now = LocalDateTime.now();
+                for (AttendanceSetupPolicy policy : page) {
+                    List<Attendance> records = attendanceLedger.sessionRecord(policy.getSubjectId(),
+                            policy.getAttendanceDate());
+                    int present = (int) records.stream()
+                            .filter(record -> record.getStatus() == AttendanceStatus.PRESENT).count();
+                    closed += attendanceSetupRepository.close(policy.getId(), now, present, records.size() - present);
+                    afterId = policy.getId();
+                }
+            } while (page.size() == PAGE_SIZE);
+            if (closed > 0) {
+                log.info("Closed {} sessions held before {}", closed, before);
+            }
+        } catch (Exception e) {
+            log.error("Closed session backfill stopped after {} sessions, it will resume on next startup", closed, e);
+        }
+    }
+}
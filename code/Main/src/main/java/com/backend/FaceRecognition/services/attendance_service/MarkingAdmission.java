@@ -0,0 +1,198 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for attendance submissions. Each session has a bounded FIFO queue, and at
+ * most {@code attendance.admission.max-concurrent} submissions run at once, sized to what the
+ * sidecar accepts in parallel. When a slot frees up, the sessions with queued submissions are
+ * served round-robin, so one large class cannot starve a small one that started at the same time.
+ * <p>
+ * Waiting submissions hold no request thread: callers get a future that the controller returns
+ * as an async result. A full session queue is answered at once with 429 and a Retry-After
+ * estimated from the queue depth and the recent service time. A submission that waited longer
+ * than {@code attendance.admission.max-wait-ms} is answered with 503 instead of being recognized
+ * for a client that has most likely given up.
+ * <p>
+ * The wait is capped so that a submission started at the deadline still finishes, sidecar call
+ * included, before {@code spring.mvc.async.request-timeout} answers the client with its own 503.
+ * Otherwise the client would be told to retry while the student was being marked present.
+ */
+@Component
+@Slf4j
+public class MarkingAdmission {
+    // Allowance for the database work and response of a started submission, on top of its sidecar call
+    private static final long SUBMISSION_SLACK_MILLIS = 1000;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final ExecutorService workers;
+    // Guarded by this
+    private final Map<String, ArrayDeque<Submission>> queues = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private int running;
+    private int queued;
+    // Moving average of the time one submission takes to run, in nanoseconds
+    private volatile double averageServiceNanos = 1_000_000_000;
+    private final Counter rejected;
+    private final Counter expired;
+
+    public MarkingAdmission(MeterRegistry meterRegistry, WorkerThreads workerThreads,
+                            @Value("${attendance.admission.enabled:true}") boolean enabled,
+                            @Value("${attendance.admission.max-concurrent:${faceRecognition.sidecar.max-concurrent-calls:16}}") int maxConcurrent,
+                            @Value("${attendance.admission.session-queue-capacity:100}") int queueCapacity,
+                            @Value("${attendance.admission.max-wait-ms:20000}") long maxWaitMillis,
+                            @Value("${spring.mvc.async.request-timeout:30000}") long requestTimeoutMillis,
+                            @Value("${faceRecognition.sidecar.connect-timeout-ms:2000}") long sidecarConnectTimeoutMillis,
+                            @Value("${faceRecognition.sidecar.read-timeout-ms:10000}") long sidecarReadTimeoutMillis,
+                            @Value("${faceRecognition.sidecar.bulkhead-wait-ms:500}") long sidecarBulkheadWaitMillis) {
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        long submissionMillis = sidecarBulkheadWaitMillis + sidecarConnectTimeoutMillis + sidecarReadTimeoutMillis
+                + SUBMISSION_SLACK_MILLIS;
+        long waitMillis = Math.min(maxWaitMillis, requestTimeoutMillis - submissionMillis);
+        if (enabled && waitMillis < maxWaitMillis) {
+            log.warn("Request timeout of {} ms leaves {} ms for a submission to run, capping the admission wait at {} ms",
+                    requestTimeoutMillis, submissionMillis, Math.max(0, waitMillis));
+        }
+        this.maxWaitNanos = Math.max(0, waitMillis) * 1_000_000;
+        this.workers = Executors.newFixedThreadPool(maxConcurrent, workerThreads.factory("attendance-marking"));
+        this.rejected = Counter.builder("attendance.admission.rejected")
+                .description("Attendance submissions turned away because their session queue was full")
+                .register(meterRegistry);
+        this.expired = Counter.builder("attendance.admission.expired")
+                .description("Attendance submissions dropped after waiting longer than the admission deadline")
+                .register(meterRegistry);
+        Gauge.builder("attendance.admission.queued", this, MarkingAdmission::queued)
+                .description("Attendance submissions waiting for a marking slot")
+                .register(meterRegistry);
+        Gauge.builder("attendance.admission.running", this, MarkingAdmission::running)
+                .description("Attendance submissions being recognized")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues one submission of the session; the future completes with its response.
+     */
+    public CompletableFuture<ResponseEntity<String>> submit(String sessionCode, Supplier<ResponseEntity<String>> work) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(work.get());
+        }
+        Submission submission = new Submission(work, System.nanoTime());
+        long retryAfterSeconds;
+        synchronized (this) {
+            ArrayDeque<Submission> queue = queues.computeIfAbsent(sessionCode, code -> new ArrayDeque<>());
+            if (queue.size() < queueCapacity) {
+                if (queue.isEmpty()) {
+                    rotation.addLast(sessionCode);
+                }
+                queue.addLast(submission);
+                queued++;
+                dispatch();
+                return submission.result;
+            }
+            retryAfterSeconds = retryAfterSeconds(queue.size());
+        }
+        rejected.increment();
+        log.warn("Session {} has {} submissions queued, rejecting", sessionCode, queueCapacity);
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body("Too many submissions for this session, try again shortly"));
+    }
+
+    /**
+     * Starts queued submissions while slots are free, taking one from each session in turn.
+     */
+    private synchronized void dispatch() {
+        while (running < maxConcurrent && !rotation.isEmpty()) {
+            String sessionCode = rotation.pollFirst();
+            ArrayDeque<Submission> queue = queues.get(sessionCode);
+            Submission submission = queue.pollFirst();
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(sessionCode);
+            } else {
+                rotation.addLast(sessionCode);
+            }
+            running++;
+            workers.execute(() -> run(submission));
+        }
+    }
+
+    private void run(Submission submission) {
+        long started = System.nanoTime();
+        try {
+            if (started - submission.enqueuedAt > maxWaitNanos) {
+                expired.increment();
+                submission.result.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .body("Attendance service is busy, try again shortly"));
+                return;
+            }
+            submission.result.complete(submission.work.get());
+            averageServiceNanos = averageServiceNanos * 0.9 + (System.nanoTime() - started) * 0.1;
+        } catch (RuntimeException e) {
+            submission.result.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running--;
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Time until a submission at the back of a queue of this depth would start, assuming the
+     * session gets its fair share of the slots.
+     */
+    private long retryAfterSeconds(int depth) {
+        int sessions = Math.max(1, rotation.size());
+        double slotsForSession = Math.max(1.0, (double) maxConcurrent / sessions);
+        double seconds = depth / slotsForSession * averageServiceNanos / 1_000_000_000;
+        return Math.max(1, (long) Math.ceil(seconds));
+    }
+
+    long maxWaitMillis() {
+        return maxWaitNanos / 1_000_000;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    public synchronized int running() {
+        return running;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private record Submission(Supplier<ResponseEntity<String>> work, long enqueuedAt,
+                              CompletableFuture<ResponseEntity<String>> result) {
+        Submission(Supplier<ResponseEntity<String>> work, long enqueuedAt) {
+            this(work, enqueuedAt, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.entities.Suspension;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.repository.SuspensionRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceRecognitionService;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarUnavailableException;
+import com.backend.FaceRecognition.utils.HardwareSyncManifest;
+import com.backend.FaceRecognition.utils.HardwareSyncReport;
+import com.backend.FaceRecognition.utils.HardwareSyncReport.Outcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Applies attendance a kiosk collected while it was offline. The device uploads one ZIP holding
+ * {@code manifest.json} ({@link HardwareSyncManifest}) and the frames the manifest names. Each
+ * entry is checked against its session's window as recorded in {@link AttendanceSetupPolicy},
+ * widened by the allowed device clock skew. A code can come up again on the same day once its
+ * first session is over, so the session is the one with that code whose window holds
+ * {@code captured_at}. Frames are recognized against the subject's gallery, up to
+ * {@code attendance.offline-sync.parallelism} at a time.
+ * <p>
+ * The accepted marks of each session are written in a transaction of their own, so a session
+ * that cannot be saved only fails its own entries. Every entry is reported with its outcome.
+ * Uploading the same batch again is harmless: students who are already present are reported
+ * as such.
+ */
+@Service
+@Slf4j
+public class OfflineSyncService {
+    static final String MANIFEST = "manifest.json";
+    private static final Set<Outcome> REJECTED = Set.of(Outcome.INVALID, Outcome.UNKNOWN_SESSION,
+            Outcome.OUTSIDE_WINDOW, Outcome.NOT_RECOGNIZED, Outcome.NOT_ENROLLED, Outcome.SUSPENDED);
+
+    private final ObjectMapper objectMapper;
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final SuspensionRepository suspensionRepository;
+    private final AttendanceLedger attendanceLedger;
+    private final FaceRecognitionService faceRecognitionService;
+    private final WriteBehindMarker writeBehindMarker;
+    private final SessionLifecycleService sessionLifecycleService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService recognizers;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final long clockSkewMillis;
+
+    public OfflineSyncService(ObjectMapper objectMapper, AttendanceSetupPolicyRepository attendanceSetupRepository,
+                              SuspensionRepository suspensionRepository, AttendanceLedger attendanceLedger,
+                              FaceRecognitionService faceRecognitionService, WriteBehindMarker writeBehindMarker,
+                              SessionLifecycleService sessionLifecycleService, TransactionTemplate transactionTemplate,
+                              WorkerThreads workerThreads,
+                              @Value("${attendance.offline-sync.parallelism:8}") int parallelism,
+                              @Value("${attendance.offline-sync.max-bytes:52428800}") long maxBytes,
+                              @Value("${attendance.offline-sync.max-entries:5000}") int maxEntries,
+                              @Value("${attendance.offline-sync.clock-skew-ms:120000}") long clockSkewMillis) {
+        this.objectMapper = objectMapper;
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.suspensionRepository = suspensionRepository;
+        this.attendanceLedger = attendanceLedger;
+        this.faceRecognitionService = faceRecognitionService;
+        this.writeBehindMarker = writeBehindMarker;
+        this.sessionLifecycleService = sessionLifecycleService;
+        this.transactionTemplate = transactionTemplate;
+        this.recognizers = Executors.newFixedThreadPool(parallelism, workerThreads.factory("offline-sync"));
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.clockSkewMillis = clockSkewMillis;
+    }
+
+    public ResponseEntity<HardwareSyncReport> sync(InputStream archive) {
+        long started = System.nanoTime();
+        Map<String, byte[]> files;
+        try {
+            files = unzip(archive);
+        } catch (ArchiveTooLargeException e) {
+            return new ResponseEntity<>(HardwareSyncReport.builder().message(e.getMessage()).build(),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        } catch (IOException e) {
+            log.warn("Could not read offline sync archive: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(HardwareSyncReport.builder()
+                    .message("Could not read archive").build());
+        }
+        byte[] manifestBytes = files.remove(MANIFEST);
+        if (manifestBytes == null) {
+            return ResponseEntity.badRequest().body(HardwareSyncReport.builder()
+                    .message(MANIFEST + " is missing").build());
+        }
+        HardwareSyncManifest manifest;
+        try {
+            manifest = objectMapper.readValue(manifestBytes, HardwareSyncManifest.class);
+        } catch (IOException e) {
+            log.warn("Invalid offline sync manifest: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(HardwareSyncReport.builder()
+                    .message(MANIFEST + " could not be read").build());
+        }
+        List<HardwareSyncManifest.Entry> entries = manifest.getEntries() == null ? List.of() : manifest.getEntries();
+        if (entries.size() > maxEntries) {
+            return new ResponseEntity<>(HardwareSyncReport.builder()
+                    .message("At most " + maxEntries + " entries per batch").build(), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        List<HardwareSyncReport.Entry> lines = new ArrayList<>(entries.size());
+        Map<String, List<AttendanceSetupPolicy>> policies = new HashMap<>();
+        Map<Integer, SessionBatch> batches = new LinkedHashMap<>();
+        List<Recognition> recognitions = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            HardwareSyncManifest.Entry entry = entries.get(i);
+            HardwareSyncReport.Entry line = new HardwareSyncReport.Entry(
+                    entry.getEntryId() != null ? entry.getEntryId() : String.valueOf(i), List.of(), null, null);
+            lines.add(line);
+            check(entry, line, files, policies, batches).ifPresent(recognitions::add);
+        }
+        // Accepted in manifest order, so the same upload always reports the same outcomes
+        for (Recognition recognition : recognitions) {
+            List<String> candidates = recognition.await();
+            if (candidates != null) {
+                recognition.batch().accept(candidates, recognition.line());
+            }
+        }
+
+        for (SessionBatch batch : batches.values()) {
+            if (batch.toMark.isEmpty()) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> attendanceLedger.markAllPresent(
+                        batch.policy.getSubjectId(), batch.policy.getAttendanceDate(), batch.toMark));
+            } catch (RuntimeException e) {
+                log.error("Could not apply offline marks for session {} from device {}",
+                        batch.policy.getCode(), manifest.getDeviceId(), e);
+                batch.markedLines.forEach(line -> reject(line, Outcome.FAILED, "Could not be saved, upload the batch again"));
+                continue;
+            }
+            writeBehindMarker.markedElsewhere(batch.policy.getCode(), batch.toMark);
+            sessionLifecycleService.recount(batch.policy);
+        }
+
+        int marked = (int) lines.stream().filter(line -> line.getOutcome() == Outcome.MARKED).count();
+        int rejected = (int) lines.stream().filter(line -> REJECTED.contains(line.getOutcome())).count();
+        int failed = (int) lines.stream().filter(line -> line.getOutcome() == Outcome.FAILED).count();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Offline sync from device {}: {} entries, {} marked, {} rejected, {} failed in {} ms",
+                manifest.getDeviceId(), lines.size(), marked, rejected, failed, elapsedMs);
+        return ResponseEntity.ok(HardwareSyncReport.builder()
+                .message("Offline batch processed")
+                .deviceId(manifest.getDeviceId())
+                .processed(lines.size())
+                .marked(marked)
+                .rejected(rejected)
+                .failed(failed)
+                .elapsedMs(elapsedMs)
+                .entries(lines)
+                .build());
+    }
+
+    /**
+     * Rejects the entry on the spot, or returns its candidates, still being recognized for a frame.
+     */
+    private Optional<Recognition> check(HardwareSyncManifest.Entry entry, HardwareSyncReport.Entry line,
+                                        Map<String, byte[]> files, Map<String, List<AttendanceSetupPolicy>> policies,
+                                        Map<Integer, SessionBatch> batches) {
+        LocalDateTime capturedAt = entry.getCapturedAt();
+        boolean hasStudent = entry.getStudentId() != null && !entry.getStudentId().isBlank();
+        boolean hasFrame = entry.getFrame() != null && !entry.getFrame().isBlank();
+        if (entry.getAttendanceCode() == null || capturedAt == null || hasStudent == hasFrame) {
+            reject(line, Outcome.INVALID, "Needs attendance_code, captured_at and one of student_id or frame");
+            return Optional.empty();
+        }
+        Duration skew = Duration.ofMillis(clockSkewMillis);
+        if (capturedAt.isAfter(LocalDateTime.now().plus(skew))) {
+            reject(line, Outcome.INVALID, "captured_at is in the future");
+            return Optional.empty();
+        }
+        List<AttendanceSetupPolicy> sessions = policies.computeIfAbsent(
+                entry.getAttendanceCode() + '|' + capturedAt.toLocalDate(),
+                key -> attendanceSetupRepository.findAllByCodeAndAttendanceDate(entry.getAttendanceCode(),
+                        capturedAt.toLocalDate()));
+        if (sessions.isEmpty()) {
+            reject(line, Outcome.UNKNOWN_SESSION, "No session with this code on " + capturedAt.toLocalDate());
+            return Optional.empty();
+        }
+        // With the skew two windows can overlap; the session that opened last is the one the device saw
+        Optional<AttendanceSetupPolicy> policy = sessions.stream()
+                .filter(session -> !capturedAt.isBefore(ActiveSessionRegistry.opensAt(session).minus(skew))
+                        && !capturedAt.isAfter(ActiveSessionRegistry.expiresAt(session).plus(skew)))
+                .max(Comparator.comparing(ActiveSessionRegistry::opensAt));
+        if (policy.isEmpty()) {
+            reject(line, Outcome.OUTSIDE_WINDOW, sessions.stream()
+                    .map(session -> ActiveSessionRegistry.opensAt(session) + " to " + ActiveSessionRegistry.expiresAt(session))
+                    .collect(Collectors.joining(", ", "Session was open from ", "")));
+            return Optional.empty();
+        }
+        SessionBatch batch = batches.computeIfAbsent(policy.get().getId(), id -> new SessionBatch(policy.get(),
+                attendanceLedger.sessionRecord(policy.get().getSubjectId(), policy.get().getAttendanceDate()),
+                suspensionRepository.findAllBySubjectId(policy.get().getSubjectId())));
+
+        if (hasStudent) {
+            return Optional.of(new Recognition(batch, line, CompletableFuture.completedFuture(List.of(entry.getStudentId()))));
+        }
+        byte[] frame = files.get(normalize(entry.getFrame()));
+        if (frame == null) {
+            reject(line, Outcome.INVALID, "Frame " + entry.getFrame() + " is not in the archive");
+            return Optional.empty();
+        }
+        return Optional.of(new Recognition(batch, line, recognizers.submit(() ->
+                recognize(entry.getFrame(), frame, batch.policy.getSubjectId(), line))));
+    }
+
+    /**
+     * @return the recognized students, or null if the entry was rejected
+     */
+    private List<String> recognize(String name, byte[] frame, String subjectCode, HardwareSyncReport.Entry line) {
+        List<String> candidates;
+        try {
+            candidates = faceRecognitionService.recognizeFaces(new ByteArrayResource(frame) {
+                @Override
+                public String getFilename() {
+                    return name;
+                }
+            }, subjectCode).matches().stream().map(FaceGallery.Match::matriculationNumber).toList();
+        } catch (SidecarUnavailableException e) {
+            reject(line, Outcome.FAILED, "Face recognition is temporarily unavailable, upload the batch again");
+            return null;
+        } catch (HttpClientErrorException e) {
+            reject(line, Outcome.INVALID, "Frame could not be processed");
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Could not recognize frame {} of an offline batch", name, e);
+            reject(line, Outcome.FAILED, "Frame could not be processed, upload the batch again");
+            return null;
+        }
+        if (candidates.isEmpty()) {
+            reject(line, Outcome.NOT_RECOGNIZED, "No enrolled student recognized");
+            return null;
+        }
+        return candidates;
+    }
+
+    private static void reject(HardwareSyncReport.Entry line, Outcome outcome, String message) {
+        line.setOutcome(outcome);
+        line.setMessage(message);
+    }
+
+    /**
+     * Reads every file of the archive into memory, stopping once {@code maxBytes} have been inflated.
+     */
+    private Map<String, byte[]> unzip(InputStream archive) throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                int read;
+                while ((read = zip.read(buffer)) > 0) {
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new ArchiveTooLargeException("Archive expands to more than " + maxBytes + " bytes");
+                    }
+                    content.write(buffer, 0, read);
+                }
+                files.put(normalize(zipEntry.getName()), content.toByteArray());
+            }
+        }
+        return files;
+    }
+
+    private static String normalize(String name) {
+        return name.startsWith("./") ? name.substring(2) : name;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        recognizers.shutdownNow();
+    }
+
+    private record Recognition(SessionBatch batch, HardwareSyncReport.Entry line, Future<List<String>> candidates) {
+        List<String> await() {
+            try {
+                return candidates.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reject(line, Outcome.FAILED, "Interrupted, upload the batch again");
+            } catch (ExecutionException e) {
+                log.error("Could not recognize an offline entry", e.getCause());
+                reject(line, Outcome.FAILED, "Frame could not be processed, upload the batch again");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The accepted marks of one session. Outcomes are decided against the session's record as
+     * read before the batch is applied; students marked twice in the same batch count once.
+     */
+    private static final class SessionBatch {
+        private final AttendanceSetupPolicy policy;
+        private final Map<String, AttendanceStatus> statuses = new HashMap<>();
+        private final Set<String> suspended;
+        private final Set<String> toMark = new LinkedHashSet<>();
+        private final List<HardwareSyncReport.Entry> markedLines = new ArrayList<>();
+
+        SessionBatch(AttendanceSetupPolicy policy, List<Attendance> record, List<Suspension> suspensions) {
+            this.policy = policy;
+            record.forEach(attendance -> statuses.put(attendance.getStudentId(), attendance.getStatus()));
+            this.suspended = suspensions.stream().map(Suspension::getStudentId).collect(Collectors.toSet());
+        }
+
+        void accept(List<String> candidates, HardwareSyncReport.Entry line) {
+            List<String> marked = new ArrayList<>();
+            List<String> already = new ArrayList<>();
+            List<String> notEnrolled = new ArrayList<>();
+            List<String> barred = new ArrayList<>();
+            for (String studentId : candidates) {
+                AttendanceStatus status = statuses.get(studentId);
+                if (status == null) {
+                    notEnrolled.add(studentId);
+                } else if (suspended.contains(studentId)) {
+                    barred.add(studentId);
+                } else if (status == AttendanceStatus.PRESENT || !toMark.add(studentId)) {
+                    already.add(studentId);
+                } else {
+                    marked.add(studentId);
+                }
+            }
+            List<String> students = new ArrayList<>(marked);
+            students.addAll(already);
+            line.setStudents(students);
+            if (!marked.isEmpty()) {
+                line.setOutcome(Outcome.MARKED);
+                markedLines.add(line);
+            } else if (!already.isEmpty()) {
+                line.setOutcome(Outcome.ALREADY_MARKED);
+            } else if (!barred.isEmpty()) {
+                line.setOutcome(Outcome.SUSPENDED);
+            } else {
+                line.setOutcome(Outcome.NOT_ENROLLED);
+            }
+            if (!notEnrolled.isEmpty() || !barred.isEmpty()) {
+                line.setMessage(String.format("%d not enrolled, %d suspended", notEnrolled.size(), barred.size()));
+            }
+        }
+    }
+
+    private static final class ArchiveTooLargeException extends IOException {
+        ArchiveTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
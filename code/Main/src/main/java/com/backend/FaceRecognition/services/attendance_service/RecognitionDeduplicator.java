@@ -0,0 +1,136 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of each attendance submission within its session, keyed both by the
+ * client's Idempotency-Key header and by the SHA-256 of the uploaded image, so a kiosk retrying
+ * the same frame gets the original answer without another sidecar recognition.
+ * Concurrent duplicates wait for the first submission instead of recognizing in parallel.
+ * Only outcomes that mean the student is marked are kept: a face that was not recognized may be
+ * enrolled a minute later, and a suspension may be lifted, so those are recomputed like transient
+ * failures. A session's entries are dropped when {@link SessionLifecycleService} closes it.
+ */
+@Component
+@Slf4j
+public class RecognitionDeduplicator {
+    private final Cache<String, ResponseEntity<String>> outcomes;
+    private final Counter idempotencyKeyHits;
+    private final Counter contentHashHits;
+    private final Counter misses;
+
+    public RecognitionDeduplicator(MeterRegistry meterRegistry,
+                                   @Value("${attendance.dedupe.ttl-minutes:30}") long ttlMinutes,
+                                   @Value("${attendance.dedupe.max-entries:20000}") long maxEntries) {
+        this.outcomes = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maxEntries)
+                .build();
+        this.idempotencyKeyHits = counter(meterRegistry, "hit", "idempotency_key");
+        this.contentHashHits = counter(meterRegistry, "hit", "content_hash");
+        this.misses = counter(meterRegistry, "miss", "none");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String matchedBy) {
+        return Counter.builder("attendance.submissions.dedupe")
+                .description("Attendance submissions answered from the dedupe cache (hit) or recognized (miss)")
+                .tag("result", result)
+                .tag("matched_by", matchedBy)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param sessionCode    code of the attendance session the submission belongs to
+     * @param idempotencyKey the client's Idempotency-Key header, may be null
+     * @param recognition    computes the outcome on a miss
+     */
+    public ResponseEntity<String> deduplicate(String sessionCode, String idempotencyKey, MultipartFile file,
+                                              Supplier<ResponseEntity<String>> recognition) {
+        String idempotencyCacheKey = idempotencyKey == null || idempotencyKey.isBlank()
+                ? null : sessionCode + "|key|" + idempotencyKey;
+        if (idempotencyCacheKey != null) {
+            ResponseEntity<String> previous = outcomes.getIfPresent(idempotencyCacheKey);
+            if (previous != null) {
+                idempotencyKeyHits.increment();
+                log.info("Replaying outcome for Idempotency-Key {} in session {}", idempotencyKey, sessionCode);
+                return previous;
+            }
+        }
+        String contentHash = hash(file);
+        String contentCacheKey = contentHash == null ? null : sessionCode + "|sha256|" + contentHash;
+        String primaryKey = contentCacheKey != null ? contentCacheKey : idempotencyCacheKey;
+        if (primaryKey == null) {
+            misses.increment();
+            return recognition.get();
+        }
+        AtomicBoolean computed = new AtomicBoolean();
+        ResponseEntity<String> outcome;
+        try {
+            outcome = outcomes.get(primaryKey, () -> {
+                computed.set(true);
+                return recognition.get();
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        if (!computed.get()) {
+            contentHashHits.increment();
+            log.info("Replaying outcome for identical image in session {}", sessionCode);
+            return outcome;
+        }
+        misses.increment();
+        if (!isRepeatable(outcome)) {
+            outcomes.invalidate(primaryKey);
+        } else if (idempotencyCacheKey != null && !idempotencyCacheKey.equals(primaryKey)) {
+            outcomes.put(idempotencyCacheKey, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * Marked and already marked stay true for the rest of the session.
+     */
+    private static boolean isRepeatable(ResponseEntity<String> outcome) {
+        HttpStatus status = HttpStatus.resolve(outcome.getStatusCode().value());
+        return status == HttpStatus.OK || status == HttpStatus.CONFLICT;
+    }
+
+    public void evictSession(String sessionCode) {
+        String prefix = sessionCode + "|";
+        outcomes.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static String hash(MultipartFile file) {
+        try (DigestInputStream inputStream = new DigestInputStream(file.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(inputStream.getMessageDigest().digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.warn("Could not hash uploaded image: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import com.backend.FaceRecognition.utils.AttendanceRecordResponse;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Closes attendance sessions. {@link ActiveSessionRegistry} calls {@link #close} from its timer
+ * wheel a short grace period after a session expires, so submissions that were already being
+ * recognized still land. Closing flushes pending write-behind marks, computes the present and
+ * absent counts once and stores them with the closed time on the setup policy, and evicts the
+ * session's working set. Sessions of the last {@code attendance.sessions.startup-catch-up-days} days
+ * that expired while the application was down are closed on startup; older unclosed sessions are
+ * left to {@link ClosedSessionBackfill}.
+ * <p>
+ * The marks of a closed session no longer change, so its attendance record is cached (bounded
+ * by {@code attendance.sessions.closed-record-cache-size}). Absences can still change: sparse
+ * mode derives them from the subject's current roster. Each cached record therefore keeps the
+ * {@link GalleryCache} version of the subject, which every roster change bumps, and is reloaded
+ * once that version moves on. Late marks and retroactive sessions drop the record through
+ * {@link #invalidate}.
+ */
+@Service
+@Slf4j
+public class SessionLifecycleService {
+    private static final int CATCH_UP_PAGE_SIZE = 200;
+
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final AttendanceLedger attendanceLedger;
+    private final WriteBehindMarker writeBehindMarker;
+    private final AttendanceSessionCache attendanceSessionCache;
+    private final AttendanceFeed attendanceFeed;
+    private final RecognitionDeduplicator recognitionDeduplicator;
+    private final GalleryCache galleryCache;
+    private final Cache<String, ClosedRecord> closedRecords;
+    private final int catchUpDays;
+    // Bumped by every invalidate, so a record loaded across one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "attendance-session-close");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SessionLifecycleService(AttendanceSetupPolicyRepository attendanceSetupRepository,
+                                   AttendanceLedger attendanceLedger, WriteBehindMarker writeBehindMarker,
+                                   AttendanceSessionCache attendanceSessionCache, AttendanceFeed attendanceFeed,
+                                   RecognitionDeduplicator recognitionDeduplicator, GalleryCache galleryCache,
+                                   @Value("${attendance.sessions.closed-record-cache-size:500}") long cacheSize,
+                                   @Value("${attendance.sessions.startup-catch-up-days:2}") int catchUpDays) {
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.attendanceLedger = attendanceLedger;
+        this.writeBehindMarker = writeBehindMarker;
+        this.attendanceSessionCache = attendanceSessionCache;
+        this.attendanceFeed = attendanceFeed;
+        this.recognitionDeduplicator = recognitionDeduplicator;
+        this.galleryCache = galleryCache;
+        this.closedRecords = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        this.catchUpDays = catchUpDays;
+    }
+
+    /**
+     * Queues the session for closing; returns immediately.
+     */
+    public void close(int policyId, String code, String subjectCode, LocalDate date) {
+        worker.execute(() -> closeNow(policyId, code, subjectCode, date));
+    }
+
+    private void closeNow(int policyId, String code, String subjectCode, LocalDate date) {
+        try {
+            writeBehindMarker.flush();
+            List<Attendance> records = attendanceLedger.sessionRecord(subjectCode, date);
+            int present = countPresent(records);
+            int absent = records.size() - present;
+            if (attendanceSetupRepository.close(policyId, LocalDateTime.now(), present, absent) > 0) {
+                log.info("Closed attendance session {} for {} on {}: {} present, {} absent",
+                        code, subjectCode, date, present, absent);
+            }
+            attendanceFeed.closed(subjectCode, date, present, absent);
+        } catch (Exception e) {
+            log.error("Failed to close attendance session {}, it will be closed on next startup", code, e);
+        } finally {
+            attendanceSessionCache.evict(code);
+            recognitionDeduplicator.evictSession(code);
+        }
+    }
+
+    /**
+     * Queues a recount for marks committed outside the session's own marking. It runs on the
+     * same worker as {@link #close}, so whichever order the two are queued in, the counts stored
+     * last are read after the marks committed. Sessions still open are left alone; closing
+     * them counts the marks.
+     */
+    public void recount(AttendanceSetupPolicy policy) {
+        worker.execute(() -> recountNow(policy.getId(), policy.getSubjectId(), policy.getAttendanceDate()));
+    }
+
+    private void recountNow(int policyId, String subjectCode, LocalDate date) {
+        try {
+            if (!attendanceSetupRepository.existsBySubjectIdAndAttendanceDateAndClosedAtIsNotNull(subjectCode, date)) {
+                return;
+            }
+            List<Attendance> records = attendanceLedger.sessionRecord(subjectCode, date);
+            int present = countPresent(records);
+            attendanceSetupRepository.updateClosedCounts(policyId, present, records.size() - present);
+        } catch (Exception e) {
+            log.error("Failed to recount attendance session of {} on {}", subjectCode, date, e);
+        } finally {
+            invalidate(subjectCode, date);
+        }
+    }
+
+    private static int countPresent(List<Attendance> records) {
+        return (int) records.stream().filter(record -> record.getStatus() == AttendanceStatus.PRESENT).count();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void closeExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate since = now.toLocalDate().minusDays(catchUpDays);
+        int queued = 0;
+        int afterId = 0;
+        List<AttendanceSetupPolicy> page;
+        do {
+            page = attendanceSetupRepository.findUnclosedSince(since, afterId, PageRequest.ofSize(CATCH_UP_PAGE_SIZE));
+            for (AttendanceSetupPolicy policy : page) {
+                if (policy.getAttendanceDateTime() == null || !ActiveSessionRegistry.expiresAt(policy).isAfter(now)) {
+                    close(policy.getId(), policy.getCode(), policy.getSubjectId(), policy.getAttendanceDate());
+                    queued++;
+                }
+                afterId = policy.getId();
+            }
+        } while (page.size() == CATCH_UP_PAGE_SIZE);
+        if (queued > 0) {
+            log.info("Closing {} attendance sessions that expired while the application was down", queued);
+        }
+    }
+
+    /**
+     * Returns the full record of a session, from the cache if it was cached against the subject's
+     * current roster, otherwise from the loader. Loaded records of closed sessions are cached;
+     * records of open sessions are not.
+     *
+     * @return the record, or null if the loader returned null
+     */
+    public AttendanceRecordResponse record(String subjectCode, LocalDate date, Supplier<AttendanceRecordResponse> loader) {
+        String key = key(subjectCode, date);
+        long rosterVersion = galleryCache.currentVersion(subjectCode);
+        ClosedRecord cached = closedRecords.getIfPresent(key);
+        if (cached != null && cached.rosterVersion() == rosterVersion) {
+            return cached.record();
+        }
+        long invalidated = invalidations.get();
+        AttendanceRecordResponse record = loader.get();
+        if (record != null
+                && attendanceSetupRepository.existsBySubjectIdAndAttendanceDateAndClosedAtIsNotNull(subjectCode, date)
+                && invalidations.get() == invalidated) {
+            closedRecords.put(key, new ClosedRecord(rosterVersion, record));
+        }
+        return record;
+    }
+
+    public void invalidate(String subjectCode, LocalDate date) {
+        invalidations.incrementAndGet();
+        closedRecords.invalidate(key(subjectCode, date));
+    }
+
+    private static String key(String subjectCode, LocalDate date) {
+        return subjectCode + '|' + date;
+    }
+
+    private record ClosedRecord(long rosterVersion, AttendanceRecordResponse record) {
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
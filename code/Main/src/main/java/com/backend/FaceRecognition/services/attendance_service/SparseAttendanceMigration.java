@@ -0,0 +1,91 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceRepository;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.utils.UniqueCodeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Converts dense attendance data for sparse mode: first makes sure every session that has
+ * rows also has a setup policy, since sparse reads enumerate sessions from the policies, then,
+ * only if {@code attendance.storage.delete-absent-rows=true}, deletes the stored ABSENT rows in
+ * small batches. Runs in the background after startup and is idempotent, so an interrupted run
+ * simply continues on the next start.
+ * <p>
+ * Deleting the ABSENT rows cannot be undone. They are the only record of who was enrolled when
+ * a past session was held; sparse mode derives absences from the current roster, so after a
+ * switch back to dense mode the old sessions would show only their PRESENT rows. Take a backup
+ * of the attendance table before enabling the deletion. Until then, sparse mode reads correctly
+ * around the remaining rows and only new sessions are stored sparsely.
+ */
+@Component
+@Slf4j
+public class SparseAttendanceMigration {
+    private static final int BATCH_SIZE = 5000;
+
+    private final AttendanceLedger attendanceLedger;
+    private final AttendanceRepository attendanceRepository;
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository;
+    private final boolean deleteAbsentRows;
+
+    public SparseAttendanceMigration(AttendanceLedger attendanceLedger, AttendanceRepository attendanceRepository,
+                                     AttendanceSetupPolicyRepository attendanceSetupRepository,
+                                     @Value("${attendance.storage.delete-absent-rows:false}") boolean deleteAbsentRows) {
+        this.attendanceLedger = attendanceLedger;
+        this.attendanceRepository = attendanceRepository;
+        this.attendanceSetupRepository = attendanceSetupRepository;
+        this.deleteAbsentRows = deleteAbsentRows;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!attendanceLedger.isSparse()) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "sparse-attendance-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void migrate() {
+        int deleted = 0;
+        try {
+            List<Object[]> orphans = attendanceRepository.findSessionsWithoutPolicy();
+            for (Object[] session : orphans) {
+                LocalDate date = (LocalDate) session[1];
+                attendanceSetupRepository.save(AttendanceSetupPolicy.builder()
+                        .code(UniqueCodeGenerator.generateCode(10))
+                        .subjectId((String) session[0])
+                        .attendanceDate(date)
+                        .attendanceDateTime(date.atStartOfDay())
+                        .duration(0)
+                        .build());
+            }
+            if (!orphans.isEmpty()) {
+                log.info("Created setup policies for {} sessions that only had attendance rows", orphans.size());
+            }
+            if (!deleteAbsentRows) {
+                return;
+            }
+            int batch;
+            do {
+                batch = attendanceRepository.deleteBatchByStatus(AttendanceStatus.ABSENT.ordinal(), BATCH_SIZE);
+                deleted += batch;
+            } while (batch > 0);
+            if (deleted > 0) {
+                log.info("Sparse attendance migration complete, {} ABSENT rows removed", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Sparse attendance migration stopped after {} rows, it will resume on next startup", deleted, e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel: timeouts are dropped into one of a fixed number of buckets by their
+ * deadline tick, and a single daemon thread visits one bucket per tick. Scheduling and
+ * cancelling are O(1) regardless of how many timeouts are pending; a timeout fires up to one
+ * tick late. Deadlines further away than one revolution simply stay in their bucket until
+ * the wheel comes round to their tick.
+ */
+@Slf4j
+public final class TimerWheel {
+    private final long tickNanos;
+    private final Set<Timeout>[] buckets;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final ScheduledExecutorService driver;
+    private final Object lock = new Object();
+    // The next tick to process; guarded by lock
+    private long currentTick;
+
+    public TimerWheel(String name, Duration tick, int wheelSize) {
+        this(tick, wheelSize, System::nanoTime, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        driver.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Builds a wheel that only turns when {@link #advance()} is called, against the given clock.
+     */
+    TimerWheel(Duration tick, int wheelSize, LongSupplier clock) {
+        this(tick, wheelSize, clock, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TimerWheel(Duration tick, int wheelSize, LongSupplier clock, ScheduledExecutorService driver) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two");
+        }
+        this.tickNanos = tick.toNanos();
+        this.mask = wheelSize - 1;
+        this.buckets = new Set[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new HashSet<>();
+        }
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+        this.driver = driver;
+    }
+
+    /**
+     * Runs the task on the wheel thread once the delay has passed. Tasks must be short;
+     * anything slow should be handed to another executor.
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long deadline = clock.getAsLong() - startNanos + Math.max(0, delay.toNanos());
+        // Round up so a timeout never fires early
+        long tick = (deadline + tickNanos - 1) / tickNanos;
+        synchronized (lock) {
+            Timeout timeout = new Timeout(task, Math.max(tick, currentTick));
+            buckets[(int) (timeout.tick & mask)].add(timeout);
+            return timeout;
+        }
+    }
+
+    public int pending() {
+        synchronized (lock) {
+            int count = 0;
+            for (Set<Timeout> bucket : buckets) {
+                count += bucket.size();
+            }
+            return count;
+        }
+    }
+
+    void advance() {
+        long target = (clock.getAsLong() - startNanos) / tickNanos;
+        List<Timeout> due = new ArrayList<>();
+        synchronized (lock) {
+            // Catches up tick by tick if the driver was delayed, but never goes round more than once
+            long last = Math.min(target, currentTick + mask);
+            for (; currentTick <= last; currentTick++) {
+                Set<Timeout> bucket = buckets[(int) (currentTick & mask)];
+                bucket.removeIf(timeout -> {
+                    if (timeout.tick <= target) {
+                        due.add(timeout);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            currentTick = Math.max(currentTick, target + 1);
+        }
+        for (Timeout timeout : due) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                log.error("Timer task failed", e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (driver != null) {
+            driver.shutdownNow();
+        }
+    }
+
+    public final class Timeout {
+        private final Runnable task;
+        private final long tick;
+
+        private Timeout(Runnable task, long tick) {
+            this.task = task;
+            this.tick = tick;
+        }
+
+        /**
+         * @return true if the timeout was still pending and will not fire
+         */
+        public boolean cancel() {
+            synchronized (lock) {
+                return buckets[(int) (tick & mask)].remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.repository.AttendanceRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional marking mode ({@code attendance.marking.mode=write-behind}) that decides marks in
+ * memory and writes them in batches. Each open session keeps its roster as bit positions with
+ * a suspended and a present bit per student, so a mark is one test-and-set under the session's
+ * lock. PRESENT transitions are queued and written every {@code attendance.marking.flush-ms}
+ * with one bulk statement per session, through {@link AttendanceLedger} so either storage mode works.
+ * <p>
+ * With {@code attendance.marking.await-flush=true} (the default) a mark is only acknowledged
+ * once the batch holding it has committed, so an acknowledged mark survives a crash; the
+ * database still sees a few batched updates instead of a read and a write per student. With
+ * await-flush off, marks are acknowledged immediately and a crash can lose the last interval.
+ * <p>
+ * A batch that fails to write is retried on the following flushes, up to
+ * {@code attendance.marking.max-flush-attempts}. Marks still unwritten after that are logged and
+ * dropped, their present bits are cleared so the students can submit again, and waiting callers
+ * get {@link Outcome#FAILED}.
+ */
+@Component
+@Slf4j
+public class WriteBehindMarker {
+    private final AttendanceRepository attendanceRepository;
+    private final AttendanceSessionCache attendanceSessionCache;
+    private final AttendanceLedger attendanceLedger;
+    private final boolean enabled;
+    private final boolean awaitFlush;
+    private final long awaitTimeoutMillis;
+    private final int maxFlushAttempts;
+    private final ConcurrentMap<String, MarkingState> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PendingMark> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    public WriteBehindMarker(AttendanceRepository attendanceRepository, AttendanceSessionCache attendanceSessionCache,
+                             AttendanceLedger attendanceLedger,
+                             @Value("${attendance.marking.mode:direct}") String mode,
+                             @Value("${attendance.marking.flush-ms:250}") long flushMillis,
+                             @Value("${attendance.marking.await-flush:true}") boolean awaitFlush,
+                             @Value("${attendance.marking.await-timeout-ms:5000}") long awaitTimeoutMillis,
+                             @Value("${attendance.marking.max-flush-attempts:5}") int maxFlushAttempts) {
+        this.attendanceRepository = attendanceRepository;
+        this.attendanceSessionCache = attendanceSessionCache;
+        this.attendanceLedger = attendanceLedger;
+        this.enabled = "write-behind".equalsIgnoreCase(mode);
+        this.awaitFlush = awaitFlush;
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+        this.maxFlushAttempts = maxFlushAttempts;
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "attendance-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+            log.info("Write-behind attendance marking enabled, flushing every {} ms", flushMillis);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides a mark in memory and queues it for the next flush.
+     *
+     * @return empty if write-behind is off or the session's working set is not loaded yet, in
+     * which case the caller marks through the database as usual
+     */
+    public Optional<Outcome> mark(String attendanceCode, LocalDate date, String studentId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<AttendanceSessionCache.SessionState> session = attendanceSessionCache.get(attendanceCode);
+        if (session.isEmpty()) {
+            return Optional.empty();
+        }
+        MarkingState state;
+        Outcome decided;
+        do {
+            state = stateFor(session.get(), date);
+            decided = state.decide(studentId);
+        } while (decided == null);
+        if (decided != Outcome.MARKED) {
+            return Optional.of(decided);
+        }
+        PendingMark mark = new PendingMark(attendanceCode, state.subjectCode, date, studentId, 1, new CompletableFuture<>());
+        pending.add(mark);
+        if (!awaitFlush) {
+            return Optional.of(Outcome.MARKED);
+        }
+        try {
+            mark.flushed().get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+            return Optional.of(Outcome.MARKED);
+        } catch (TimeoutException e) {
+            log.warn("Mark for {} in {} not flushed within {} ms, it stays queued", studentId, attendanceCode, awaitTimeoutMillis);
+            return Optional.of(Outcome.PENDING);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.of(Outcome.PENDING);
+        } catch (Exception e) {
+            return Optional.of(Outcome.FAILED);
+        }
+    }
+
+    /**
+     * Records students marked present by another path, such as a classroom photo, so a later
+     * individual submission is answered as already marked.
+     */
+    public void markedElsewhere(String attendanceCode, Collection<String> studentIds) {
+        if (!enabled) {
+            return;
+        }
+        MarkingState state;
+        do {
+            state = states.get(attendanceCode);
+        } while (state != null && !state.setPresent(studentIds));
+    }
+
+    /**
+     * The bit layout follows the session's roster; when the roster or suspensions are reloaded
+     * the present bits are carried over by student. The replaced state is retired in the same
+     * step as its bits are copied, so a mark racing with the reload sees that and retries on
+     * the new state instead of setting a bit nobody will read again.
+     */
+    private MarkingState stateFor(AttendanceSessionCache.SessionState session, LocalDate date) {
+        MarkingState current = states.get(session.code());
+        if (current != null && current.source == session) {
+            return current;
+        }
+        // Read outside compute(): the map holds a monitor on the bin while the function runs
+        Collection<String> present = current != null
+                ? current.retire()
+                : attendanceRepository.findStudentIdsBySubjectIdAndDateAndStatus(session.subjectCode(), date,
+                AttendanceStatus.PRESENT);
+        MarkingState fresh = new MarkingState(session, present);
+        return states.compute(session.code(), (code, latest) -> {
+            if (latest == null || latest == current) {
+                return fresh;
+            }
+            return latest.source == session ? latest : new MarkingState(session, latest.retire());
+        });
+    }
+
+    /**
+     * Writes everything pending as one batch. Callers take turns on the flush lock, which is held
+     * for the whole write.
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        List<PendingMark> batch = new ArrayList<>();
+        PendingMark next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (!batch.isEmpty()) {
+            Map<SessionKey, List<PendingMark>> bySession = new LinkedHashMap<>();
+            for (PendingMark mark : batch) {
+                bySession.computeIfAbsent(new SessionKey(mark.subjectCode(), mark.date()), key -> new ArrayList<>()).add(mark);
+            }
+            bySession.forEach(this::write);
+        }
+        states.keySet().removeIf(code -> !attendanceSessionCache.isActive(code));
+    }
+
+    private void write(SessionKey session, List<PendingMark> marks) {
+        try {
+            int updated = attendanceLedger.markAllPresent(session.subjectCode(), session.date(),
+                    marks.stream().map(PendingMark::studentId).toList());
+            marks.forEach(mark -> mark.flushed().complete(null));
+            log.debug("Flushed {} marks for {} ({} rows changed)", marks.size(), session.subjectCode(), updated);
+        } catch (RuntimeException e) {
+            // Kept in memory and retried on the next flush; the bits stay set so nobody is marked twice
+            List<PendingMark> retry = new ArrayList<>();
+            List<PendingMark> abandoned = new ArrayList<>();
+            for (PendingMark mark : marks) {
+                (mark.attempts() < maxFlushAttempts ? retry : abandoned).add(mark);
+            }
+            log.error("Failed to flush {} marks for {}, retrying {}", marks.size(), session.subjectCode(), retry.size(), e);
+            retry.forEach(mark -> pending.add(mark.retried()));
+            if (!abandoned.isEmpty()) {
+                abandon(session, abandoned, e);
+            }
+        }
+    }
+
+    private void abandon(SessionKey session, List<PendingMark> marks, RuntimeException cause) {
+        log.error("Dropping {} marks for {} on {} after {} failed flushes, students must submit again: {}",
+                marks.size(), session.subjectCode(), session.date(), maxFlushAttempts,
+                marks.stream().map(PendingMark::studentId).toList());
+        for (PendingMark mark : marks) {
+            unmark(mark.attendanceCode(), mark.studentId());
+            mark.flushed().completeExceptionally(cause);
+        }
+    }
+
+    private void unmark(String attendanceCode, String studentId) {
+        MarkingState state;
+        do {
+            state = states.get(attendanceCode);
+        } while (state != null && !state.clear(studentId));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("{} attendance marks could not be written before shutdown", pending.size());
+        }
+    }
+
+    public enum Outcome {
+        MARKED, PENDING, ALREADY_MARKED, NOT_ENROLLED, SUSPENDED, FAILED
+    }
+
+    private static final class MarkingState {
+        private final AttendanceSessionCache.SessionState source;
+        private final String subjectCode;
+        private final Map<String, Integer> index;
+        private final String[] students;
+        private final BitSet suspended;
+        private final BitSet present;
+        // Set once the bits have been copied to a replacement; guarded by this
+        private boolean retired;
+
+        private MarkingState(AttendanceSessionCache.SessionState source, Collection<String> presentStudents) {
+            this.source = source;
+            this.subjectCode = source.subjectCode();
+            this.students = source.roster().toArray(String[]::new);
+            this.index = new HashMap<>(students.length * 2);
+            this.suspended = new BitSet(students.length);
+            this.present = new BitSet(students.length);
+            for (int bit = 0; bit < students.length; bit++) {
+                index.put(students[bit], bit);
+                if (source.suspended().contains(students[bit])) {
+                    suspended.set(bit);
+                }
+            }
+            for (String studentId : presentStudents) {
+                Integer bit = index.get(studentId);
+                if (bit != null) {
+                    present.set(bit);
+                }
+            }
+        }
+
+        /**
+         * Sets the student's present bit unless they are suspended or already present.
+         *
+         * @return MARKED if the bit was set, or null if this state was retired and the caller must retry
+         */
+        private synchronized Outcome decide(String studentId) {
+            if (retired) {
+                return null;
+            }
+            Integer bit = index.get(studentId);
+            if (bit == null) {
+                return Outcome.NOT_ENROLLED;
+            }
+            if (suspended.get(bit)) {
+                return Outcome.SUSPENDED;
+            }
+            if (present.get(bit)) {
+                return Outcome.ALREADY_MARKED;
+            }
+            present.set(bit);
+            return Outcome.MARKED;
+        }
+
+        /**
+         * @return false if this state was retired and the caller must retry on its replacement
+         */
+        private synchronized boolean setPresent(Collection<String> studentIds) {
+            if (retired) {
+                return false;
+            }
+            for (String studentId : studentIds) {
+                Integer bit = index.get(studentId);
+                if (bit != null) {
+                    present.set(bit);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return false if this state was retired and the caller must retry on its replacement
+         */
+        private synchronized boolean clear(String studentId) {
+            if (retired) {
+                return false;
+            }
+            Integer bit = index.get(studentId);
+            if (bit != null) {
+                present.clear(bit);
+            }
+            return true;
+        }
+
+        private synchronized List<String> retire() {
+            retired = true;
+            return presentStudents();
+        }
+
+        private synchronized List<String> presentStudents() {
+            List<String> result = new ArrayList<>(present.cardinality());
+            for (int bit = present.nextSetBit(0); bit >= 0; bit = present.nextSetBit(bit + 1)) {
+                result.add(students[bit]);
+            }
+            return result;
+        }
+    }
+
+    private record SessionKey(String subjectCode, LocalDate date) {
+    }
+
+    private record PendingMark(String attendanceCode, String subjectCode, LocalDate date, String studentId,
+                               int attempts, CompletableFuture<Void> flushed) {
+        private PendingMark retried() {
+            return new PendingMark(attendanceCode, subjectCode, date, studentId, attempts + 1, flushed);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.backend.FaceRecognition.entities.Subject;
 import com.backend.FaceRecognition.repository.SuspensionRepository;
 import com.backend.FaceRecognition.services.application_user.ApplicationUserService;
 import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
 import com.backend.FaceRecognition.services.jwt_service.JwtService;
 import com.backend.FaceRecognition.services.subject.SubjectService;
 import com.backend.FaceRecognition.utils.GetListOfUsers;
@@ -33,15 +34,18 @@ public class AdminService {
     private final StudentService studentService;
     private final JwtService jwtService;
     private final SuspensionRepository suspensionRepository;
+    private final GalleryCache galleryCache;
 
     public AdminService(ApplicationUserService applicationUserService, SubjectService subjectService,
-                        StudentService studentService, JwtService jwtService, SuspensionRepository suspensionRepository) {
+                        StudentService studentService, JwtService jwtService, SuspensionRepository suspensionRepository,
+                        GalleryCache galleryCache) {
         this.applicationUserService = applicationUserService;
         this.subjectService = subjectService;
         this.studentService = studentService;
         this.jwtService = jwtService;
 
         this.suspensionRepository = suspensionRepository;
+        this.galleryCache = galleryCache;
     }
     public ResponseEntity<String> lockAccount(String id, String bearer) {
         log.info("Request to lock account with ID: {} and bearer token: {}", id, bearer);
@@ -135,6 +139,7 @@ public class AdminService {
         }
 
         subjectService.deleteSubjectByCode(request);
+        galleryCache.invalidate(request);
         log.info("Subject with code: {} successfully deleted", request);
 
         return new ResponseEntity<>("Deleted successfully", HttpStatus.OK);
@@ -201,6 +206,7 @@ public class AdminService {
         List<Student> students = studentService.getAllStudents();
         students.forEach(Student::clear);
         studentService.saveAll(students);
+        galleryCache.invalidateAll();
         return new ResponseEntity<>("Cleared successfully", HttpStatus.OK);
     }
 
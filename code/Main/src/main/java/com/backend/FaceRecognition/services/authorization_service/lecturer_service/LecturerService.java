@@ -5,7 +5,9 @@ import com.backend.FaceRecognition.entities.*;
 import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
 import com.backend.FaceRecognition.repository.SuspensionRepository;
 import com.backend.FaceRecognition.services.attendance_service.AttendanceService;
+import com.backend.FaceRecognition.services.attendance_service.AttendanceSessionCache;
 import com.backend.FaceRecognition.services.application_user.ApplicationUserService;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
 import com.backend.FaceRecognition.services.jwt_service.JwtService;
 import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
 import com.backend.FaceRecognition.services.subject.SubjectService;
@@ -39,14 +41,18 @@ public class LecturerService {
     private final SuspensionRepository suspensionRepository;
     private final JwtService jwtService;
     private final ApplicationUserService applicationUserService;
+    private final GalleryCache galleryCache;
+    private final AttendanceSessionCache attendanceSessionCache;
 
-    public LecturerService(AttendanceService attendanceService, StudentService studentService, SubjectService subjectService, SuspensionRepository suspensionRepository, JwtService jwtService,@Lazy ApplicationUserService applicationUserService) {
+    public LecturerService(AttendanceService attendanceService, StudentService studentService, SubjectService subjectService, SuspensionRepository suspensionRepository, JwtService jwtService,@Lazy ApplicationUserService applicationUserService, GalleryCache galleryCache, AttendanceSessionCache attendanceSessionCache) {
         this.attendanceService = attendanceService;
         this.studentService = studentService;
         this.subjectService = subjectService;
         this.suspensionRepository = suspensionRepository;
         this.jwtService = jwtService;
         this.applicationUserService = applicationUserService;
+        this.galleryCache = galleryCache;
+        this.attendanceSessionCache = attendanceSessionCache;
     }
     @Lazy
     @Autowired
@@ -152,6 +158,7 @@ public class LecturerService {
             student1.remove(subject);
             studentService.saveStudent(student1);
         });
+        galleryCache.invalidate(subject.getSubjectCode());
         return new ResponseEntity<>("Cleared", HttpStatus.OK);
     }
 
@@ -179,6 +186,7 @@ public class LecturerService {
             }
             Suspension suspension = new Suspension(null, studentId, subjectCode);
             suspensionRepository.save(suspension);
+            attendanceSessionCache.refreshSubject(subjectCode);
             log.info("Student: {} suspended successfully for subject: {}", studentId, subjectCode);
             return ResponseEntity.ok(new Response("Suspended successfully"));
         } else {
@@ -186,6 +194,7 @@ public class LecturerService {
             var optional = suspensionRepository.findByStudentIdAndSubjectId(studentId, subjectCode);
             if (optional.isPresent()) {
                 suspensionRepository.delete(optional.get());
+                attendanceSessionCache.refreshSubject(subjectCode);
                 log.info("Suspension for student: {} in subject: {} has been restored", studentId, subjectCode);
                 return ResponseEntity.status(HttpStatus.OK).body(new Response("Restored"));
             } else {
@@ -283,6 +292,7 @@ public class LecturerService {
             student.add(subject);  // Assuming this method adds the subject to the student
             studentService.saveStudent(student);  // Save the updated student
             subjectService.save(subject);  // Save the updated subject
+            galleryCache.invalidate(subjectCode);
         } catch (Exception e) {
             log.error("Failed to add student: {} to subject: {}", studentId, subjectCode, e);
             return new ResponseEntity<>(new Response("Failed to add student to subject"), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,199 @@
+package com.backend.FaceRecognition.services.authorization_service.student_service;
+
+import com.backend.FaceRecognition.constants.EnrollmentStatus;
+import com.backend.FaceRecognition.entities.EnrollmentJob;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.EnrollmentJobRepository;
+import com.backend.FaceRecognition.services.jwt_service.JwtService;
+import com.backend.FaceRecognition.utils.EnrollmentJobResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Face enrollment as a queued job. The upload is persisted and acknowledged with 202 Accepted,
+ * then encoded by a fixed pool of workers sized to the sidecar's capacity; the student polls
+ * the job for the outcome. Request threads and database connections are never held while the
+ * sidecar works, and jobs still queued at shutdown are resumed on the next start, fed to the
+ * workers as the queue drains so that a backlog larger than the queue is not left behind.
+ */
+@Service
+@Slf4j
+public class EnrollmentService {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RESUME_POLL_MILLIS = 500;
+
+    private final EnrollmentJobRepository enrollmentJobRepository;
+    private final StudentService studentService;
+    private final JwtService jwtService;
+    private final WorkerThreads workerThreads;
+    private final ThreadPoolExecutor workers;
+
+    public EnrollmentService(EnrollmentJobRepository enrollmentJobRepository, StudentService studentService,
+                             JwtService jwtService, WorkerThreads workerThreads,
+                             @Value("${faceRecognition.enrollment.workers:4}") int workerCount,
+                             @Value("${faceRecognition.enrollment.queue-capacity:500}") int queueCapacity) {
+        this.enrollmentJobRepository = enrollmentJobRepository;
+        this.studentService = studentService;
+        this.jwtService = jwtService;
+        this.workerThreads = workerThreads;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreads.factory("enrollment-worker"));
+    }
+
+    public ResponseEntity<EnrollmentJobResponse> submit(MultipartFile file, String auth) {
+        String studentId = jwtService.getId(jwtService.extractTokenFromHeader(auth));
+        log.info("Received enrollment image for student ID: {}", studentId);
+        if (studentService.getStudentById(studentId).isEmpty()) {
+            log.warn("Student not found for ID: {}", studentId);
+            return new ResponseEntity<>(EnrollmentJobResponse.builder().message("Student not found").build(),
+                    HttpStatus.NOT_FOUND);
+        }
+        if (!studentService.isAcceptableImage(file)) {
+            log.warn("File is empty or exceeds size limit for student ID: {}", studentId);
+            return ResponseEntity.badRequest().body(EnrollmentJobResponse.builder()
+                    .message("Invalid file or file too large").build());
+        }
+        EnrollmentJob job;
+        try {
+            job = enrollmentJobRepository.save(new EnrollmentJob(UUID.randomUUID().toString(), studentId, file.getBytes()));
+        } catch (IOException e) {
+            log.error("Could not read enrollment upload for student ID: {}", studentId, e);
+            return ResponseEntity.badRequest().body(EnrollmentJobResponse.builder()
+                    .message("Invalid file or file too large").build());
+        }
+        String jobId = job.getId();
+        try {
+            workers.execute(() -> process(jobId));
+        } catch (RejectedExecutionException e) {
+            log.warn("Enrollment queue full, rejecting job {} for student ID: {}", jobId, studentId);
+            enrollmentJobRepository.complete(jobId, EnrollmentStatus.FAILED, "Enrollment queue is full", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "30")
+                    .body(EnrollmentJobResponse.builder().message("Enrollment queue is full, try again shortly")
+                            .jobId(jobId).status(EnrollmentStatus.FAILED).build());
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/students/image/jobs/" + jobId))
+                .body(EnrollmentJobResponse.builder()
+                        .message("Enrollment queued")
+                        .jobId(jobId)
+                        .status(EnrollmentStatus.QUEUED)
+                        .updatedAt(job.getUpdatedAt())
+                        .build());
+    }
+
+    public ResponseEntity<EnrollmentJobResponse> status(String jobId, String auth) {
+        String studentId = jwtService.getId(jwtService.extractTokenFromHeader(auth));
+        Optional<EnrollmentJob> job = enrollmentJobRepository.findByIdAndMatriculationNumber(jobId, studentId);
+        if (job.isEmpty()) {
+            return new ResponseEntity<>(EnrollmentJobResponse.builder().message("Job not found").build(),
+                    HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(EnrollmentJobResponse.builder()
+                .message(job.get().getMessage())
+                .jobId(jobId)
+                .status(job.get().getStatus())
+                .updatedAt(job.get().getUpdatedAt())
+                .build());
+    }
+
+    void process(String jobId) {
+        EnrollmentJob job = enrollmentJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getImage() == null
+                || job.getStatus() == EnrollmentStatus.SUCCEEDED || job.getStatus() == EnrollmentStatus.FAILED) {
+            return;
+        }
+        enrollmentJobRepository.updateStatus(jobId, EnrollmentStatus.PROCESSING, LocalDateTime.now());
+        ByteArrayResource image = new ByteArrayResource(job.getImage()) {
+            @Override
+            public String getFilename() {
+                return "enrollment.jpg";
+            }
+        };
+        ResponseEntity<String> outcome = null;
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                outcome = studentService.encodeAndStore(job.getMatriculationNumber(), image);
+                if (outcome.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE || attempt == MAX_ATTEMPTS) {
+                    break;
+                }
+                // The sidecar is saturated or its circuit is open; back off instead of failing the job
+                TimeUnit.SECONDS.sleep(2L * attempt);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Enrollment job {} interrupted, it will resume on next start", jobId);
+            enrollmentJobRepository.updateStatus(jobId, EnrollmentStatus.QUEUED, LocalDateTime.now());
+            return;
+        } catch (Exception e) {
+            log.error("Enrollment job {} failed", jobId, e);
+        }
+        boolean succeeded = outcome != null && outcome.getStatusCode().is2xxSuccessful();
+        String message = outcome == null ? "An unexpected error occurred" : outcome.getBody();
+        enrollmentJobRepository.complete(jobId, succeeded ? EnrollmentStatus.SUCCEEDED : EnrollmentStatus.FAILED,
+                message, LocalDateTime.now());
+        log.info("Enrollment job {} for student ID: {} finished: {}", jobId, job.getMatriculationNumber(), message);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        List<String> pending = enrollmentJobRepository.findIdsByStatusIn(
+                List.of(EnrollmentStatus.QUEUED, EnrollmentStatus.PROCESSING));
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Resuming {} pending enrollment jobs", pending.size());
+        workerThreads.factory("enrollment-resume").newThread(() -> resume(pending)).start();
+    }
+
+    /**
+     * Hands the jobs to the workers in order, waiting whenever the queue is full, which it
+     * may also be with new uploads.
+     */
+    void resume(List<String> pending) {
+        int resumed = 0;
+        try {
+            for (String jobId : pending) {
+                while (true) {
+                    try {
+                        workers.execute(() -> process(jobId));
+                        resumed++;
+                        break;
+                    } catch (RejectedExecutionException e) {
+                        if (workers.isShutdown()) {
+                            return;
+                        }
+                        TimeUnit.MILLISECONDS.sleep(RESUME_POLL_MILLIS);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.info("Resumed {} of {} pending enrollment jobs", resumed, pending.size());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
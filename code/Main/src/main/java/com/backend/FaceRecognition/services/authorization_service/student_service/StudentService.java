@@ -4,25 +4,32 @@ import com.backend.FaceRecognition.entities.ApplicationUser;
 import com.backend.FaceRecognition.entities.Attendance;
 import com.backend.FaceRecognition.entities.EncodedImages;
 import com.backend.FaceRecognition.entities.Student;
-import com.backend.FaceRecognition.repository.AttendanceRepository;
 import com.backend.FaceRecognition.repository.EncodedImagesRepository;
 import com.backend.FaceRecognition.repository.StudentRepository;
 import com.backend.FaceRecognition.services.application_user.ApplicationUserService;
+import com.backend.FaceRecognition.services.attendance_service.AttendanceLedger;
 import com.backend.FaceRecognition.services.extras.ProfilePictureService;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarClient;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarUnavailableException;
+import com.backend.FaceRecognition.services.face_recognition_service.VectorIndex;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import com.backend.FaceRecognition.services.image_request_service.TemplateConsolidationService;
 import com.backend.FaceRecognition.services.jwt_service.JwtService;
 import com.backend.FaceRecognition.utils.EncodedImage;
 import com.backend.FaceRecognition.utils.FaceRecognitionEndpoints;
 import com.backend.FaceRecognition.utils.StudentProfile;
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.*;
@@ -33,23 +40,32 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class StudentService {
     private final EncodedImagesRepository encodedImagesRepository;
     private final StudentRepository studentRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final SidecarClient sidecarClient;
     private final FaceRecognitionEndpoints faceRecognitionEndpoints;
     private final JwtService jwtService;
     private final ApplicationUserService applicationUserService;
-    private final AttendanceRepository attendanceRepository;
+    private final AttendanceLedger attendanceLedger;
     private final int MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB in bytes
     private final ProfilePictureService profilePictureService;
-
-    @Lazy
-    public StudentService(EncodedImagesRepository encodedImagesRepository, StudentRepository studentRepository, FaceRecognitionEndpoints faceRecognitionEndpoints, JwtService jwtService, @Lazy ApplicationUserService applicationUserService, AttendanceRepository attendanceRepository, ProfilePictureService profilePictureService) {
+    private final GalleryCache galleryCache;
+    private final CampusFaceIndex campusFaceIndex;
+    private final TemplateConsolidationService templateConsolidationService;
+    private final double duplicateTolerance;
+
+    public StudentService(EncodedImagesRepository encodedImagesRepository, StudentRepository studentRepository, @Lazy FaceRecognitionEndpoints faceRecognitionEndpoints, JwtService jwtService, @Lazy ApplicationUserService applicationUserService, AttendanceLedger attendanceLedger, ProfilePictureService profilePictureService, GalleryCache galleryCache, CampusFaceIndex campusFaceIndex, SidecarClient sidecarClient, TemplateConsolidationService templateConsolidationService,
+                          @Value("${faceRecognition.index.duplicate-tolerance:0.4}") double duplicateTolerance) {
+        this.sidecarClient = sidecarClient;
+        this.templateConsolidationService = templateConsolidationService;
         this.encodedImagesRepository = encodedImagesRepository;
         this.studentRepository = studentRepository;
         this.faceRecognitionEndpoints = faceRecognitionEndpoints;
         this.jwtService = jwtService;
         this.applicationUserService = applicationUserService;
-        this.attendanceRepository = attendanceRepository;
+        this.attendanceLedger = attendanceLedger;
         this.profilePictureService = profilePictureService;
+        this.galleryCache = galleryCache;
+        this.campusFaceIndex = campusFaceIndex;
+        this.duplicateTolerance = duplicateTolerance;
     }
 
     public List<Student> getAllStudents() {
@@ -65,60 +81,61 @@ public class StudentService {
          studentRepository.saveAll(student);
     }
 
-    @Transactional
-    public ResponseEntity<String> addStudentImage(MultipartFile file, String auth) {
-        log.info("Received request to add image for student with authorization header");
-
-        String token = jwtService.extractTokenFromHeader(auth);
-        String studentId = jwtService.getId(token);
-        log.info("Extracted student ID from token: {}", studentId);
-
-        Optional<Student> studentOptional = getStudentById(studentId);
-        if (studentOptional.isEmpty()) {
+    /**
+     * Encodes one enrollment image on the sidecar and stores the template. No transaction or
+     * database connection is held during the sidecar call; the insert and the template
+     * consolidation that follows it each run in their own short transaction.
+     *
+     * @return the outcome message and status, as reported to the student
+     */
+    public ResponseEntity<String> encodeAndStore(String studentId, Resource image) {
+        if (!studentRepository.existsById(studentId)) {
             log.warn("Student not found for ID: {}", studentId);
             return new ResponseEntity<>("Student not found", HttpStatus.NOT_FOUND);
         }
 
-        Student student = studentOptional.get();
-        log.info("Adding image for student: {}", student.getMatriculationNumber());
-
-        // Validate file type and size before proceeding
-        if (file.isEmpty() || file.getSize() > MAX_FILE_SIZE) {
-            log.warn("File is empty or exceeds size limit for student ID: {}", studentId);
-            return new ResponseEntity<>("Invalid file or file too large", HttpStatus.BAD_REQUEST);
-        }
-
         String url = faceRecognitionEndpoints.getEndpoint("ip") + "?student_id=" + studentId;
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", file.getResource()); // Assuming getResource() gives InputStreamResource
+        body.add("file", image);
         HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
         try {
             log.info("Sending image to face recognition service at URL: {}", url);
-            ResponseEntity<EncodedImage> responseEntity = restTemplate.exchange(
+            ResponseEntity<EncodedImage> responseEntity = sidecarClient.exchange(
                     url,
                     HttpMethod.POST,
                     requestEntity,
                     EncodedImage.class);
 
-            EncodedImage image = responseEntity.getBody();
-            if (image == null || image.getData() == null) {
+            EncodedImage encoded = responseEntity.getBody();
+            if (encoded == null || encoded.getData() == null) {
                 log.error("Invalid or empty response received from face recognition service");
                 return new ResponseEntity<>("Bad Image: Could not encode image", HttpStatus.BAD_REQUEST);
             }
 
-            if ("Invalid Amount of Faces detected".equals(image.getMessage())) {
+            if ("Invalid Amount of Faces detected".equals(encoded.getMessage())) {
                 log.warn("Face recognition service detected an invalid number of faces for student ID: {}", studentId);
                 return new ResponseEntity<>("Invalid amount of faces detected", HttpStatus.BAD_REQUEST);
             }
 
+            float[] vector = FaceGallery.toFloats(encoded.getData());
+            Optional<VectorIndex.Neighbour> duplicate = campusFaceIndex.findOtherOwner(vector, studentId, duplicateTolerance);
+            if (duplicate.isPresent()) {
+                log.warn("Face uploaded by student ID: {} matches enrolled student ID: {} at distance {}",
+                        studentId, duplicate.get().label(), duplicate.get().distance());
+                return new ResponseEntity<>("Face already enrolled for another student", HttpStatus.CONFLICT);
+            }
+
             EncodedImages imageEntity = EncodedImages.builder()
-                    .data(image.getData())
+                    .vector(vector)
                     .matriculationNumber(studentId)
                     .build();
-            encodedImagesRepository.save(imageEntity);
+            campusFaceIndex.add(encodedImagesRepository.save(imageEntity));
+            templateConsolidationService.consolidate(studentId);
+            // Runs on an enrollment worker without a session, so the subjects are queried, not navigated
+            galleryCache.invalidate(studentRepository.findSubjectCodesByMatriculationNumber(studentId));
 
             log.info("Image successfully saved for student ID: {}", studentId);
             return new ResponseEntity<>("Saved successfully", HttpStatus.OK);
@@ -128,11 +145,20 @@ public class StudentService {
                     e.getStatusCode(), e.getResponseBodyAsString());
             return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsString());
 
+        } catch (SidecarUnavailableException e) {
+            log.warn("Face recognition service unavailable while adding image for student ID: {}: {}", studentId, e.getMessage());
+            return new ResponseEntity<>("Face recognition is temporarily unavailable, try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
+
         } catch (Exception e) {
             log.error("Unexpected error occurred while adding student image for student ID: {}", studentId, e);
             return new ResponseEntity<>("An unexpected error occurred", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    public boolean isAcceptableImage(MultipartFile file) {
+        return !file.isEmpty() && file.getSize() <= MAX_FILE_SIZE;
+    }
+
     public Set<Student> getAllStudentsOfferingCourse(String subjectCode) {
         return studentRepository.findAllStudentsBySubjectCode(subjectCode);
     }
@@ -167,7 +193,7 @@ public class StudentService {
                 .toArray(StudentProfile.Course[]::new);
 
         // Calculate attendance score
-        List<Attendance> studentAttendance = attendanceRepository.findByStudentId(studentId);
+        List<Attendance> studentAttendance = attendanceLedger.studentRecord(studentId);
         long presentCount = studentAttendance.stream()
                 .filter(v -> v.getStatus() == AttendanceStatus.PRESENT)
                 .count();
@@ -0,0 +1,235 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Campus-wide index over every enrolled face template, used to identify a face
+ * without knowing the subject. Starts as an exact scan and switches to an HNSW graph
+ * once the number of templates passes the configured threshold.
+ * <p>
+ * Changes are applied after the transaction that stored them commits. Changes made while
+ * the initial build is still paging through the table are buffered and replayed once it
+ * has read every row, skipping templates the build already picked up.
+ */
+@Component
+@Slf4j
+public class CampusFaceIndex {
+    private static final int BUILD_BATCH = 1000;
+
+    private final EncodedImagesRepository encodedImagesRepository;
+    private final int exactThreshold;
+    private final int maxConnections;
+    private final int efConstruction;
+    private final int efSearch;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock; pending is null once the initial build has finished or failed
+    private VectorIndex index = new ExactVectorIndex();
+    private List<Change> pending = new ArrayList<>();
+    private volatile boolean ready;
+
+    public CampusFaceIndex(EncodedImagesRepository encodedImagesRepository,
+                           @Value("${faceRecognition.index.exact-threshold:2000}") int exactThreshold,
+                           @Value("${faceRecognition.index.max-connections:16}") int maxConnections,
+                           @Value("${faceRecognition.index.ef-construction:100}") int efConstruction,
+                           @Value("${faceRecognition.index.ef-search:128}") int efSearch) {
+        this.encodedImagesRepository = encodedImagesRepository;
+        this.exactThreshold = exactThreshold;
+        this.maxConnections = maxConnections;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::build, "campus-face-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pages through the table by id rather than by offset, so rows deleted by consolidation
+     * while the build runs do not shift later rows past it.
+     */
+    void build() {
+        log.info("Building campus face index...");
+        long started = System.currentTimeMillis();
+        try {
+            Set<Integer> indexed = new HashSet<>();
+            Integer lastId = 0;
+            List<EncodedImages> batch;
+            do {
+                batch = encodedImagesRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastId);
+                for (EncodedImages image : batch) {
+                    insert(image.getMatriculationNumber(), image.templateVector());
+                    indexed.add(image.getId());
+                    lastId = image.getId();
+                }
+            } while (batch.size() == BUILD_BATCH);
+            lock.writeLock().lock();
+            try {
+                pending.forEach(change -> apply(change, indexed));
+                pending = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Campus face index ready with {} templates in {} ms", size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Failed to build campus face index, campus-wide identification is unavailable", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds a newly stored template once the surrounding transaction, if any, commits.
+     */
+    public void add(EncodedImages image) {
+        afterCommit(new Change(image.getMatriculationNumber(), List.of(image), false));
+    }
+
+    /**
+     * Replaces every template of the student with the given ones once the surrounding
+     * transaction, if any, commits. Used when consolidation deletes templates, so deleted
+     * faces stop matching and stop flagging duplicates.
+     */
+    public void replace(String matriculationNumber, List<EncodedImages> templates) {
+        afterCommit(new Change(matriculationNumber, List.copyOf(templates), true));
+    }
+
+    private void afterCommit(Change change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(change);
+            }
+        });
+    }
+
+    private void submit(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            } else if (ready) {
+                apply(change, Set.of());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Change change, Set<Integer> indexed) {
+        if (change.replace()) {
+            index.remove(change.matriculationNumber());
+        }
+        for (EncodedImages image : change.templates()) {
+            if (change.replace() || !indexed.contains(image.getId())) {
+                insert(change.matriculationNumber(), image.templateVector());
+            }
+        }
+        if (index instanceof HnswVectorIndex hnsw && hnsw.removedCount() > hnsw.size()) {
+            log.info("Rebuilding campus face index without {} removed templates", hnsw.removedCount());
+            HnswVectorIndex rebuilt = new HnswVectorIndex(maxConnections, efConstruction, efSearch);
+            hnsw.forEach(rebuilt::add);
+            index = rebuilt;
+        }
+    }
+
+    private void insert(String matriculationNumber, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.add(matriculationNumber, vector);
+            if (index instanceof ExactVectorIndex exact && exact.size() >= exactThreshold) {
+                log.info("Campus face index reached {} templates, switching to HNSW", exact.size());
+                HnswVectorIndex hnsw = new HnswVectorIndex(maxConnections, efConstruction, efSearch);
+                exact.forEach(hnsw::add);
+                index = hnsw;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<VectorIndex.Neighbour> search(float[] probe, int k) {
+        lock.readLock().lock();
+        try {
+            return index.search(probe, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the closest enrolled template, if any lies within the given distance
+     */
+    public Optional<VectorIndex.Neighbour> identify(float[] probe, double tolerance) {
+        return search(probe, 1).stream()
+                .filter(neighbour -> neighbour.distance() <= tolerance)
+                .findFirst();
+    }
+
+    /**
+     * @return the closest template within tolerance that belongs to someone other than the given student
+     */
+    public Optional<VectorIndex.Neighbour> findOtherOwner(float[] probe, String matriculationNumber, double tolerance) {
+        // The student's own templates can fill the closest results, so widen the search until it
+        // reaches past the tolerance or runs out of templates
+        for (int k = 16; ; k *= 4) {
+            List<VectorIndex.Neighbour> neighbours = search(probe, k);
+            for (VectorIndex.Neighbour neighbour : neighbours) {
+                if (neighbour.distance() > tolerance) {
+                    return Optional.empty();
+                }
+                if (!neighbour.label().equals(matriculationNumber)) {
+                    return Optional.of(neighbour);
+                }
+            }
+            if (neighbours.size() < k) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record Change(String matriculationNumber, List<EncodedImages> templates, boolean replace) {
+    }
+}
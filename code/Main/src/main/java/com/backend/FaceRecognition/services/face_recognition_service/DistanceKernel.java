@@ -0,0 +1,14 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+/**
+ * Batch squared-Euclidean scoring of one probe against rows of a contiguous, row-major gallery
+ * array. The probe length is the dimension; row {@code firstRow + r} is scored into {@code out[r]}.
+ */
+public interface DistanceKernel {
+
+    void squaredDistances(float[] probe, float[] gallery, int firstRow, int rows, float[] out);
+
+    void squaredDistances(byte[] probe, byte[] gallery, int firstRow, int rows, int[] out);
+
+    String name();
+}
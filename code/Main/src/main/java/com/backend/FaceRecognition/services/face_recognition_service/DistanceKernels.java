@@ -0,0 +1,46 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the distance kernel once per JVM: the Vector API kernel when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, the scalar one otherwise.
+ */
+@Slf4j
+public final class DistanceKernels {
+    private static final DistanceKernel PREFERRED = select();
+
+    private DistanceKernels() {
+    }
+
+    public static DistanceKernel preferred() {
+        return PREFERRED;
+    }
+
+    public static DistanceKernel scalar() {
+        return new ScalarDistanceKernel();
+    }
+
+    /**
+     * @return the Vector API kernel, or null if the module is not available
+     */
+    public static DistanceKernel vector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return new VectorDistanceKernel();
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private static DistanceKernel select() {
+        DistanceKernel kernel = vector();
+        if (kernel == null) {
+            kernel = scalar();
+        }
+        log.info("Using {} distance kernel for gallery scans", kernel.name());
+        return kernel;
+    }
+}
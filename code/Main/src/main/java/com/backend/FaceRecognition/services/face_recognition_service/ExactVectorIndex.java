@@ -0,0 +1,95 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Brute-force index: scores every stored template. Cheapest option for small galleries
+ * and the reference the approximate indexes are measured against.
+ */
+public class ExactVectorIndex implements VectorIndex {
+    private static final int SCAN_BLOCK = 1024;
+    private static final DistanceKernel KERNEL = DistanceKernels.preferred();
+
+    private final List<String> labels = new ArrayList<>();
+    private float[] vectors = new float[0];
+    private int dimension;
+
+    @Override
+    public void add(String label, float[] vector) {
+        if (labels.isEmpty()) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        int offset = labels.size() * dimension;
+        if (offset + dimension > vectors.length) {
+            vectors = Arrays.copyOf(vectors, Math.max(dimension * 16, vectors.length * 2));
+        }
+        System.arraycopy(vector, 0, vectors, offset, dimension);
+        labels.add(label);
+    }
+
+    @Override
+    public List<Neighbour> search(float[] query, int k) {
+        if (labels.isEmpty() || query.length != dimension || k <= 0) {
+            return List.of();
+        }
+        // Max-heap on distance holding the k best rows seen so far
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::distance).reversed());
+        int count = labels.size();
+        float[] scores = new float[Math.min(SCAN_BLOCK, count)];
+        for (int firstRow = 0; firstRow < count; firstRow += SCAN_BLOCK) {
+            int rows = Math.min(SCAN_BLOCK, count - firstRow);
+            KERNEL.squaredDistances(query, vectors, firstRow, rows, scores);
+            for (int r = 0; r < rows; r++) {
+                double sum = scores[r];
+                if (best.size() < k) {
+                    best.add(new Neighbour(labels.get(firstRow + r), sum));
+                } else if (sum < best.peek().distance()) {
+                    best.poll();
+                    best.add(new Neighbour(labels.get(firstRow + r), sum));
+                }
+            }
+        }
+        List<Neighbour> result = new ArrayList<>(best.size());
+        best.forEach(neighbour -> result.add(new Neighbour(neighbour.label(), Math.sqrt(neighbour.distance()))));
+        result.sort(Comparator.comparingDouble(Neighbour::distance));
+        return result;
+    }
+
+    @Override
+    public int remove(String label) {
+        int kept = 0;
+        for (int row = 0; row < labels.size(); row++) {
+            if (labels.get(row).equals(label)) {
+                continue;
+            }
+            if (kept != row) {
+                labels.set(kept, labels.get(row));
+                System.arraycopy(vectors, row * dimension, vectors, kept * dimension, dimension);
+            }
+            kept++;
+        }
+        int removed = labels.size() - kept;
+        labels.subList(kept, labels.size()).clear();
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return labels.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, float[]> consumer) {
+        for (int row = 0; row < labels.size(); row++) {
+            int offset = row * dimension;
+            consumer.accept(labels.get(row), Arrays.copyOfRange(vectors, offset, offset + dimension));
+        }
+    }
+}
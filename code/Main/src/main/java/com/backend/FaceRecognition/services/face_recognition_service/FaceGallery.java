@@ -0,0 +1,250 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable in-memory gallery of face templates for one subject.
+ * Templates are grouped per student, and each student is summarised by the centroid of
+ * their templates, kept as a scalar-quantized int8 code in one contiguous array. A search
+ * scans those centroid codes first and compares the probe at full precision only against
+ * the exemplars of the closest few students. The full-precision vectors are shared between
+ * every subject gallery the student appears in rather than copied per gallery.
+ * <p>
+ * The int8 codes make the scan cheaper; they do not make the gallery smaller. The float
+ * vectors stay resident for the exact re-rank and for the encodings feed, and each gallery
+ * adds one {@code dimension}-byte code per student on top of them.
+ */
+public final class FaceGallery {
+    static final int SHORTLIST_STUDENTS = 8;
+    private static final int SCAN_BLOCK = 1024;
+    private static final DistanceKernel KERNEL = DistanceKernels.preferred();
+
+    // Per template, grouped so that each student's templates are contiguous
+    private final String[] labels;
+    private final float[][] templates;
+    // Per student: templates[studentStart[s]..studentStart[s + 1]) belong to students[s]
+    private final String[] students;
+    private final int[] studentStart;
+    private final byte[] centroidCodes;
+    private final float scale;
+    private final int dimension;
+
+    private FaceGallery(String[] students, int[] studentStart, String[] labels, float[][] templates, int dimension) {
+        this.students = students;
+        this.studentStart = studentStart;
+        this.labels = labels;
+        this.templates = templates;
+        this.dimension = dimension;
+        float[][] centroids = new float[students.length][];
+        for (int s = 0; s < students.length; s++) {
+            centroids[s] = TemplateConsolidation.centroid(
+                    Arrays.asList(templates).subList(studentStart[s], studentStart[s + 1]));
+        }
+        float maxAbs = 0;
+        for (float[] template : templates) {
+            for (float value : template) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+        }
+        this.scale = maxAbs == 0 ? 1 : maxAbs / 127f;
+        this.centroidCodes = new byte[students.length * dimension];
+        for (int s = 0; s < students.length; s++) {
+            quantize(centroids[s], centroidCodes, s * dimension);
+        }
+    }
+
+    public static FaceGallery empty() {
+        return new FaceGallery(new String[0], new int[1], new String[0], new float[0][], 0);
+    }
+
+    public static FaceGallery of(List<EncodedImages> encodedImages) {
+        return of(encodedImages, EncodedImages::templateVector);
+    }
+
+    /**
+     * Builds a gallery from stored encodings, skipping rows without data or whose
+     * dimension differs from the first template.
+     *
+     * @param vectorSource resolves the full-precision vector of a row, letting callers share
+     *                     one array per template across galleries
+     */
+    public static FaceGallery of(List<EncodedImages> encodedImages, Function<EncodedImages, float[]> vectorSource) {
+        Map<String, List<float[]>> byStudent = new LinkedHashMap<>();
+        int dimension = 0;
+        int count = 0;
+        for (EncodedImages image : encodedImages) {
+            float[] vector = vectorSource.apply(image);
+            if (vector == null || vector.length == 0) {
+                continue;
+            }
+            if (dimension == 0) {
+                dimension = vector.length;
+            }
+            if (vector.length == dimension) {
+                byStudent.computeIfAbsent(image.getMatriculationNumber(), key -> new ArrayList<>()).add(vector);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return empty();
+        }
+        String[] students = new String[byStudent.size()];
+        int[] studentStart = new int[byStudent.size() + 1];
+        String[] labels = new String[count];
+        float[][] templates = new float[count][];
+        int student = 0;
+        int row = 0;
+        for (Map.Entry<String, List<float[]>> entry : byStudent.entrySet()) {
+            students[student] = entry.getKey();
+            studentStart[student] = row;
+            for (float[] vector : entry.getValue()) {
+                labels[row] = entry.getKey();
+                templates[row++] = vector;
+            }
+            student++;
+        }
+        studentStart[student] = row;
+        return new FaceGallery(students, studentStart, labels, templates, dimension);
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public boolean isEmpty() {
+        return labels.length == 0;
+    }
+
+    public String label(int index) {
+        return labels[index];
+    }
+
+    public double[] vectorAsDoubles(int index) {
+        return toDoubles(templates[index]);
+    }
+
+    float[] template(int index) {
+        return templates[index];
+    }
+
+    public int studentCount() {
+        return students.length;
+    }
+
+    /**
+     * Nearest-neighbour search using Euclidean distance, the same metric as
+     * face_recognition.face_distance on the sidecar. The int8 centroid codes are scanned
+     * first and every template of the closest {@value #SHORTLIST_STUDENTS} students is
+     * then scored at full precision, so the returned distance is exact.
+     *
+     * @return the closest template, or null if the gallery is empty or the probe has the wrong dimension
+     */
+    public Match nearest(float[] probe) {
+        if (isEmpty() || probe == null || probe.length != dimension) {
+            return null;
+        }
+        byte[] probeCode = new byte[dimension];
+        quantize(probe, probeCode, 0);
+        int candidates = Math.min(SHORTLIST_STUDENTS, students.length);
+        int[] candidateStudents = new int[candidates];
+        int[] candidateScores = new int[candidates];
+        Arrays.fill(candidateScores, Integer.MAX_VALUE);
+        int[] scores = new int[Math.min(SCAN_BLOCK, students.length)];
+        for (int first = 0; first < students.length; first += SCAN_BLOCK) {
+            int rows = Math.min(SCAN_BLOCK, students.length - first);
+            KERNEL.squaredDistances(probeCode, centroidCodes, first, rows, scores);
+            for (int r = 0; r < rows; r++) {
+                int sum = scores[r];
+                if (sum < candidateScores[candidates - 1]) {
+                    // Insertion into the small sorted candidate list
+                    int position = candidates - 1;
+                    while (position > 0 && candidateScores[position - 1] > sum) {
+                        candidateScores[position] = candidateScores[position - 1];
+                        candidateStudents[position] = candidateStudents[position - 1];
+                        position--;
+                    }
+                    candidateScores[position] = sum;
+                    candidateStudents[position] = first + r;
+                }
+            }
+        }
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            int student = candidateStudents[candidate];
+            for (int row = studentStart[student]; row < studentStart[student + 1]; row++) {
+                double distance = squaredDistance(templates[row], probe);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = row;
+                }
+            }
+        }
+        return new Match(labels[best], Math.sqrt(bestDistance));
+    }
+
+    /**
+     * Full-precision scan over every template; the reference the quantized search is measured against.
+     */
+    public Match exactNearest(float[] probe) {
+        if (isEmpty() || probe == null || probe.length != dimension) {
+            return null;
+        }
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int row = 0; row < labels.length; row++) {
+            double distance = squaredDistance(templates[row], probe);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = row;
+            }
+        }
+        return new Match(labels[best], Math.sqrt(bestDistance));
+    }
+
+    private void quantize(float[] vector, byte[] target, int offset) {
+        for (int i = 0; i < dimension; i++) {
+            int code = Math.round(vector[i] / scale);
+            target[offset + i] = (byte) Math.max(-127, Math.min(127, code));
+        }
+    }
+
+    private static double squaredDistance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    public static float[] toFloats(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    public static double[] toDoubles(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    public record Match(String matriculationNumber, double distance) {
+    }
+}
@@ -2,21 +2,23 @@ package com.backend.FaceRecognition.services.face_recognition_service;
 
 import com.backend.FaceRecognition.entities.Student;
 import com.backend.FaceRecognition.entities.Subject;
-import com.backend.FaceRecognition.services.image_request_service.EncodingService;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
 import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
 import com.backend.FaceRecognition.services.subject.SubjectService;
 import com.backend.FaceRecognition.utils.*;
 
-import com.backend.FaceRecognition.utils.student.StudentRequest;
-
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
 
@@ -25,108 +27,249 @@ import java.util.*;
 public class FaceRecognitionService {
     private final StudentService studentService;
     private final SubjectService subjectService;
-    private final EncodingService encodingService;
+    private final GalleryCache galleryCache;
+    private final CampusFaceIndex campusFaceIndex;
     private final FaceRecognitionEndpoints faceRecognitionEndpoints;
+    private final SidecarClient sidecarClient;
+    private final ProbeImagePreparer probeImagePreparer;
+    private final double tolerance;
+
     public FaceRecognitionService(StudentService studentService, SubjectService subjectService,
-                                  EncodingService encodingService, FaceRecognitionEndpoints faceRecognitionEndpoints) {
+                                  GalleryCache galleryCache, CampusFaceIndex campusFaceIndex,
+                                  FaceRecognitionEndpoints faceRecognitionEndpoints, SidecarClient sidecarClient,
+                                  ProbeImagePreparer probeImagePreparer,
+                                  @Value("${faceRecognition.tolerance:0.6}") double tolerance) {
         this.studentService = studentService;
         this.subjectService = subjectService;
-        this.encodingService = encodingService;
+        this.galleryCache = galleryCache;
+        this.campusFaceIndex = campusFaceIndex;
         this.faceRecognitionEndpoints = faceRecognitionEndpoints;
+        this.sidecarClient = sidecarClient;
+        this.probeImagePreparer = probeImagePreparer;
+        this.tolerance = tolerance;
     }
 
 
-    public ResponseEntity<EncodeImageListResponse> getEncodings(String subjectCode) {
+    public ResponseEntity<EncodeImageListResponse> getEncodings(String subjectCode, String ifNoneMatch) {
         log.info("Fetching encodings for subject code: {}", subjectCode);
+        String etag = galleryCache.etag(subjectCode);
+        if (etag.equals(ifNoneMatch)) {
+            log.info("Encodings for subject code: {} not modified since {}", subjectCode, etag);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         // Fetch the subject
         Subject subject = subjectService.findSubjectByCode(subjectCode).orElse(null);
         if (subject == null) {
             log.warn("Subject not found for subject code: {}", subjectCode);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        log.info("Subject found: {}", subject);
-        // Fetch students offering the course
-        Set<Student> students = studentService.getAllStudentsOfferingCourse(subjectCode);
-        if (students.isEmpty()) {
-            log.info("No students found offering the course with subject code: {}", subjectCode);
-        } else {
-            log.info("Found {} students offering the course with subject code: {}", students.size(), subjectCode);
+        GalleryCache.SubjectGallery subjectGallery = galleryCache.get(subjectCode);
+        FaceGallery gallery = subjectGallery.gallery();
+        EncodeImageListResponse response = new EncodeImageListResponse();
+        for (int i = 0; i < gallery.size(); i++) {
+            response.add(gallery.label(i), gallery.vectorAsDoubles(i));
         }
-        // Extract matriculation numbers
-        List<String> matriculationNumbers = students.stream()
-                .map(Student::getMatriculationNumber)
-                .toList();
-        log.info("Matriculation numbers extracted: {}", matriculationNumbers);
-        // Get the response
-        EncodeImageListResponse response = getResponse(matriculationNumbers);
-        log.info("Encodings response prepared for subject code: {}", subjectCode);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        log.info("Encodings response prepared for subject code: {} with {} templates", subjectCode, gallery.size());
+        return ResponseEntity.ok()
+                .eTag(galleryCache.etag(subjectGallery))
+                .body(response);
     }
 
-    private EncodeImageListResponse getResponse(List<String> matriculationNumbers) {
-        List<EncodedImageResponse> imageResponses = matriculationNumbers.stream()
-                .map(encodingService::getStudentEncodings)
-                .filter(listResponseEntity -> listResponseEntity.getStatusCode().isSameCodeAs(HttpStatus.OK))
-                .map(ResponseEntity::getBody)
-                .filter(Objects::nonNull)
-                .flatMap(List::stream)
-                .toList();
-        EncodeImageListResponse request = new EncodeImageListResponse();
-        imageResponses.forEach(eI -> request.add(eI.getMatriculationNumber(), eI.getData()));
-        return request;
+    /**
+     * Streams the subject gallery in the compact {@link GalleryWireFormat} instead of JSON.
+     */
+    public ResponseEntity<StreamingResponseBody> getEncodingsBinary(String subjectCode, String ifNoneMatch) {
+        log.info("Fetching binary encodings for subject code: {}", subjectCode);
+        String etag = binaryEtag(galleryCache.etag(subjectCode));
+        if (etag.equals(ifNoneMatch)) {
+            log.info("Binary encodings for subject code: {} not modified since {}", subjectCode, etag);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        if (subjectService.findSubjectByCode(subjectCode).isEmpty()) {
+            log.warn("Subject not found for subject code: {}", subjectCode);
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        GalleryCache.SubjectGallery subjectGallery = galleryCache.get(subjectCode);
+        FaceGallery gallery = subjectGallery.gallery();
+        log.info("Streaming {} templates for subject code: {}", gallery.size(), subjectCode);
+        return ResponseEntity.ok()
+                .eTag(binaryEtag(galleryCache.etag(subjectGallery)))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(outputStream -> GalleryWireFormat.write(gallery, outputStream));
     }
 
+    private static String binaryEtag(String etag) {
+        // Each representation needs its own strong validator
+        return etag.substring(0, etag.length() - 1) + "-f32\"";
+    }
 
-    public ResponseEntity<Student> recognizeFace( MultipartFile file, String subjectId) {
+    /**
+     * Recognizes the face in the uploaded image against the gallery of students offering the subject.
+     * The sidecar only computes the probe embeddings; the nearest-neighbour match runs in this JVM.
+     */
+    public ResponseEntity<Student> recognizeFace(MultipartFile file, String subjectId) {
         log.info("Starting face recognition for subject ID: {}", subjectId);
+        try {
+            List<float[]> probes = extractProbeEncodings(file);
+            if (probes.isEmpty()) {
+                log.warn("No face detected in image for subject ID: {}", subjectId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            FaceGallery gallery = loadGallery(subjectId);
+            if (gallery.isEmpty()) {
+                log.warn("No encodings available for subject ID: {}", subjectId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            FaceGallery.Match best = null;
+            for (float[] probe : probes) {
+                FaceGallery.Match match = gallery.nearest(probe);
+                if (match != null && (best == null || match.distance() < best.distance())) {
+                    best = match;
+                }
+            }
+            if (best == null || best.distance() > tolerance) {
+                log.info("No match within tolerance {} for subject ID: {}", tolerance, subjectId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            log.info("Face matched student ID: {} at distance {}", best.matriculationNumber(), best.distance());
+            Student student = studentService.getStudentById(best.matriculationNumber()).orElse(null);
+            if (student == null) {
+                log.warn("Student not found in the database for student ID: {}", best.matriculationNumber());
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(student, HttpStatus.OK);
+        } catch (HttpClientErrorException | HttpServerErrorException | SidecarUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Exception occurred during face recognition: {}", e.getMessage(), e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-        String endpoint = faceRecognitionEndpoints.getEndpoint("rec") + "?subject_id=" + subjectId;
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    /**
+     * Recognizes every face in a classroom photo against the subject gallery. The photo goes to
+     * the sidecar at its original resolution: faces at the back of a lecture hall are only a few
+     * dozen pixels wide, and the probe downscaling would leave nothing to detect.
+     * Each student is returned at most once, at the distance of their closest face.
+     *
+     * @return the matches within tolerance, and the number of faces the sidecar detected
+     */
+    public ClassroomRecognition recognizeClassroom(MultipartFile file, String subjectCode) {
+        return match(extractClassroomEncodings(file.getResource()), subjectCode);
+    }
 
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", file.getResource());
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+    /**
+     * Recognizes the faces in a kiosk frame, which like a single probe is downscaled first.
+     */
+    public ClassroomRecognition recognizeFaces(Resource image, String subjectCode) {
+        return match(extractProbeEncodings(image), subjectCode);
+    }
 
+    private ClassroomRecognition match(List<float[]> probes, String subjectCode) {
+        FaceGallery gallery = loadGallery(subjectCode);
+        Map<String, FaceGallery.Match> matches = new HashMap<>();
+        for (float[] probe : probes) {
+            FaceGallery.Match match = gallery.nearest(probe);
+            if (match == null || match.distance() > tolerance) {
+                continue;
+            }
+            matches.merge(match.matriculationNumber(), match,
+                    (current, candidate) -> candidate.distance() < current.distance() ? candidate : current);
+        }
+        log.info("Recognized {} of {} faces for subject ID: {}", matches.size(), probes.size(), subjectCode);
+        return new ClassroomRecognition(probes.size(), List.copyOf(matches.values()));
+    }
+
+    public record ClassroomRecognition(int facesDetected, List<FaceGallery.Match> matches) {
+    }
+
+    /**
+     * Identifies the face in the uploaded image against every enrolled student and reports
+     * the subjects that student is registered for.
+     */
+    public ResponseEntity<IdentifyResponse> identifyFace(MultipartFile file) {
+        if (!campusFaceIndex.isReady()) {
+            log.warn("Campus face index is still building");
+            return new ResponseEntity<>(IdentifyResponse.builder().message("Index is not ready yet").build(),
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        List<float[]> probes;
         try {
-            log.info("Sending request to face recognition endpoint: {}", endpoint);
-
-            ResponseEntity<StudentRequest> responseEntity = restTemplate.exchange(
-                    endpoint,
-                    HttpMethod.POST,
-                    requestEntity,
-                    StudentRequest.class
-            );
-
-            log.info("Received response with status code: {}", responseEntity.getStatusCode());
-
-            if (responseEntity.getStatusCode().is2xxSuccessful()) {
-                StudentRequest val = responseEntity.getBody();
-                if (val == null) {
-                    log.warn("No student found in response for subject ID: {}", subjectId);
-                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-                }
+            probes = extractProbeEncodings(file);
+        } catch (SidecarUnavailableException e) {
+            return new ResponseEntity<>(IdentifyResponse.builder().message(e.getMessage()).build(),
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (probes.size() != 1) {
+            return ResponseEntity.badRequest().body(IdentifyResponse.builder()
+                    .message("Invalid amount of faces detected").build());
+        }
+        Optional<VectorIndex.Neighbour> match = campusFaceIndex.identify(probes.get(0), tolerance);
+        if (match.isEmpty()) {
+            return new ResponseEntity<>(IdentifyResponse.builder().message("No enrolled student matched").build(),
+                    HttpStatus.NOT_FOUND);
+        }
+        Student student = studentService.getStudentById(match.get().label()).orElse(null);
+        if (student == null) {
+            log.warn("Index matched unknown student ID: {}", match.get().label());
+            return new ResponseEntity<>(IdentifyResponse.builder().message("No enrolled student matched").build(),
+                    HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(IdentifyResponse.builder()
+                .message("Identified")
+                .matriculationNumber(student.getMatriculationNumber())
+                .firstname(student.getFirstname())
+                .lastname(student.getLastname())
+                .distance(match.get().distance())
+                .subjects(student.getSubjects().stream().map(Subject::getSubjectCode).sorted().toList())
+                .build());
+    }
 
-                log.info("Student ID found in response: {}", val.getStudent_id());
-                Student student = studentService.getStudentById(val.getStudent_id()).orElse(null);
+    /**
+     * Sends the image, downscaled by {@link ProbeImagePreparer}, to the sidecar and returns
+     * the embedding of every face detected in it.
+     */
+    public List<float[]> extractProbeEncodings(MultipartFile file) {
+        return extractProbeEncodings(file.getResource());
+    }
 
-                if (student == null) {
-                    log.warn("Student not found in the database for student ID: {}", val.getStudent_id());
-                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-                }
+    public List<float[]> extractProbeEncodings(Resource image) {
+        return embed(faceRecognitionEndpoints.getEndpoint("embed"), probeImagePreparer.prepare(image));
+    }
 
-                log.info("Student successfully recognized and retrieved: {}", student);
-                return new ResponseEntity<>(student, HttpStatus.OK);
-            } else {
-                log.error("Face recognition service returned error status: {}", responseEntity.getStatusCode());
-                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-        } catch (Exception e) {
-            log.error("Exception occurred during face recognition: {}", e.getMessage(), e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    /**
+     * Sends the photo untouched and asks the sidecar to skip its fixed probe resize as well.
+     */
+    List<float[]> extractClassroomEncodings(Resource image) {
+        return embed(faceRecognitionEndpoints.getEndpoint("embed") + "?full_resolution=true", image);
+    }
+
+    private List<float[]> embed(String endpoint, Resource image) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", image);
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+
+        log.info("Sending request to embedding endpoint: {}", endpoint);
+        ResponseEntity<ProbeEncodings> responseEntity = sidecarClient.exchange(
+                endpoint,
+                HttpMethod.POST,
+                requestEntity,
+                ProbeEncodings.class
+        );
+        ProbeEncodings encodings = responseEntity.getBody();
+        if (encodings == null || encodings.getEncodings() == null) {
+            return List.of();
         }
+        return encodings.getEncodings().stream()
+                .filter(Objects::nonNull)
+                .map(FaceGallery::toFloats)
+                .toList();
     }
 
+    private FaceGallery loadGallery(String subjectCode) {
+        return galleryCache.get(subjectCode).gallery();
+    }
 
 }
\ No newline at end of file
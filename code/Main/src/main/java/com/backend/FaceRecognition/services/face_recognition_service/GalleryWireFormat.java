@@ -0,0 +1,56 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary representation of a {@link FaceGallery}, served as application/octet-stream.
+ * All integers and floats are little-endian:
+ * <pre>
+ *   int32   template count (n)
+ *   int32   dimension (d)
+ *   n x     uint16 id length, UTF-8 matriculation number
+ *   n*d x   float32 vector components, row by row
+ * </pre>
+ */
+public final class GalleryWireFormat {
+    public static final String MEDIA_TYPE = "application/octet-stream";
+    private static final int ROWS_PER_CHUNK = 256;
+
+    private GalleryWireFormat() {
+    }
+
+    public static void write(FaceGallery gallery, OutputStream outputStream) throws IOException {
+        int count = gallery.size();
+        int dimension = gallery.dimension();
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(count).putInt(dimension);
+        outputStream.write(header.array());
+
+        ByteBuffer idLength = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            byte[] id = gallery.label(i).getBytes(StandardCharsets.UTF_8);
+            idLength.clear();
+            idLength.putShort((short) id.length);
+            outputStream.write(idLength.array());
+            outputStream.write(id);
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate(ROWS_PER_CHUNK * Math.max(dimension, 1) * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < count; row += ROWS_PER_CHUNK) {
+            int rows = Math.min(ROWS_PER_CHUNK, count - row);
+            chunk.clear();
+            FloatBuffer floats = chunk.asFloatBuffer();
+            for (int i = 0; i < rows; i++) {
+                floats.put(gallery.template(row + i));
+            }
+            outputStream.write(chunk.array(), 0, rows * dimension * Float.BYTES);
+        }
+        outputStream.flush();
+    }
+}
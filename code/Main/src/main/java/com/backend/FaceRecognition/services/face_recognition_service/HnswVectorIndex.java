@@ -0,0 +1,284 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * Hierarchical Navigable Small World graph (Malkov and Yashunin) for approximate
+ * nearest-neighbour search. Supports incremental inserts. Removed nodes stay in the
+ * graph as tombstones: searches still route through them but never return them, so
+ * the owner should rebuild the graph once {@link #removedCount()} grows large.
+ */
+public class HnswVectorIndex implements VectorIndex {
+    private final int maxConnections;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private final List<String> labels = new ArrayList<>();
+    private final List<float[]> vectors = new ArrayList<>();
+    // links.get(node)[level] holds the neighbour count at index 0 followed by the neighbour ids
+    private final List<int[][]> links = new ArrayList<>();
+    private final Map<String, List<Integer>> nodesByLabel = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int dimension;
+
+    public HnswVectorIndex(int maxConnections, int efConstruction, int efSearch) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsLayer0 = maxConnections * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(maxConnections);
+    }
+
+    @Override
+    public void add(String label, float[] vector) {
+        if (labels.isEmpty()) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        int node = labels.size();
+        int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[capacity(l) + 1];
+        }
+        labels.add(label);
+        vectors.add(vector.clone());
+        links.add(nodeLinks);
+        nodesByLabel.computeIfAbsent(label, key -> new ArrayList<>()).add(node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+        float[] query = vectors.get(node);
+        int current = entryPoint;
+        for (int l = topLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate> entryPoints = List.of(new Candidate(current, distance(query, vectors.get(current))));
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(query, entryPoints, efConstruction, l);
+            List<Candidate> selected = selectNeighbours(found, maxConnections);
+            for (Candidate neighbour : selected) {
+                connect(node, neighbour.node(), l);
+                connect(neighbour.node(), node, l);
+            }
+            entryPoints = found;
+        }
+        if (level > topLevel) {
+            entryPoint = node;
+            topLevel = level;
+        }
+    }
+
+    @Override
+    public List<Neighbour> search(float[] query, int k) {
+        if (entryPoint < 0 || query.length != dimension || k <= 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = topLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate> found = searchLayer(query,
+                List.of(new Candidate(current, distance(query, vectors.get(current)))),
+                Math.max(efSearch, k), 0);
+        List<Neighbour> result = new ArrayList<>(Math.min(k, found.size()));
+        for (int i = 0; i < found.size() && result.size() < k; i++) {
+            Candidate candidate = found.get(i);
+            if (!removed.get(candidate.node())) {
+                result.add(new Neighbour(labels.get(candidate.node()), Math.sqrt(candidate.distance())));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int remove(String label) {
+        List<Integer> nodes = nodesByLabel.remove(label);
+        if (nodes == null) {
+            return 0;
+        }
+        nodes.forEach(removed::set);
+        removedCount += nodes.size();
+        return nodes.size();
+    }
+
+    @Override
+    public int size() {
+        return labels.size() - removedCount;
+    }
+
+    /**
+     * @return the number of tombstoned nodes still held by the graph
+     */
+    public int removedCount() {
+        return removedCount;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, float[]> consumer) {
+        for (int node = 0; node < labels.size(); node++) {
+            if (!removed.get(node)) {
+                consumer.accept(labels.get(node), vectors.get(node).clone());
+            }
+        }
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? maxConnectionsLayer0 : maxConnections;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        double currentDistance = distance(query, vectors.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links.get(current)[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                double d = distance(query, vectors.get(neighbours[i]));
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search within one layer.
+     *
+     * @return up to ef candidates ordered from closest to farthest
+     */
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int level) {
+        BitSet visited = new BitSet(labels.size());
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        for (Candidate entry : entryPoints) {
+            if (!visited.get(entry.node())) {
+                visited.set(entry.node());
+                toVisit.add(entry);
+                best.add(entry);
+            }
+        }
+        while (best.size() > ef) {
+            best.poll();
+        }
+        while (!toVisit.isEmpty()) {
+            Candidate closest = toVisit.poll();
+            if (best.size() >= ef && closest.distance() > best.peek().distance()) {
+                break;
+            }
+            int[][] nodeLinks = links.get(closest.node());
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double d = distance(query, vectors.get(neighbour));
+                if (best.size() < ef || d < best.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    toVisit.add(candidate);
+                    best.add(candidate);
+                    if (best.size() > ef) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Candidate::distance));
+        return result;
+    }
+
+    /**
+     * Neighbour selection heuristic: keeps a candidate only if it is closer to the base
+     * node than to every neighbour already kept, which preserves links between clusters.
+     * Remaining slots are filled with the closest discarded candidates.
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            float[] vector = vectors.get(candidate.node());
+            for (Candidate kept : selected) {
+                if (distance(vector, vectors.get(kept.node())) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < limit; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbours = links.get(from)[level];
+        int count = neighbours[0];
+        if (count < neighbours.length - 1) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+        // Full: re-select the best set among the existing links and the new one
+        float[] base = vectors.get(from);
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Candidate(neighbours[i], distance(base, vectors.get(neighbours[i]))));
+        }
+        candidates.add(new Candidate(to, distance(base, vectors.get(to))));
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+        List<Candidate> selected = selectNeighbours(candidates, count);
+        neighbours[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            neighbours[i + 1] = selected.get(i).node();
+        }
+    }
+
+    private static double distance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private record Candidate(int node, double distance) {
+    }
+}
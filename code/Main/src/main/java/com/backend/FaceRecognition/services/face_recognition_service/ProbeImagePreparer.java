@@ -0,0 +1,248 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+/**
+ * Shrinks probe uploads before they are forwarded to the sidecar, which resizes every
+ * probe to 265x240 anyway. The upload is decoded straight from its input stream with
+ * source subsampling, so the full-resolution raster is never held in memory; the result
+ * is scaled to the configured longest edge, turned upright according to its EXIF
+ * orientation (the sidecar's cv2.imread would otherwise have applied it), and re-encoded
+ * as a small JPEG. Uploads ImageIO cannot decode are forwarded unchanged.
+ */
+@Component
+@Slf4j
+public class ProbeImagePreparer {
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+    private static final int APP1_MARKER = 0xE1;
+    private static final int START_OF_SCAN = 0xDA;
+    private static final int END_OF_IMAGE = 0xD9;
+    // Enough for every APPn segment in front of the image data, including a full 64 KB EXIF block
+    private static final int HEADER_SCAN_LIMIT = 256 * 1024;
+
+    private final int maxEdge;
+    private final float jpegQuality;
+
+    public ProbeImagePreparer(@Value("${faceRecognition.upload.max-edge:640}") int maxEdge,
+                              @Value("${faceRecognition.upload.jpeg-quality:0.85}") float jpegQuality) {
+        this.maxEdge = maxEdge;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public Resource prepare(MultipartFile file) {
+        return prepare(file.getResource());
+    }
+
+    public Resource prepare(Resource image) {
+        long started = System.nanoTime();
+        byte[] prepared;
+        try (InputStream inputStream = new BufferedInputStream(image.getInputStream())) {
+            prepared = downscale(inputStream);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not prepare {}: {}", image.getFilename(), e.getMessage());
+            prepared = null;
+        }
+        if (prepared == null) {
+            // Let the sidecar decide what to make of it
+            log.debug("Forwarding {} unchanged", image.getFilename());
+            return image;
+        }
+        log.debug("Prepared probe image {} -> {} bytes in {} ms", image.getFilename(), prepared.length,
+                (System.nanoTime() - started) / 1_000_000);
+        return new ByteArrayResource(prepared) {
+            @Override
+            public String getFilename() {
+                return "probe.jpg";
+            }
+        };
+    }
+
+    /**
+     * @return the re-encoded JPEG, or null if no ImageIO reader understands the input
+     */
+    byte[] downscale(InputStream inputStream) throws IOException {
+        BufferedInputStream buffered = inputStream instanceof BufferedInputStream stream
+                ? stream : new BufferedInputStream(inputStream);
+        int orientation = readOrientation(buffered);
+        try (ImageInputStream imageInput = new MemoryCacheImageInputStream(buffered)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.max(width, height) / maxEdge);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                return encodeJpeg(orient(scale(decoded), orientation));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        int longest = Math.max(source.getWidth(), source.getHeight());
+        double factor = longest > maxEdge ? (double) maxEdge / longest : 1;
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        // Always redraw: this also converts CMYK, grey and alpha sources to plain RGB for the JPEG writer
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Applies an EXIF orientation (1-8) by mapping each output pixel back to its source pixel.
+     */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return source;
+        }
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swapped = orientation >= 5;
+        int outWidth = swapped ? h : w;
+        int outHeight = swapped ? w : h;
+        int[] in = source.getRGB(0, 0, w, h, null, 0, w);
+        int[] out = new int[in.length];
+        for (int y = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++) {
+                int sx;
+                int sy;
+                switch (orientation) {
+                    case 2 -> { sx = w - 1 - x; sy = y; }
+                    case 3 -> { sx = w - 1 - x; sy = h - 1 - y; }
+                    case 4 -> { sx = x; sy = h - 1 - y; }
+                    case 5 -> { sx = y; sy = x; }
+                    case 6 -> { sx = y; sy = h - 1 - x; }
+                    case 7 -> { sx = w - 1 - y; sy = h - 1 - x; }
+                    default -> { sx = w - 1 - y; sy = x; }
+                }
+                out[y * outWidth + x] = in[sy * w + sx];
+            }
+        }
+        BufferedImage target = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_RGB);
+        target.setRGB(0, 0, outWidth, outHeight, out, 0, outWidth);
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Scans the JPEG marker segments ahead of the image data for an EXIF APP1 segment,
+     * then rewinds the stream so the decoder sees it from the start.
+     *
+     * @return the orientation, or 1 when absent or not a JPEG
+     */
+    private static int readOrientation(BufferedInputStream inputStream) throws IOException {
+        inputStream.mark(HEADER_SCAN_LIMIT);
+        try {
+            if (inputStream.read() != 0xFF || inputStream.read() != 0xD8) {
+                return 1;
+            }
+            long scanned = 2;
+            while (scanned < HEADER_SCAN_LIMIT) {
+                int marker = inputStream.read();
+                if (marker != 0xFF) {
+                    return 1;
+                }
+                while (marker == 0xFF) {
+                    marker = inputStream.read();
+                    scanned++;
+                }
+                if (marker < 0 || marker == START_OF_SCAN || marker == END_OF_IMAGE) {
+                    return 1;
+                }
+                int length = (inputStream.read() << 8) | inputStream.read();
+                if (length < 2 || scanned + length > HEADER_SCAN_LIMIT) {
+                    return 1;
+                }
+                if (marker == APP1_MARKER) {
+                    int orientation = parseExifOrientation(inputStream.readNBytes(length - 2));
+                    if (orientation > 0) {
+                        return orientation;
+                    }
+                } else {
+                    inputStream.skipNBytes(length - 2);
+                }
+                scanned += length + 1;
+            }
+            return 1;
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    static int parseExifOrientation(byte[] segment) {
+        // "Exif\0\0" followed by a TIFF header
+        if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f') {
+            return 0;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifdOffset = tiff.getInt(4);
+        if (ifdOffset < 8 || ifdOffset + 2 > tiff.limit()) {
+            return 0;
+        }
+        int entries = tiff.getShort(ifdOffset) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifdOffset + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) {
+                break;
+            }
+            if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                return tiff.getShort(entry + 8) & 0xFFFF;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+/**
+ * Plain loops, used when the Vector API module is not available to the JVM.
+ */
+public final class ScalarDistanceKernel implements DistanceKernel {
+
+    @Override
+    public void squaredDistances(float[] probe, float[] gallery, int firstRow, int rows, float[] out) {
+        int dimension = probe.length;
+        for (int r = 0; r < rows; r++) {
+            int offset = (firstRow + r) * dimension;
+            float sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                float diff = gallery[offset + i] - probe[i];
+                sum += diff * diff;
+            }
+            out[r] = sum;
+        }
+    }
+
+    @Override
+    public void squaredDistances(byte[] probe, byte[] gallery, int firstRow, int rows, int[] out) {
+        int dimension = probe.length;
+        for (int r = 0; r < rows; r++) {
+            int offset = (firstRow + r) * dimension;
+            int sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                int diff = gallery[offset + i] - probe[i];
+                sum += diff * diff;
+            }
+            out[r] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
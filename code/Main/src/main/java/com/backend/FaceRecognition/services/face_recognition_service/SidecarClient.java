@@ -0,0 +1,113 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared client for every call to the image-processing sidecar.
+ * Connections are kept alive and reused by one JDK HttpClient, every call is bounded by
+ * connect and read timeouts, a semaphore bulkhead caps the calls in flight so a slow sidecar
+ * cannot hold every request thread, and a circuit breaker fails fast while it is down.
+ * Timeouts, I/O errors and 5xx responses count as failures; 4xx responses do not.
+ */
+@Component
+@Slf4j
+public class SidecarClient {
+    private final RestTemplate restTemplate;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final long bulkheadWaitMillis;
+    private final SidecarCircuitBreaker circuitBreaker;
+
+    public SidecarClient(@Value("${faceRecognition.sidecar.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                         @Value("${faceRecognition.sidecar.read-timeout-ms:10000}") int readTimeoutMillis,
+                         @Value("${faceRecognition.sidecar.max-concurrent-calls:16}") int maxConcurrentCalls,
+                         @Value("${faceRecognition.sidecar.bulkhead-wait-ms:500}") long bulkheadWaitMillis,
+                         @Value("${faceRecognition.sidecar.failure-threshold:5}") int failureThreshold,
+                         @Value("${faceRecognition.sidecar.open-duration-ms:30000}") long openDurationMillis,
+                         WorkerThreads workerThreads) {
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+        if (workerThreads.isVirtual()) {
+            // The client's own dependent tasks; the calling thread already blocks on a virtual thread
+            httpClientBuilder.executor(Executors.newThreadPerTaskExecutor(workerThreads.factory("sidecar-http")));
+        }
+        HttpClient httpClient = httpClientBuilder.build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.circuitBreaker = new SidecarCircuitBreaker(failureThreshold, openDurationMillis);
+    }
+
+    /**
+     * Same contract as {@link RestTemplate#exchange(String, HttpMethod, HttpEntity, Class, Object...)}.
+     *
+     * @throws SidecarUnavailableException when the circuit is open or no call slot frees up in time
+     */
+    public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity, Class<T> responseType) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new SidecarUnavailableException("Image processing service circuit is open");
+        }
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.release();
+            log.warn("Rejected sidecar call to {}: {} calls already in flight", url, maxConcurrentCalls);
+            throw new SidecarUnavailableException("Image processing service is busy");
+        }
+        try {
+            ResponseEntity<T> response = restTemplate.exchange(url, method, requestEntity, responseType);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            // The sidecar answered, e.g. with a 4xx: it is healthy even if the request was not
+            circuitBreaker.onSuccess();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public SidecarCircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int consecutiveFailures() {
+        return circuitBreaker.getConsecutiveFailures();
+    }
+
+    public int callsInFlight() {
+        return maxConcurrentCalls - bulkhead.availablePermits();
+    }
+
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+}
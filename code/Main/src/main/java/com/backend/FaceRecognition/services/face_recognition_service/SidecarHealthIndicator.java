@@ -0,0 +1,46 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the sidecar client's circuit and bulkhead as the "sidecar" health component and as gauges.
+ * The client state is read locally, so checking health never calls the sidecar.
+ * <p>
+ * An open or half-open circuit is reported as {@link #DEGRADED} rather than DOWN: logins, timetables
+ * and manual marking keep working without the sidecar, so it must not take the application's
+ * aggregate health down with it. The status order in application.properties ranks DEGRADED below UP.
+ */
+@Component("sidecar")
+public class SidecarHealthIndicator implements HealthIndicator {
+    public static final Status DEGRADED = new Status("DEGRADED", "Face recognition is unavailable while the sidecar circuit is open");
+
+    private final SidecarClient sidecarClient;
+
+    public SidecarHealthIndicator(SidecarClient sidecarClient, MeterRegistry meterRegistry) {
+        this.sidecarClient = sidecarClient;
+        Gauge.builder("sidecar.calls.in_flight", sidecarClient, SidecarClient::callsInFlight)
+                .description("Calls to the image processing service currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("sidecar.circuit.open", sidecarClient,
+                        client -> client.circuitState() == SidecarCircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the image processing circuit breaker is open or half-open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Health health() {
+        SidecarCircuitBreaker.State state = sidecarClient.circuitState();
+        Health.Builder builder = state == SidecarCircuitBreaker.State.CLOSED ? Health.up() : Health.status(DEGRADED);
+        return builder
+                .withDetail("circuit", state)
+                .withDetail("consecutiveFailures", sidecarClient.consecutiveFailures())
+                .withDetail("callsInFlight", sidecarClient.callsInFlight())
+                .withDetail("maxConcurrentCalls", sidecarClient.maxConcurrentCalls())
+                .build();
+    }
+}
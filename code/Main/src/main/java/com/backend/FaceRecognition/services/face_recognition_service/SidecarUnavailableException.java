@@ -0,0 +1,11 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+/**
+ * Thrown instead of calling the image-processing sidecar when its circuit is open
+ * or every concurrent call slot is taken.
+ */
+public class SidecarUnavailableException extends RuntimeException {
+    public SidecarUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,84 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces one student's templates to a centroid and a bounded set of diverse exemplars.
+ */
+public final class TemplateConsolidation {
+
+    private TemplateConsolidation() {
+    }
+
+    public static float[] centroid(List<float[]> templates) {
+        int dimension = templates.get(0).length;
+        float[] centroid = new float[dimension];
+        for (float[] template : templates) {
+            for (int i = 0; i < dimension; i++) {
+                centroid[i] += template[i];
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            centroid[i] /= templates.size();
+        }
+        return centroid;
+    }
+
+    /**
+     * Farthest-point selection seeded with the medoid (the template closest to the centroid):
+     * each further pick is the template farthest from everything already kept, so the
+     * exemplars cover the spread of poses and lighting rather than repeating one shot.
+     *
+     * @return indices of at most {@code limit} templates to keep, medoid first
+     */
+    public static List<Integer> selectExemplars(List<float[]> templates, int limit) {
+        int count = templates.size();
+        List<Integer> selected = new ArrayList<>(Math.min(limit, count));
+        if (count == 0 || limit <= 0) {
+            return selected;
+        }
+        float[] centroid = centroid(templates);
+        int medoid = 0;
+        double medoidDistance = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double distance = squaredDistance(templates.get(i), centroid);
+            if (distance < medoidDistance) {
+                medoidDistance = distance;
+                medoid = i;
+            }
+        }
+        selected.add(medoid);
+        // Distance from every template to its closest selected exemplar
+        double[] coverage = new double[count];
+        for (int i = 0; i < count; i++) {
+            coverage[i] = squaredDistance(templates.get(i), templates.get(medoid));
+        }
+        while (selected.size() < Math.min(limit, count)) {
+            int farthest = -1;
+            for (int i = 0; i < count; i++) {
+                if (coverage[i] > 0 && (farthest < 0 || coverage[i] > coverage[farthest])) {
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) {
+                // Everything left duplicates a kept exemplar
+                break;
+            }
+            selected.add(farthest);
+            for (int i = 0; i < count; i++) {
+                coverage[i] = Math.min(coverage[i], squaredDistance(templates.get(i), templates.get(farthest)));
+            }
+        }
+        return selected;
+    }
+
+    static double squaredDistance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,78 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernel on the jdk.incubator.vector API. Only load this class after checking that the
+ * module is resolved (see {@link DistanceKernels}), otherwise linking fails.
+ * Int8 rows are widened to int lanes before subtracting, so differences cannot overflow.
+ */
+public final class VectorDistanceKernel implements DistanceKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // One byte lane per int lane; null when the preferred shape is too narrow for a byte vector
+    private static final VectorSpecies<Byte> BYTES = INTS.length() * Byte.SIZE >= 64
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE))
+            : null;
+
+    private final ScalarDistanceKernel scalar = new ScalarDistanceKernel();
+
+    @Override
+    public void squaredDistances(float[] probe, float[] gallery, int firstRow, int rows, float[] out) {
+        int dimension = probe.length;
+        int bound = FLOATS.loopBound(dimension);
+        for (int r = 0; r < rows; r++) {
+            int offset = (firstRow + r) * dimension;
+            FloatVector accumulator = FloatVector.zero(FLOATS);
+            int i = 0;
+            for (; i < bound; i += FLOATS.length()) {
+                FloatVector diff = FloatVector.fromArray(FLOATS, gallery, offset + i)
+                        .sub(FloatVector.fromArray(FLOATS, probe, i));
+                accumulator = diff.fma(diff, accumulator);
+            }
+            float sum = accumulator.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                float diff = gallery[offset + i] - probe[i];
+                sum += diff * diff;
+            }
+            out[r] = sum;
+        }
+    }
+
+    @Override
+    public void squaredDistances(byte[] probe, byte[] gallery, int firstRow, int rows, int[] out) {
+        if (BYTES == null) {
+            scalar.squaredDistances(probe, gallery, firstRow, rows, out);
+            return;
+        }
+        int dimension = probe.length;
+        int bound = BYTES.loopBound(dimension);
+        for (int r = 0; r < rows; r++) {
+            int offset = (firstRow + r) * dimension;
+            IntVector accumulator = IntVector.zero(INTS);
+            int i = 0;
+            for (; i < bound; i += BYTES.length()) {
+                IntVector row = (IntVector) ByteVector.fromArray(BYTES, gallery, offset + i).castShape(INTS, 0);
+                IntVector query = (IntVector) ByteVector.fromArray(BYTES, probe, i).castShape(INTS, 0);
+                IntVector diff = row.sub(query);
+                accumulator = accumulator.add(diff.mul(diff));
+            }
+            int sum = accumulator.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                int diff = gallery[offset + i] - probe[i];
+                sum += diff * diff;
+            }
+            out[r] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + FLOATS.vectorBitSize() + "-bit)";
+    }
+}
@@ -0,0 +1,32 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Nearest-neighbour index over face templates, searched with Euclidean distance.
+ * Implementations are not thread-safe; callers must guard concurrent adds and searches.
+ */
+public interface VectorIndex {
+
+    void add(String label, float[] vector);
+
+    /**
+     * Drops every vector stored under the label.
+     *
+     * @return the number of vectors removed
+     */
+    int remove(String label);
+
+    /**
+     * @return up to k neighbours ordered from closest to farthest
+     */
+    List<Neighbour> search(float[] query, int k);
+
+    int size();
+
+    void forEach(BiConsumer<String, float[]> consumer);
+
+    record Neighbour(String label, double distance) {
+    }
+}
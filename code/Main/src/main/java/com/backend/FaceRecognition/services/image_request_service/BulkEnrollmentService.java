@@ -0,0 +1,330 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.ExactVectorIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarClient;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarUnavailableException;
+import com.backend.FaceRecognition.services.face_recognition_service.VectorIndex;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport.Entry;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport.Outcome;
+import com.backend.FaceRecognition.utils.EncodedImage;
+import com.backend.FaceRecognition.utils.FaceRecognitionEndpoints;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Enrolls a whole intake from one ZIP archive of {@code <matriculationNumber>.jpg} entries.
+ * The archive is read as a stream, one entry at a time; at most {@code parallelism} entries
+ * are held in memory while their encodings are computed on the sidecar, and the resulting
+ * templates are inserted in batches. Every entry gets a line in the returned report.
+ * Templates are not consolidated here; the nightly compaction picks up anyone over the limit.
+ * <p>
+ * Workers share the sidecar bulkhead with interactive traffic, so an entry turned away by it
+ * is retried with a short backoff before it is reported as failed.
+ */
+@Service
+@Slf4j
+public class BulkEnrollmentService {
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png");
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final SidecarClient sidecarClient;
+    private final FaceRecognitionEndpoints faceRecognitionEndpoints;
+    private final StudentRepository studentRepository;
+    private final EncodedImagesRepository encodedImagesRepository;
+    private final CampusFaceIndex campusFaceIndex;
+    private final GalleryCache galleryCache;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final int batchSize;
+    private final int maxEntryBytes;
+    private final double duplicateTolerance;
+    private final long retryBackoffMillis;
+
+    public BulkEnrollmentService(SidecarClient sidecarClient, FaceRecognitionEndpoints faceRecognitionEndpoints,
+                                 StudentRepository studentRepository, EncodedImagesRepository encodedImagesRepository,
+                                 CampusFaceIndex campusFaceIndex, GalleryCache galleryCache, WorkerThreads workerThreads,
+                                 @Value("${faceRecognition.bulk-enrollment.parallelism:8}") int parallelism,
+                                 @Value("${faceRecognition.bulk-enrollment.batch-size:100}") int batchSize,
+                                 @Value("${faceRecognition.bulk-enrollment.max-entry-bytes:10485760}") int maxEntryBytes,
+                                 @Value("${faceRecognition.index.duplicate-tolerance:0.4}") double duplicateTolerance,
+                                 @Value("${faceRecognition.bulk-enrollment.retry-backoff-ms:1000}") long retryBackoffMillis) {
+        this.sidecarClient = sidecarClient;
+        this.faceRecognitionEndpoints = faceRecognitionEndpoints;
+        this.studentRepository = studentRepository;
+        this.encodedImagesRepository = encodedImagesRepository;
+        this.campusFaceIndex = campusFaceIndex;
+        this.galleryCache = galleryCache;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.maxEntryBytes = maxEntryBytes;
+        this.duplicateTolerance = duplicateTolerance;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.workers = Executors.newFixedThreadPool(parallelism, workerThreads.factory("bulk-enrollment"));
+    }
+
+    public ResponseEntity<BulkEnrollmentReport> enroll(InputStream archive) {
+        long started = System.currentTimeMillis();
+        List<Future<Entry>> results = new ArrayList<>();
+        PendingTemplates pending = new PendingTemplates();
+        Semaphore inFlight = new Semaphore(parallelism);
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(archive))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                String name = zipEntry.getName();
+                String matriculationNumber = matriculationNumber(name);
+                if (matriculationNumber == null) {
+                    results.add(done(new Entry(name, null, Outcome.SKIPPED, "Not a .jpg, .jpeg or .png file")));
+                    continue;
+                }
+                byte[] image = zip.readNBytes(maxEntryBytes + 1);
+                if (image.length > maxEntryBytes) {
+                    results.add(done(new Entry(name, matriculationNumber, Outcome.INVALID_IMAGE, "Image too large")));
+                    continue;
+                }
+                // Blocks the reader until a worker is free, so only a bounded number of images is in memory
+                inFlight.acquire();
+                try {
+                    results.add(workers.submit(() -> {
+                        try {
+                            return encode(name, matriculationNumber, image, pending);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read enrollment archive: {}", e.getMessage());
+            results.add(done(new Entry(null, null, Outcome.FAILED, "Archive is truncated or not a ZIP file")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.add(done(new Entry(null, null, Outcome.FAILED, "Interrupted")));
+        }
+
+        List<Entry> entries = new ArrayList<>(results.size());
+        for (Future<Entry> result : results) {
+            try {
+                entries.add(result.get());
+            } catch (Exception e) {
+                log.error("Bulk enrollment task failed", e);
+                entries.add(new Entry(null, null, Outcome.FAILED, "An unexpected error occurred"));
+            }
+        }
+        if (pending.flush() > 0) {
+            galleryCache.invalidateAll();
+        }
+
+        int succeeded = (int) entries.stream().filter(entry -> entry.getOutcome() == Outcome.ENROLLED).count();
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Bulk enrollment processed {} entries, enrolled {} in {} ms", entries.size(), succeeded, elapsed);
+        return ResponseEntity.ok(BulkEnrollmentReport.builder()
+                .message(entries.isEmpty() ? "Archive contained no images" : "Bulk enrollment complete")
+                .processed(entries.size())
+                .enrolled(succeeded)
+                .failed(entries.size() - succeeded)
+                .elapsedMs(elapsed)
+                .entries(entries)
+                .build());
+    }
+
+    private Entry encode(String name, String matriculationNumber, byte[] image, PendingTemplates pending) {
+        if (!studentRepository.existsById(matriculationNumber)) {
+            return new Entry(name, matriculationNumber, Outcome.STUDENT_NOT_FOUND, "Student not found");
+        }
+        String url = faceRecognitionEndpoints.getEndpoint("ip") + "?student_id=" + matriculationNumber;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new ByteArrayResource(image) {
+            @Override
+            public String getFilename() {
+                return name.substring(name.lastIndexOf('/') + 1);
+            }
+        });
+        try {
+            EncodedImage encoded = encodeOnSidecar(url, new HttpEntity<>(body, headers));
+            if (encoded == null || encoded.getData() == null) {
+                return new Entry(name, matriculationNumber, Outcome.INVALID_IMAGE, "Could not encode image");
+            }
+            if ("Invalid Amount of Faces detected".equals(encoded.getMessage())) {
+                return new Entry(name, matriculationNumber, Outcome.INVALID_IMAGE, "Invalid amount of faces detected");
+            }
+            float[] vector = FaceGallery.toFloats(encoded.getData());
+            EncodedImages template = EncodedImages.builder().matriculationNumber(matriculationNumber).vector(vector).build();
+            Entry entry = new Entry(name, matriculationNumber, Outcome.ENROLLED, "Saved successfully");
+            Optional<VectorIndex.Neighbour> duplicate = pending.addUnlessDuplicate(entry, template);
+            if (duplicate.isPresent()) {
+                return new Entry(name, matriculationNumber, Outcome.DUPLICATE_FACE,
+                        "Face already enrolled for " + duplicate.get().label());
+            }
+            return entry;
+        } catch (HttpClientErrorException e) {
+            return new Entry(name, matriculationNumber, Outcome.INVALID_IMAGE, e.getResponseBodyAsString());
+        } catch (SidecarUnavailableException e) {
+            return new Entry(name, matriculationNumber, Outcome.FAILED, "Face recognition is temporarily unavailable");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Entry(name, matriculationNumber, Outcome.FAILED, "Interrupted");
+        } catch (Exception e) {
+            log.error("Failed to enroll {} from bulk archive", name, e);
+            return new Entry(name, matriculationNumber, Outcome.FAILED, "An unexpected error occurred");
+        }
+    }
+
+    private EncodedImage encodeOnSidecar(String url, HttpEntity<MultiValueMap<String, Object>> request)
+            throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return sidecarClient.exchange(url, HttpMethod.POST, request, EncodedImage.class).getBody();
+            } catch (SidecarUnavailableException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                TimeUnit.MILLISECONDS.sleep(retryBackoffMillis * attempt);
+            }
+        }
+    }
+
+    /**
+     * @return the matriculation number named by an image entry, or null if the entry is not an image
+     */
+    static String matriculationNumber(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0 || fileName.startsWith(".")) {
+            return null;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return IMAGE_EXTENSIONS.contains(extension) ? fileName.substring(0, dot).trim() : null;
+    }
+
+    private static Future<Entry> done(Entry entry) {
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    /**
+     * Collects encoded templates from the workers and writes them with saveAll once a batch is full.
+     * Templates join the campus index only once their batch is stored, so until then duplicates are
+     * checked against the unsaved batch as well; both checks and the hand-over to the index happen
+     * under the lock, so no template is missed in between. If a batch cannot be written, its entries
+     * are reported as failed. The insert runs while the lock is held.
+     */
+    private class PendingTemplates {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<EncodedImages> batch = new ArrayList<>();
+        private ExactVectorIndex unsaved = new ExactVectorIndex();
+        private int saved;
+
+        /**
+         * @return the template the face duplicates, in which case the template is not added
+         */
+        Optional<VectorIndex.Neighbour> addUnlessDuplicate(Entry entry, EncodedImages image) {
+            String matriculationNumber = image.getMatriculationNumber();
+            float[] vector = image.getVector();
+            lock.lock();
+            try {
+                Optional<VectorIndex.Neighbour> duplicate =
+                        campusFaceIndex.findOtherOwner(vector, matriculationNumber, duplicateTolerance);
+                if (duplicate.isEmpty()) {
+                    duplicate = unsaved.search(vector, unsaved.size()).stream()
+                            .filter(neighbour -> neighbour.distance() <= duplicateTolerance)
+                            .filter(neighbour -> !neighbour.label().equals(matriculationNumber))
+                            .findFirst();
+                }
+                if (duplicate.isPresent()) {
+                    return duplicate;
+                }
+                entries.add(entry);
+                batch.add(image);
+                unsaved.add(matriculationNumber, vector);
+                if (batch.size() >= batchSize) {
+                    save();
+                }
+                return Optional.empty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the number of templates written over the whole archive
+         */
+        int flush() {
+            lock.lock();
+            try {
+                save();
+                return saved;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void save() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                encodedImagesRepository.saveAll(batch).forEach(campusFaceIndex::add);
+                saved += batch.size();
+            } catch (RuntimeException e) {
+                log.error("Failed to store a batch of {} bulk enrollment templates", batch.size(), e);
+                entries.forEach(entry -> {
+                    entry.setOutcome(Outcome.FAILED);
+                    entry.setMessage("Could not store template");
+                });
+            }
+            entries.clear();
+            batch.clear();
+            unsaved = new ExactVectorIndex();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * One-time online migration of encoded images from the legacy serialized double[]
+ * column to the packed float32 column. Runs in the background after startup, one
+ * small transaction per batch, so recognition keeps working while it progresses;
+ * readers fall back to the legacy column until a row has been converted.
+ */
+@Component
+@Slf4j
+public class EncodedImagesMigration {
+    private final EncodedImagesRepository encodedImagesRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${faceRecognition.migrate-legacy-encodings:true}")
+    private boolean enabled;
+
+    public EncodedImagesMigration(EncodedImagesRepository encodedImagesRepository, TransactionTemplate transactionTemplate) {
+        this.encodedImagesRepository = encodedImagesRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Legacy encoding migration disabled");
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "encoded-images-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void migrate() {
+        log.info("Migrating legacy encoded images to packed float32 storage...");
+        int migrated = 0;
+        Integer lastId = 0;
+        try {
+            while (lastId != null) {
+                final Integer after = lastId;
+                BatchResult result = transactionTemplate.execute(status -> migrateBatch(after));
+                if (result == null) {
+                    break;
+                }
+                migrated += result.migrated();
+                lastId = result.lastId();
+            }
+            log.info("Legacy encoding migration complete, {} rows converted", migrated);
+        } catch (Exception e) {
+            log.error("Legacy encoding migration stopped after {} rows, it will resume on next startup", migrated, e);
+        }
+    }
+
+    private BatchResult migrateBatch(Integer afterId) {
+        List<EncodedImages> batch = encodedImagesRepository.findTop200ByVectorIsNullAndIdGreaterThanOrderByIdAsc(afterId);
+        if (batch.isEmpty()) {
+            return new BatchResult(0, null);
+        }
+        int migrated = 0;
+        for (EncodedImages image : batch) {
+            if (image.getLegacyData() == null) {
+                continue;
+            }
+            image.setVector(image.templateVector());
+            image.setLegacyData(null);
+            migrated++;
+        }
+        encodedImagesRepository.saveAll(batch);
+        return new BatchResult(migrated, batch.get(batch.size() - 1).getId());
+    }
+
+    private record BatchResult(int migrated, Integer lastId) {
+    }
+}
@@ -2,6 +2,7 @@ package com.backend.FaceRecognition.services.image_request_service;
 
 import com.backend.FaceRecognition.entities.EncodedImages;
 import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
 import com.backend.FaceRecognition.utils.EncodedImageResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -30,11 +31,24 @@ public class EncodingService {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         List<EncodedImageResponse> responseList = encodedImages.stream()
-                .map(eI -> new EncodedImageResponse(eI.getMatriculationNumber(), eI.getData()))
+                .filter(eI -> eI.templateVector() != null)
+                .map(eI -> new EncodedImageResponse(eI.getMatriculationNumber(), FaceGallery.toDoubles(eI.templateVector())))
                 .toList();
         return new ResponseEntity<>(responseList, HttpStatus.OK);
     }
 
+    /**
+     * Retrieves every encoded image belonging to the given students in a single query.
+     *
+     * @param matriculationNumbers The matriculation numbers of the students whose encodings are required.
+     * @return The stored encodings, or an empty list when no matriculation numbers are supplied.
+     */
+    public List<EncodedImages> getEncodings(List<String> matriculationNumbers) {
+        if (matriculationNumbers == null || matriculationNumbers.isEmpty()) {
+            return List.of();
+        }
+        return encodedImageRepository.findAllByMatriculationNumberIn(matriculationNumbers);
+    }
 
 
 
@@ -0,0 +1,114 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.entities.Student;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the encoding gallery of each subject together with a version number.
+ * Any change to a subject's roster or to the templates of one of its students must
+ * call {@link #invalidate(String)} so the next read reloads the gallery and clients
+ * holding the previous ETag stop receiving 304 Not Modified.
+ * Full-precision template vectors are interned by template id, so a student enrolled in
+ * several subjects contributes one copy of each vector no matter how many galleries hold it.
+ */
+@Component
+@Slf4j
+public class GalleryCache {
+    private final StudentRepository studentRepository;
+    private final EncodingService encodingService;
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SubjectGallery> galleries = new ConcurrentHashMap<>();
+    // Weak values: a template leaves the interner once no cached gallery references it
+    private final Cache<Integer, float[]> templates = CacheBuilder.newBuilder().weakValues().build();
+    // Distinguishes ETags issued before a restart, when every version counter starts again at zero
+    private final long epoch = System.currentTimeMillis();
+
+    public GalleryCache(StudentRepository studentRepository, EncodingService encodingService) {
+        this.studentRepository = studentRepository;
+        this.encodingService = encodingService;
+    }
+
+    public SubjectGallery get(String subjectCode) {
+        long version = currentVersion(subjectCode);
+        SubjectGallery cached = galleries.get(subjectCode);
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+        log.info("Loading encoding gallery for subject {} at version {}", subjectCode, version);
+        List<String> matriculationNumbers = studentRepository.findAllStudentsBySubjectCode(subjectCode).stream()
+                .map(Student::getMatriculationNumber)
+                .toList();
+        SubjectGallery loaded = new SubjectGallery(subjectCode, version,
+                FaceGallery.of(encodingService.getEncodings(matriculationNumbers), this::internTemplate));
+        // Only publish if nothing was invalidated while the gallery was loading
+        if (currentVersion(subjectCode) == version) {
+            galleries.put(subjectCode, loaded);
+        }
+        return loaded;
+    }
+
+    private float[] internTemplate(EncodedImages image) {
+        if (image.getId() == null) {
+            return image.templateVector();
+        }
+        try {
+            float[] vector = templates.get(image.getId(), () -> {
+                float[] loaded = image.templateVector();
+                return loaded == null ? new float[0] : loaded;
+            });
+            return vector.length == 0 ? null : vector;
+        } catch (ExecutionException e) {
+            return image.templateVector();
+        }
+    }
+
+    public long currentVersion(String subjectCode) {
+        return versions.computeIfAbsent(subjectCode, key -> new AtomicLong()).get();
+    }
+
+    public String etag(String subjectCode) {
+        AtomicLong version = versions.get(subjectCode);
+        return etag(subjectCode, version == null ? 0 : version.get());
+    }
+
+    public String etag(SubjectGallery subjectGallery) {
+        return etag(subjectGallery.subjectCode(), subjectGallery.version());
+    }
+
+    private String etag(String subjectCode, long version) {
+        return "\"" + subjectCode + "-" + epoch + "-" + version + "\"";
+    }
+
+    public void invalidate(String subjectCode) {
+        long version = versions.computeIfAbsent(subjectCode, key -> new AtomicLong()).incrementAndGet();
+        galleries.remove(subjectCode);
+        log.debug("Invalidated encoding gallery for subject {}, now at version {}", subjectCode, version);
+    }
+
+    public void invalidate(Collection<String> subjectCodes) {
+        subjectCodes.forEach(this::invalidate);
+    }
+
+    public void invalidateAll() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        galleries.clear();
+        templates.invalidateAll();
+        log.debug("Invalidated every cached encoding gallery");
+    }
+
+    public record SubjectGallery(String subjectCode, long version, FaceGallery gallery) {
+    }
+}
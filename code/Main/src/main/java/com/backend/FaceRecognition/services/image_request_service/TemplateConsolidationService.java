@@ -0,0 +1,97 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.TemplateConsolidation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps at most {@code faceRecognition.consolidation.max-templates} templates per student,
+ * chosen by {@link TemplateConsolidation#selectExemplars}. Runs after every enrollment and as
+ * a nightly job that compacts students enrolled before the limit existed.
+ * The student's entries in the campus index are replaced with the kept templates once the
+ * deletion commits, so deleted faces stop matching and stop flagging duplicates.
+ */
+@Service
+@Slf4j
+public class TemplateConsolidationService {
+    private final EncodedImagesRepository encodedImagesRepository;
+    private final StudentRepository studentRepository;
+    private final GalleryCache galleryCache;
+    private final CampusFaceIndex campusFaceIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxTemplates;
+
+    public TemplateConsolidationService(EncodedImagesRepository encodedImagesRepository, StudentRepository studentRepository,
+                                        GalleryCache galleryCache, CampusFaceIndex campusFaceIndex,
+                                        TransactionTemplate transactionTemplate,
+                                        @Value("${faceRecognition.consolidation.max-templates:5}") int maxTemplates) {
+        this.encodedImagesRepository = encodedImagesRepository;
+        this.studentRepository = studentRepository;
+        this.galleryCache = galleryCache;
+        this.campusFaceIndex = campusFaceIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.maxTemplates = maxTemplates;
+    }
+
+    /**
+     * Deletes the templates of one student that are not selected as exemplars, drops them
+     * from the campus index and invalidates the galleries of the student's subjects.
+     *
+     * @return the number of templates removed
+     */
+    public int consolidate(String matriculationNumber) {
+        Integer removed = transactionTemplate.execute(status -> {
+            List<EncodedImages> images = encodedImagesRepository.findAllByMatriculationNumber(matriculationNumber).stream()
+                    .filter(image -> image.templateVector() != null)
+                    .toList();
+            if (images.size() <= maxTemplates) {
+                return 0;
+            }
+            List<float[]> vectors = images.stream().map(EncodedImages::templateVector).toList();
+            Set<Integer> keep = new HashSet<>(TemplateConsolidation.selectExemplars(vectors, maxTemplates));
+            List<EncodedImages> kept = new ArrayList<>();
+            List<EncodedImages> redundant = new ArrayList<>();
+            for (int i = 0; i < images.size(); i++) {
+                (keep.contains(i) ? kept : redundant).add(images.get(i));
+            }
+            encodedImagesRepository.deleteAllInBatch(redundant);
+            campusFaceIndex.replace(matriculationNumber, kept);
+            galleryCache.invalidate(studentRepository.findSubjectCodesByMatriculationNumber(matriculationNumber));
+            return redundant.size();
+        });
+        if (removed != null && removed > 0) {
+            log.info("Consolidated templates of student {}: removed {}, kept {}", matriculationNumber, removed, maxTemplates);
+        }
+        return removed == null ? 0 : removed;
+    }
+
+    @Scheduled(cron = "${faceRecognition.consolidation.cron:0 30 2 * * *}")
+    public void compactAll() {
+        List<String> students = encodedImagesRepository.findMatriculationNumbersWithMoreTemplatesThan(maxTemplates);
+        if (students.isEmpty()) {
+            return;
+        }
+        log.info("Compacting templates of {} students above {} templates", students.size(), maxTemplates);
+        int removed = 0;
+        for (String matriculationNumber : students) {
+            try {
+                removed += consolidate(matriculationNumber);
+            } catch (Exception e) {
+                log.error("Failed to consolidate templates of student {}", matriculationNumber, e);
+            }
+        }
+        log.info("Template compaction complete, {} templates removed", removed);
+    }
+}
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 
 @Component
@@ -18,6 +19,7 @@ public class AutomatedActions {
     @Autowired
     private EntityManager entityManager;
     @Scheduled(cron = "0 0 0 * * *") // Runs every day at midnight
+    @Transactional
     public void cleanupExpiredNotifications() {
         log.info("Cleaning up Expired Notifications................");
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
@@ -17,5 +17,8 @@ public class AvailableRecords {
     @AllArgsConstructor
     public static class Data {
         private String date;
+        // Final counts, present once the session is closed
+        private Integer present;
+        private Integer absent;
     }
 }
@@ -0,0 +1,38 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkEnrollmentReport {
+    private String message;
+    private int processed;
+    private int enrolled;
+    private int failed;
+    @JsonProperty("elapsed_ms")
+    private long elapsedMs;
+    private List<Entry> entries;
+
+    public enum Outcome {
+        ENROLLED, STUDENT_NOT_FOUND, INVALID_IMAGE, DUPLICATE_FACE, SKIPPED, FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String entry;
+        @JsonProperty("matriculation_number")
+        private String matriculationNumber;
+        private Outcome outcome;
+        private String message;
+    }
+}
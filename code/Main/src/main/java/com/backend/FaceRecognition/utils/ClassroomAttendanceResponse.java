@@ -0,0 +1,23 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClassroomAttendanceResponse {
+    private String message;
+    @JsonProperty("faces_detected")
+    private int facesDetected;
+    private List<String> recognized;
+    private List<String> suspended;
+    @JsonProperty("newly_marked")
+    private int newlyMarked;
+}
@@ -0,0 +1,23 @@
+package com.backend.FaceRecognition.utils;
+
+import com.backend.FaceRecognition.constants.EnrollmentStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EnrollmentJobResponse {
+    private String message;
+    @JsonProperty("job_id")
+    private String jobId;
+    private EnrollmentStatus status;
+    @JsonProperty("updated_at")
+    private LocalDateTime updatedAt;
+}
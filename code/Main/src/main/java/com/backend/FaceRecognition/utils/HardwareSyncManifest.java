@@ -0,0 +1,38 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The {@code manifest.json} of an offline sync archive. Each entry is either a recognition the
+ * device already made ({@code student_id}) or the name of a frame in the same archive to be
+ * recognized on the server ({@code frame}). Times are local server time, like the session times.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HardwareSyncManifest {
+    @JsonProperty("device_id")
+    private String deviceId;
+    private List<Entry> entries;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        @JsonProperty("entry_id")
+        private String entryId;
+        @JsonProperty("attendance_code")
+        private String attendanceCode;
+        @JsonProperty("captured_at")
+        private LocalDateTime capturedAt;
+        @JsonProperty("student_id")
+        private String studentId;
+        private String frame;
+    }
+}
@@ -0,0 +1,41 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HardwareSyncReport {
+    private String message;
+    @JsonProperty("device_id")
+    private String deviceId;
+    private int processed;
+    private int marked;
+    private int rejected;
+    private int failed;
+    @JsonProperty("elapsed_ms")
+    private long elapsedMs;
+    private List<Entry> entries;
+
+    public enum Outcome {
+        MARKED, ALREADY_MARKED, INVALID, UNKNOWN_SESSION, OUTSIDE_WINDOW, NOT_RECOGNIZED, NOT_ENROLLED, SUSPENDED, FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        @JsonProperty("entry_id")
+        private String entryId;
+        private List<String> students;
+        private Outcome outcome;
+        private String message;
+    }
+}
@@ -0,0 +1,23 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdentifyResponse {
+    private String message;
+    @JsonProperty("matriculation_number")
+    private String matriculationNumber;
+    private String firstname;
+    private String lastname;
+    private Double distance;
+    private List<String> subjects;
+}
@@ -0,0 +1,18 @@
+package com.backend.FaceRecognition.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ProbeEncodings {
+    @JsonProperty("message")
+    private String message;
+    @JsonProperty("encodings")
+    private List<double[]> encodings;
+}
@@ -0,0 +1,92 @@
+package com.backend.FaceRecognition.repository;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Fires duplicate marks for the same students in parallel; each update commits on its own,
+ * so exactly one submission per student may report success.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AttendanceRepositoryTest {
+    private static final String SUBJECT = "CSC101";
+    private static final int STUDENTS = 20;
+    private static final int DUPLICATES = 8;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @AfterEach
+    void cleanUp() {
+        attendanceRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentDuplicateMarksSucceedOncePerStudent() throws Exception {
+        LocalDate today = LocalDate.now();
+        List<Attendance> rows = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            rows.add(new Attendance("STU" + i, SUBJECT, today, AttendanceStatus.ABSENT));
+        }
+        attendanceRepository.saveAll(rows);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int duplicate = 0; duplicate < DUPLICATES; duplicate++) {
+                for (int i = 0; i < STUDENTS; i++) {
+                    String studentId = "STU" + i;
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return attendanceRepository.markPresent(studentId, SUBJECT, today);
+                    }));
+                }
+            }
+            start.countDown();
+            int marked = 0;
+            for (Future<Integer> result : results) {
+                marked += result.get();
+            }
+            assertEquals(STUDENTS, marked);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(STUDENTS, attendanceRepository.findStudentIdsBySubjectIdAndDateAndStatus(SUBJECT, today,
+                AttendanceStatus.PRESENT).size());
+    }
+
+    @Test
+    void sparseMarksAreUniquePerStudentAndSession() {
+        LocalDate today = LocalDate.now();
+        attendanceRepository.saveAndFlush(new Attendance("STU0", SUBJECT, today, AttendanceStatus.PRESENT));
+        assertThrows(DataIntegrityViolationException.class, () ->
+                attendanceRepository.saveAndFlush(new Attendance("STU0", SUBJECT, today, AttendanceStatus.PRESENT)));
+    }
+
+    @Test
+    void markingWithoutARowChangesNothing() {
+        assertEquals(0, attendanceRepository.markPresent("STU0", SUBJECT, LocalDate.now()));
+        assertFalse(attendanceRepository.existsByStudentIdAndSubjectIdAndDate("STU0", SUBJECT, LocalDate.now()));
+    }
+}
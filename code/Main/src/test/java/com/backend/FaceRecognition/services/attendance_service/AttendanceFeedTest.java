@@ -0,0 +1,192 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceFeedTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 7);
+    private static final ActiveSessionRegistry.ActiveSession SESSION = new ActiveSessionRegistry.ActiveSession(
+            1, "1234", "CSC101", MONDAY, LocalDateTime.now().plusHours(1));
+    private static final List<Attendance> ROSTER = List.of(
+            new Attendance("STU1", "CSC101", MONDAY, AttendanceStatus.ABSENT),
+            new Attendance("STU2", "CSC101", MONDAY, AttendanceStatus.ABSENT));
+
+    private final AttendanceLedger attendanceLedger = mock(AttendanceLedger.class);
+    private AttendanceFeed feed;
+
+    @AfterEach
+    void shutdown() {
+        feed.shutdown();
+    }
+
+    private AttendanceFeed feed(int maxQueuedEvents, long sendTimeoutMillis) {
+        feed = new AttendanceFeed(attendanceLedger, new WorkerThreads(false), 15000, maxQueuedEvents, sendTimeoutMillis);
+        return feed;
+    }
+
+    private static AttendanceMarkedEvent marked(String... studentIds) {
+        return new AttendanceMarkedEvent("CSC101", MONDAY, List.of(studentIds));
+    }
+
+    @Test
+    void slowClientDoesNotDelayOtherSubscribers() throws Exception {
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY)).thenReturn(ROSTER);
+        AttendanceFeed feed = feed(1000, 30000);
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.block();
+        RecordingEmitter fast = new RecordingEmitter();
+        feed.subscribe(SESSION, slow);
+        feed.subscribe(SESSION, fast);
+
+        feed.onMarked(marked("STU1"));
+
+        assertEquals("snapshot", fast.next().name());
+        Event mark = fast.next();
+        assertEquals("mark", mark.name());
+        assertEquals(new AttendanceFeed.Mark("STU1", ((AttendanceFeed.Mark) mark.data()).markedAt(), 1, 1), mark.data());
+        slow.release();
+        assertEquals("snapshot", slow.next().name());
+        assertEquals("mark", slow.next().name());
+    }
+
+    @Test
+    void subscriberWithTooManyQueuedEventsIsDropped() throws Exception {
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY)).thenReturn(ROSTER);
+        AttendanceFeed feed = feed(2, 30000);
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.block();
+        feed.subscribe(SESSION, slow);
+        slow.awaitWriting();
+
+        // The snapshot is still being written, so the second mark is a third unwritten event
+        feed.onMarked(marked("STU1"));
+        feed.onMarked(marked("STU2"));
+        RecordingEmitter fresh = new RecordingEmitter();
+        feed.subscribe(SESSION, fresh);
+        feed.closed("CSC101", MONDAY, 2, 0);
+        slow.release();
+
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("snapshot", "mark"), slow.names());
+        assertTrue(fresh.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("snapshot", "closed"), fresh.names());
+    }
+
+    @Test
+    void heartbeatDropsClientWhoseWriteIsBlocked() throws Exception {
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY)).thenReturn(ROSTER);
+        AttendanceFeed feed = feed(1000, 1);
+        RecordingEmitter stuck = new RecordingEmitter();
+        stuck.block();
+        feed.subscribe(SESSION, stuck);
+        stuck.awaitWriting();
+        Thread.sleep(10);
+
+        feed.heartbeat();
+        feed.onMarked(marked("STU1"));
+        stuck.release();
+
+        assertTrue(stuck.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("snapshot"), stuck.names());
+    }
+
+    @Test
+    void failedSeedIsReadAgainByTheNextSubscriber() throws Exception {
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(ROSTER);
+        AttendanceFeed feed = feed(1000, 30000);
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(SESSION, new RecordingEmitter()));
+
+        // Marked while no feed could be read; STU9 is not on the roster
+        feed.onMarked(marked("STU1", "STU9"));
+        RecordingEmitter emitter = new RecordingEmitter();
+        feed.subscribe(SESSION, emitter);
+
+        Event snapshot = emitter.next();
+        assertEquals(new AttendanceFeed.Snapshot(1, 1, List.of("STU1")), snapshot.data());
+    }
+
+    private record Event(String name, Object data) {
+    }
+
+    /**
+     * Records sent events instead of writing them, optionally blocking each write like a client
+     * that stopped reading.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void awaitWriting() throws InterruptedException {
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+        }
+
+        Event next() throws InterruptedException {
+            Event event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "No event arrived");
+            return event;
+        }
+
+        List<String> names() {
+            return events.stream().map(Event::name).toList();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            writing.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            String text = parts.stream().map(part -> String.valueOf(part.getData())).reduce("", String::concat);
+            if (text.startsWith("event:")) {
+                String name = text.substring("event:".length(), text.indexOf('\n'));
+                Object data = parts.stream().map(ResponseBodyEmitter.DataWithMediaType::getData)
+                        .filter(part -> !(part instanceof String))
+                        .findFirst().orElse(null);
+                events.add(new Event(name, data));
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
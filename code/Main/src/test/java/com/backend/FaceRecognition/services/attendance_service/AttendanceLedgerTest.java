@@ -0,0 +1,177 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceRepository;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AttendanceLedgerTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 7);
+    private static final LocalDate TUESDAY = LocalDate.of(2024, 10, 8);
+
+    private final AttendanceRepository attendanceRepository = mock(AttendanceRepository.class);
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository = mock(AttendanceSetupPolicyRepository.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private AttendanceLedger ledger(String mode) {
+        return new AttendanceLedger(attendanceRepository, attendanceSetupRepository, studentRepository,
+                jdbcTemplate, eventPublisher, mode, 1000);
+    }
+
+    @Test
+    void sparseSessionRecordIsTheRosterMinusThePresentMarks() {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDate("CSC101", MONDAY)).thenReturn(true);
+        when(studentRepository.findMatriculationNumbersBySubjectCode("CSC101")).thenReturn(Set.of("STU1", "STU2", "STU3"));
+        // STU9 was marked, then left the subject
+        when(attendanceRepository.findStudentIdsBySubjectIdAndDateAndStatus("CSC101", MONDAY, AttendanceStatus.PRESENT))
+                .thenReturn(List.of("STU1", "STU9"));
+
+        Map<String, AttendanceStatus> record = byStudent(ledger("sparse").sessionRecord("CSC101", MONDAY));
+
+        assertEquals(Map.of("STU1", AttendanceStatus.PRESENT, "STU2", AttendanceStatus.ABSENT,
+                "STU3", AttendanceStatus.ABSENT, "STU9", AttendanceStatus.PRESENT), record);
+    }
+
+    @Test
+    void sparseSessionRecordIsEmptyForASessionThatWasNeverOpened() {
+        assertTrue(ledger("sparse").sessionRecord("CSC101", MONDAY).isEmpty());
+        verify(studentRepository, never()).findMatriculationNumbersBySubjectCode(any());
+    }
+
+    @Test
+    void sparseStudentRecordAddsAnAbsenceForEverySessionWithoutAMark() {
+        when(attendanceRepository.findByStudentId("STU1"))
+                .thenReturn(List.of(new Attendance("STU1", "CSC101", MONDAY, AttendanceStatus.PRESENT)));
+        when(studentRepository.findSubjectCodesByMatriculationNumber("STU1")).thenReturn(List.of("CSC101", "MTH201"));
+        when(attendanceSetupRepository.findAllBySubjectIdIn(List.of("CSC101", "MTH201")))
+                .thenReturn(List.of(policy("CSC101", MONDAY), policy("CSC101", TUESDAY), policy("MTH201", MONDAY)));
+
+        List<Attendance> record = ledger("sparse").studentRecord("STU1");
+
+        assertEquals(3, record.size());
+        assertEquals(Map.of("CSC101 " + MONDAY, AttendanceStatus.PRESENT, "CSC101 " + TUESDAY, AttendanceStatus.ABSENT,
+                "MTH201 " + MONDAY, AttendanceStatus.ABSENT), bySession(record));
+    }
+
+    @Test
+    void sparseSubjectRecordDoesNotCountLeftoverAbsentRowsAsPresent() {
+        when(attendanceSetupRepository.findAllBySubjectId("CSC101"))
+                .thenReturn(List.of(policy("CSC101", MONDAY), policy("CSC101", TUESDAY)));
+        when(attendanceRepository.findBySubjectId("CSC101")).thenReturn(List.of(
+                new Attendance("STU1", "CSC101", MONDAY, AttendanceStatus.PRESENT),
+                new Attendance("STU2", "CSC101", MONDAY, AttendanceStatus.ABSENT)));
+        when(studentRepository.findMatriculationNumbersBySubjectCode("CSC101")).thenReturn(Set.of("STU1", "STU2"));
+
+        List<Attendance> record = ledger("sparse").subjectRecord("CSC101");
+
+        assertEquals(4, record.size());
+        long present = record.stream().filter(row -> row.getStatus() == AttendanceStatus.PRESENT).count();
+        assertEquals(1, present);
+    }
+
+    @Test
+    void bothModesRefuseToMarkASessionThatWasNeverOpened() {
+        assertEquals(AttendanceLedger.MarkResult.NOT_OPEN, ledger("dense").markPresent("STU1", "CSC101", MONDAY));
+        assertEquals(AttendanceLedger.MarkResult.NOT_OPEN, ledger("sparse").markPresent("STU1", "CSC101", MONDAY));
+        verifyNoInteractions(jdbcTemplate);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void sparseModeRefusesStudentsOutsideTheRosterLikeDenseMode() {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDate("CSC101", MONDAY)).thenReturn(true);
+
+        assertEquals(AttendanceLedger.MarkResult.NOT_OPEN, ledger("sparse").markPresent("STU9", "CSC101", MONDAY));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void sparseModeMarksOnceThenReportsAlreadyMarked() {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDate("CSC101", MONDAY)).thenReturn(true);
+        when(studentRepository.isEnrolled("STU1", "CSC101")).thenReturn(true);
+        AttendanceLedger ledger = ledger("sparse");
+
+        insertReturns(1, "STU1");
+        assertEquals(AttendanceLedger.MarkResult.MARKED, ledger.markPresent("STU1", "CSC101", MONDAY));
+
+        // The row exists now, so the insert skips it
+        insertReturns(0, "STU1");
+        when(attendanceRepository.existsByStudentIdAndSubjectIdAndDate("STU1", "CSC101", MONDAY)).thenReturn(true);
+        assertEquals(AttendanceLedger.MarkResult.ALREADY_MARKED, ledger.markPresent("STU1", "CSC101", MONDAY));
+        verify(eventPublisher).publishEvent(any(AttendanceMarkedEvent.class));
+    }
+
+    @Test
+    void sparseModeFlipsAnAbsentRowLeftFromDenseMode() {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDate("CSC101", MONDAY)).thenReturn(true);
+        when(studentRepository.isEnrolled("STU1", "CSC101")).thenReturn(true);
+        insertReturns(0, "STU1");
+        when(attendanceRepository.markPresent("STU1", "CSC101", MONDAY)).thenReturn(1);
+
+        assertEquals(AttendanceLedger.MarkResult.MARKED, ledger("sparse").markPresent("STU1", "CSC101", MONDAY));
+    }
+
+    @Test
+    void sparseBulkMarkInsertsOnlyEnrolledStudentsWithoutARow() {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDate("CSC101", MONDAY)).thenReturn(true);
+        when(studentRepository.findMatriculationNumbersBySubjectCode("CSC101")).thenReturn(Set.of("STU1", "STU2", "STU3"));
+        // STU2 is already present; STU3 has an ABSENT row left from dense mode, flipped by the update.
+        // Both have rows, so only STU1 is inserted; STU9 is not enrolled and is left out
+        when(attendanceRepository.updateStatusForStudents("CSC101", MONDAY, List.of("STU1", "STU2", "STU3", "STU9"),
+                AttendanceStatus.PRESENT)).thenReturn(1);
+        insertReturns(1, "STU1", "STU2", "STU3");
+
+        int marked = ledger("sparse").markAllPresent("CSC101", MONDAY, List.of("STU1", "STU2", "STU3", "STU9"));
+
+        assertEquals(2, marked);
+        verify(attendanceRepository, never()).saveAll(anyList());
+    }
+
+    private void insertReturns(int inserted, String... studentIds) {
+        when(jdbcTemplate.update(anyString(), eq("CSC101"), eq(Date.valueOf(MONDAY)),
+                eq(AttendanceStatus.PRESENT.ordinal()), aryEq(studentIds))).thenReturn(inserted);
+    }
+
+    private static Map<String, AttendanceStatus> byStudent(List<Attendance> record) {
+        Map<String, AttendanceStatus> result = new HashMap<>();
+        record.forEach(row -> result.put(row.getStudentId(), row.getStatus()));
+        return result;
+    }
+
+    private static Map<String, AttendanceStatus> bySession(List<Attendance> record) {
+        Map<String, AttendanceStatus> result = new HashMap<>();
+        record.forEach(row -> result.put(row.getSubjectId() + " " + row.getDate(), row.getStatus()));
+        return result;
+    }
+
+    private static AttendanceSetupPolicy policy(String subjectCode, LocalDate date) {
+        return AttendanceSetupPolicy.builder().code("CODE").subjectId(subjectCode).attendanceDate(date).build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.entities.Suspension;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.repository.SuspensionRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceSessionCacheTest {
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final SuspensionRepository suspensionRepository = mock(SuspensionRepository.class);
+    private final AttendanceSessionCache cache = new AttendanceSessionCache(galleryCache, studentRepository,
+            suspensionRepository, new WorkerThreads(false));
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    private Optional<AttendanceSessionCache.SessionState> awaitLoaded(String code) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Optional<AttendanceSessionCache.SessionState> state;
+        while ((state = cache.get(code)).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return state;
+    }
+
+    @Test
+    void suspensionDuringAnInFlightLoadIsPickedUp() throws Exception {
+        when(galleryCache.get("CSC101")).thenReturn(new GalleryCache.SubjectGallery("CSC101", 0, FaceGallery.empty()));
+        when(studentRepository.findAllStudentsBySubjectCode("CSC101")).thenReturn(Set.of());
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Suspension suspension = new Suspension();
+        suspension.setStudentId("STU1");
+        when(suspensionRepository.findAllBySubjectId("CSC101"))
+                .thenAnswer(invocation -> {
+                    // The warm read the suspensions just before STU1 was suspended
+                    reading.countDown();
+                    release.await();
+                    return List.of();
+                })
+                .thenReturn(List.of(suspension));
+
+        cache.warm("1234", "CSC101", LocalDateTime.now().plusHours(1));
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        cache.refreshSubject("CSC101");
+        release.countDown();
+
+        Optional<AttendanceSessionCache.SessionState> state = awaitLoaded("1234");
+        assertTrue(state.isPresent());
+        assertEquals(Set.of("STU1"), state.get().suspended());
+    }
+}
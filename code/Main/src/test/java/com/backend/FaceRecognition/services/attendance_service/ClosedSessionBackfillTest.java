@@ -0,0 +1,57 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClosedSessionBackfillTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 7);
+
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository = mock(AttendanceSetupPolicyRepository.class);
+    private final AttendanceLedger attendanceLedger = mock(AttendanceLedger.class);
+    private final ClosedSessionBackfill backfill = new ClosedSessionBackfill(attendanceSetupRepository,
+            attendanceLedger, new WorkerThreads(false), 2);
+
+    @Test
+    void closesOldSessionsPageByPageWithTheirCounts() {
+        LocalDate before = LocalDate.now().minusDays(2);
+        List<AttendanceSetupPolicy> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            firstPage.add(policy(id));
+        }
+        when(attendanceSetupRepository.findUnclosedBefore(before, 0, PageRequest.ofSize(200))).thenReturn(firstPage);
+        when(attendanceSetupRepository.findUnclosedBefore(before, 200, PageRequest.ofSize(200)))
+                .thenReturn(List.of(policy(201)));
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY)).thenReturn(List.of(
+                new Attendance("STU1", "CSC101", MONDAY, AttendanceStatus.PRESENT),
+                new Attendance("STU2", "CSC101", MONDAY, AttendanceStatus.ABSENT)));
+
+        backfill.backfill();
+
+        verify(attendanceSetupRepository, times(201)).close(anyInt(), any(), eq(1), eq(1));
+        verify(attendanceSetupRepository).close(eq(201), any(), eq(1), eq(1));
+    }
+
+    private static AttendanceSetupPolicy policy(int id) {
+        AttendanceSetupPolicy policy = AttendanceSetupPolicy.builder().code("CODE" + id).subjectId("CSC101")
+                .attendanceDate(MONDAY).build();
+        policy.setId(id);
+        return policy;
+    }
+}
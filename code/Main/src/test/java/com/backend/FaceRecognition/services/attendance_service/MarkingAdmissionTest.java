@@ -0,0 +1,140 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkingAdmissionTest {
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private MarkingAdmission admission;
+
+    @AfterEach
+    void shutdown() {
+        gate.countDown();
+        admission.shutdown();
+    }
+
+    private MarkingAdmission admission(boolean enabled, int queueCapacity, long maxWaitMillis) {
+        admission = new MarkingAdmission(new SimpleMeterRegistry(), new WorkerThreads(false), enabled, 1,
+                queueCapacity, maxWaitMillis, 35000, 2000, 10000, 500);
+        return admission;
+    }
+
+    private Supplier<ResponseEntity<String>> work(String name) {
+        return () -> {
+            started.add(name);
+            return ResponseEntity.ok(name);
+        };
+    }
+
+    // Holds the only slot until the gate opens
+    private CompletableFuture<ResponseEntity<String>> occupySlot(String sessionCode) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> result = admission.submit(sessionCode, () -> {
+            running.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResponseEntity.ok("blocker");
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        return result;
+    }
+
+    @Test
+    void sessionsAreServedInTurnAndEachInArrivalOrder() throws Exception {
+        admission(true, 100, 20000);
+        occupySlot("LARGE");
+        List<CompletableFuture<ResponseEntity<String>>> results = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            results.add(admission.submit("LARGE", work("large-" + i)));
+        }
+        results.add(admission.submit("SMALL", work("small-1")));
+        assertEquals(4, admission.queued());
+
+        gate.countDown();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // The small class waits behind one submission of the large class, not all of them
+        assertEquals(List.of("large-1", "small-1", "large-2", "large-3"), started);
+        assertEquals(0, admission.queued());
+    }
+
+    @Test
+    void fullSessionQueueIsRejectedWithRetryAfter() throws Exception {
+        admission(true, 2, 20000);
+        occupySlot("1234");
+        admission.submit("1234", work("first"));
+        admission.submit("1234", work("second"));
+
+        ResponseEntity<String> rejected = admission.submit("1234", work("third")).getNow(null);
+        ResponseEntity<String> otherSession = admission.submit("5678", work("other")).getNow(null);
+
+        assertNotNull(rejected);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatusCode());
+        assertTrue(Long.parseLong(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)) >= 1);
+        assertNull(otherSession);
+    }
+
+    @Test
+    void submissionPastTheDeadlineIsAnsweredWithoutRunning() throws Exception {
+        admission(true, 100, 50);
+        occupySlot("1234");
+        CompletableFuture<ResponseEntity<String>> late = admission.submit("1234", work("late"));
+        Thread.sleep(100);
+
+        gate.countDown();
+
+        ResponseEntity<String> response = late.get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(List.of(), started);
+    }
+
+    @Test
+    void waitIsCappedToFinishBeforeTheRequestTimesOut() {
+        // 30 s request timeout less a 12.5 s sidecar call and 1 s for the rest
+        admission = new MarkingAdmission(new SimpleMeterRegistry(), new WorkerThreads(false), true, 1,
+                100, 20000, 30000, 2000, 10000, 500);
+        assertEquals(16500, admission.maxWaitMillis());
+
+        admission.shutdown();
+        admission(true, 100, 20000);
+        assertEquals(20000, admission.maxWaitMillis());
+    }
+
+    @Test
+    void disabledAdmissionRunsOnTheCallersThread() {
+        admission(false, 1, 20000);
+        Thread caller = Thread.currentThread();
+        List<Thread> ranOn = new ArrayList<>();
+
+        ResponseEntity<String> response = admission.submit("1234", () -> {
+            ranOn.add(Thread.currentThread());
+            return ResponseEntity.ok("done");
+        }).getNow(null);
+
+        assertNotNull(response);
+        assertEquals("done", response.getBody());
+        assertEquals(List.of(caller), ranOn);
+    }
+}
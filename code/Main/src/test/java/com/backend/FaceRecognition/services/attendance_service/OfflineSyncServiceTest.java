@@ -0,0 +1,218 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.repository.SuspensionRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceGallery;
+import com.backend.FaceRecognition.services.face_recognition_service.FaceRecognitionService;
+import com.backend.FaceRecognition.utils.HardwareSyncManifest;
+import com.backend.FaceRecognition.utils.HardwareSyncReport;
+import com.backend.FaceRecognition.utils.HardwareSyncReport.Outcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OfflineSyncServiceTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 7);
+    private static final byte[] FRAME = {1, 2, 3};
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository = mock(AttendanceSetupPolicyRepository.class);
+    private final AttendanceLedger attendanceLedger = mock(AttendanceLedger.class);
+    private final FaceRecognitionService faceRecognitionService = mock(FaceRecognitionService.class);
+    private final WriteBehindMarker writeBehindMarker = mock(WriteBehindMarker.class);
+    private final SessionLifecycleService sessionLifecycleService = mock(SessionLifecycleService.class);
+    private final OfflineSyncService service = new OfflineSyncService(objectMapper, attendanceSetupRepository,
+            mock(SuspensionRepository.class), attendanceLedger, faceRecognitionService, writeBehindMarker,
+            sessionLifecycleService, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new WorkerThreads(false), 4, 52428800, 5000, 120000);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    /**
+     * A session of the subject open for an hour from the given hour on Monday, with the given record.
+     */
+    private AttendanceSetupPolicy session(int id, String code, String subjectCode, int hour, String... roster) {
+        AttendanceSetupPolicy policy = AttendanceSetupPolicy.builder().code(code).subjectId(subjectCode)
+                .duration(60).attendanceDate(MONDAY).attendanceDateTime(MONDAY.atTime(hour + 1, 0)).build();
+        policy.setId(id);
+        policy.setOpenedAt(MONDAY.atTime(hour, 0));
+        List<Attendance> record = new ArrayList<>();
+        for (String student : roster) {
+            String[] parts = student.split("=");
+            record.add(new Attendance(parts[0], subjectCode, MONDAY,
+                    parts.length > 1 ? AttendanceStatus.valueOf(parts[1]) : AttendanceStatus.ABSENT));
+        }
+        when(attendanceLedger.sessionRecord(subjectCode, MONDAY)).thenReturn(record);
+        return policy;
+    }
+
+    private static HardwareSyncManifest.Entry student(String entryId, String code, int hour, int minute, String studentId) {
+        return new HardwareSyncManifest.Entry(entryId, code, MONDAY.atTime(hour, minute), studentId, null);
+    }
+
+    private static HardwareSyncManifest.Entry frame(String entryId, String code, int hour, int minute, String frame) {
+        return new HardwareSyncManifest.Entry(entryId, code, MONDAY.atTime(hour, minute), null, frame);
+    }
+
+    private HardwareSyncReport sync(List<HardwareSyncManifest.Entry> entries, String... frames) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry(OfflineSyncService.MANIFEST));
+            zip.write(objectMapper.writeValueAsBytes(new HardwareSyncManifest("kiosk-1", entries)));
+            for (String frame : frames) {
+                zip.putNextEntry(new ZipEntry(frame));
+                zip.write(FRAME);
+            }
+        }
+        return service.sync(new ByteArrayInputStream(archive.toByteArray())).getBody();
+    }
+
+    private static Map<String, Outcome> outcomes(HardwareSyncReport report) {
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        report.getEntries().forEach(entry -> outcomes.put(entry.getEntryId(), entry.getOutcome()));
+        return outcomes;
+    }
+
+    private void recognizes(String frame, String studentId) {
+        when(faceRecognitionService.recognizeFaces(any(Resource.class), anyString())).thenAnswer(invocation -> {
+            Resource resource = invocation.getArgument(0);
+            List<FaceGallery.Match> matches = frame.equals(resource.getFilename())
+                    ? List.of(new FaceGallery.Match(studentId, 0.3))
+                    : List.of();
+            return new FaceRecognitionService.ClassroomRecognition(matches.size(), matches);
+        });
+    }
+
+    @Test
+    void marksAcceptedEntriesAndReportsTheRest() throws IOException {
+        AttendanceSetupPolicy policy = session(1, "1234", "CSC101", 9, "STU1", "STU2", "STU3");
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("1234", MONDAY)).thenReturn(List.of(policy));
+        recognizes("frames/a.jpg", "STU2");
+
+        HardwareSyncReport report = sync(List.of(
+                student("1", "1234", 9, 10, "STU1"),
+                frame("2", "1234", 9, 20, "frames/a.jpg"),
+                frame("3", "1234", 9, 25, "frames/b.jpg"),
+                frame("4", "1234", 9, 30, "frames/missing.jpg"),
+                student("5", "1234", 9, 40, "STU9"),
+                student("6", "9999", 9, 40, "STU3"),
+                student("7", "1234", 11, 30, "STU3"),
+                student("8", "1234", 9, 50, "STU1")), "frames/a.jpg", "frames/b.jpg");
+
+        assertEquals(Map.of("1", Outcome.MARKED, "2", Outcome.MARKED, "3", Outcome.NOT_RECOGNIZED,
+                "4", Outcome.INVALID, "5", Outcome.NOT_ENROLLED, "6", Outcome.UNKNOWN_SESSION,
+                "7", Outcome.OUTSIDE_WINDOW, "8", Outcome.ALREADY_MARKED), outcomes(report));
+        assertEquals(2, report.getMarked());
+        assertEquals(5, report.getRejected());
+        verify(attendanceLedger).markAllPresent("CSC101", MONDAY, Set.of("STU1", "STU2"));
+        verify(writeBehindMarker).markedElsewhere("1234", Set.of("STU1", "STU2"));
+        verify(sessionLifecycleService).recount(policy);
+    }
+
+    @Test
+    void uploadingTheSameBatchAgainChangesNothing() throws IOException {
+        // STU1 was marked by the first upload
+        AttendanceSetupPolicy policy = session(1, "1234", "CSC101", 9, "STU1=PRESENT", "STU2");
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("1234", MONDAY)).thenReturn(List.of(policy));
+
+        HardwareSyncReport report = sync(List.of(student("1", "1234", 9, 10, "STU1")));
+
+        assertEquals(Map.of("1", Outcome.ALREADY_MARKED), outcomes(report));
+        verify(attendanceLedger, never()).markAllPresent(anyString(), any(), anyCollection());
+        verify(sessionLifecycleService, never()).recount(any());
+    }
+
+    @Test
+    void codeReusedOnTheSameDayResolvesToTheSessionThatWasOpen() throws IOException {
+        AttendanceSetupPolicy morning = session(1, "1234", "CSC101", 9, "STU1");
+        AttendanceSetupPolicy afternoon = session(2, "1234", "MTH201", 14, "STU2");
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("1234", MONDAY))
+                .thenReturn(List.of(morning, afternoon));
+
+        HardwareSyncReport report = sync(List.of(
+                student("1", "1234", 9, 30, "STU1"),
+                student("2", "1234", 14, 30, "STU2"),
+                student("3", "1234", 12, 0, "STU1")));
+
+        assertEquals(Map.of("1", Outcome.MARKED, "2", Outcome.MARKED, "3", Outcome.OUTSIDE_WINDOW), outcomes(report));
+        verify(attendanceLedger).markAllPresent("CSC101", MONDAY, Set.of("STU1"));
+        verify(attendanceLedger).markAllPresent("MTH201", MONDAY, Set.of("STU2"));
+    }
+
+    @Test
+    void sessionThatCannotBeSavedOnlyFailsItsOwnEntries() throws IOException {
+        AttendanceSetupPolicy morning = session(1, "1234", "CSC101", 9, "STU1");
+        AttendanceSetupPolicy afternoon = session(2, "5678", "MTH201", 14, "STU2");
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("1234", MONDAY)).thenReturn(List.of(morning));
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("5678", MONDAY)).thenReturn(List.of(afternoon));
+        when(attendanceLedger.markAllPresent(eq("CSC101"), eq(MONDAY), anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        HardwareSyncReport report = sync(List.of(
+                student("1", "1234", 9, 30, "STU1"),
+                student("2", "5678", 14, 30, "STU2")));
+
+        assertEquals(Map.of("1", Outcome.FAILED, "2", Outcome.MARKED), outcomes(report));
+        verify(sessionLifecycleService, never()).recount(morning);
+        verify(sessionLifecycleService).recount(afternoon);
+    }
+
+    @Test
+    void framesAreRecognizedInParallel() throws IOException {
+        AttendanceSetupPolicy policy = session(1, "1234", "CSC101", 9, "STU1", "STU2");
+        when(attendanceSetupRepository.findAllByCodeAndAttendanceDate("1234", MONDAY)).thenReturn(List.of(policy));
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+        List<Boolean> overlapped = new CopyOnWriteArrayList<>();
+        when(faceRecognitionService.recognizeFaces(any(Resource.class), eq("CSC101"))).thenAnswer(invocation -> {
+            bothInFlight.countDown();
+            overlapped.add(bothInFlight.await(5, TimeUnit.SECONDS));
+            String studentId = "a.jpg".equals(((Resource) invocation.getArgument(0)).getFilename()) ? "STU1" : "STU2";
+            return new FaceRecognitionService.ClassroomRecognition(1, List.of(new FaceGallery.Match(studentId, 0.3)));
+        });
+
+        HardwareSyncReport report = sync(List.of(
+                frame("1", "1234", 9, 10, "a.jpg"),
+                frame("2", "1234", 9, 20, "b.jpg")), "a.jpg", "b.jpg");
+
+        assertEquals(List.of(true, true), overlapped);
+        assertEquals(Map.of("1", Outcome.MARKED, "2", Outcome.MARKED), outcomes(report));
+        assertTrue(report.getEntries().get(0).getStudents().contains("STU1"));
+    }
+}
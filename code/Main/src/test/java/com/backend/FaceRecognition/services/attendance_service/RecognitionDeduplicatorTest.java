@@ -0,0 +1,64 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecognitionDeduplicatorTest {
+    private final RecognitionDeduplicator deduplicator = new RecognitionDeduplicator(new SimpleMeterRegistry(), 30, 1000);
+    private final MockMultipartFile frame = new MockMultipartFile("file", "frame.jpg", "image/jpeg", new byte[]{1, 2, 3});
+    private final AtomicInteger recognitions = new AtomicInteger();
+
+    @Test
+    void replaysMarkedOutcomeByContentAndByKey() {
+        submit("ABC123", "key-1", HttpStatus.OK);
+        submit("ABC123", "key-1", HttpStatus.OK);
+        submit("ABC123", null, HttpStatus.OK);
+        assertEquals(1, recognitions.get());
+    }
+
+    @Test
+    void recomputesNotRecognizedAndSuspended() {
+        submit("ABC123", "key-1", HttpStatus.NOT_FOUND);
+        // The student was enrolled in the meantime
+        assertEquals(HttpStatus.OK, submit("ABC123", "key-1", HttpStatus.OK).getStatusCode());
+        assertEquals(2, recognitions.get());
+
+        submit("DEF456", null, HttpStatus.FORBIDDEN);
+        submit("DEF456", null, HttpStatus.FORBIDDEN);
+        assertEquals(4, recognitions.get());
+    }
+
+    @Test
+    void sessionsDoNotShareOutcomes() {
+        submit("ABC123", "key-1", HttpStatus.OK);
+        submit("DEF456", "key-1", HttpStatus.OK);
+        assertEquals(2, recognitions.get());
+    }
+
+    @Test
+    void closingASessionDropsItsOutcomes() {
+        submit("ABC123", "key-1", HttpStatus.CONFLICT);
+        submit("DEF456", "key-1", HttpStatus.OK);
+        deduplicator.evictSession("ABC123");
+
+        submit("ABC123", "key-1", HttpStatus.CONFLICT);
+        submit("DEF456", "key-1", HttpStatus.OK);
+        assertEquals(3, recognitions.get());
+    }
+
+    private ResponseEntity<String> submit(String session, String idempotencyKey, HttpStatus status) {
+        Supplier<ResponseEntity<String>> recognition = () -> {
+            recognitions.incrementAndGet();
+            return new ResponseEntity<>(status.getReasonPhrase(), status);
+        };
+        return deduplicator.deduplicate(session, idempotencyKey, frame, recognition);
+    }
+}
@@ -0,0 +1,187 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.constants.AttendanceStatus;
+import com.backend.FaceRecognition.entities.Attendance;
+import com.backend.FaceRecognition.entities.AttendanceSetupPolicy;
+import com.backend.FaceRecognition.repository.AttendanceSetupPolicyRepository;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import com.backend.FaceRecognition.utils.AttendanceRecordResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionLifecycleServiceTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 10, 7);
+
+    private final AttendanceSetupPolicyRepository attendanceSetupRepository = mock(AttendanceSetupPolicyRepository.class);
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final AttendanceLedger attendanceLedger = mock(AttendanceLedger.class);
+    private final SessionLifecycleService service = new SessionLifecycleService(attendanceSetupRepository,
+            attendanceLedger, mock(WriteBehindMarker.class), mock(AttendanceSessionCache.class),
+            mock(AttendanceFeed.class), mock(RecognitionDeduplicator.class), galleryCache, 10, 2);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    private Supplier<AttendanceRecordResponse> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return new AttendanceRecordResponse();
+        };
+    }
+
+    private void closed(boolean closed) {
+        when(attendanceSetupRepository.existsBySubjectIdAndAttendanceDateAndClosedAtIsNotNull("CSC101", MONDAY))
+                .thenReturn(closed);
+    }
+
+    @Test
+    void closedRecordIsServedFromTheCache() {
+        closed(true);
+
+        AttendanceRecordResponse first = service.record("CSC101", MONDAY, loader());
+        AttendanceRecordResponse second = service.record("CSC101", MONDAY, loader());
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void openSessionIsLoadedOnEveryRead() {
+        closed(false);
+
+        service.record("CSC101", MONDAY, loader());
+        service.record("CSC101", MONDAY, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void rosterChangeReloadsTheClosedRecord() {
+        closed(true);
+        when(galleryCache.currentVersion("CSC101")).thenReturn(3L);
+        AttendanceRecordResponse before = service.record("CSC101", MONDAY, loader());
+
+        // A student joined or left the subject after the session closed
+        when(galleryCache.currentVersion("CSC101")).thenReturn(4L);
+        AttendanceRecordResponse after = service.record("CSC101", MONDAY, loader());
+
+        assertNotSame(before, after);
+        assertSame(after, service.record("CSC101", MONDAY, loader()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateDropsTheClosedRecord() {
+        closed(true);
+        service.record("CSC101", MONDAY, loader());
+
+        service.invalidate("CSC101", MONDAY);
+        service.record("CSC101", MONDAY, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void recordLoadedAcrossAnInvalidateIsNotCached() {
+        closed(true);
+        // Late marks land while the record is being read
+        service.record("CSC101", MONDAY, () -> {
+            loads.incrementAndGet();
+            service.invalidate("CSC101", MONDAY);
+            return new AttendanceRecordResponse();
+        });
+
+        service.record("CSC101", MONDAY, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missingRecordIsNotCached() {
+        closed(true);
+
+        assertNull(service.record("CSC101", MONDAY, () -> null));
+        service.record("CSC101", MONDAY, loader());
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void recountStoresTheCountsOfAClosedSessionAndDropsItsRecord() {
+        closed(true);
+        service.record("CSC101", MONDAY, loader());
+        when(attendanceLedger.sessionRecord("CSC101", MONDAY)).thenReturn(List.of(
+                new Attendance("STU1", "CSC101", MONDAY, AttendanceStatus.PRESENT),
+                new Attendance("STU2", "CSC101", MONDAY, AttendanceStatus.PRESENT),
+                new Attendance("STU3", "CSC101", MONDAY, AttendanceStatus.ABSENT)));
+
+        // The policy was read while the session was still open
+        service.recount(policy());
+
+        verify(attendanceSetupRepository, timeout(5000)).updateClosedCounts(1, 2, 1);
+        service.record("CSC101", MONDAY, loader());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void recountLeavesAnOpenSessionToBeCountedWhenItCloses() {
+        closed(false);
+
+        service.recount(policy());
+
+        verify(attendanceSetupRepository, after(200).never()).updateClosedCounts(anyInt(), anyInt(), anyInt());
+        verify(attendanceLedger, never()).sessionRecord("CSC101", MONDAY);
+    }
+
+    @Test
+    void startupClosesExpiredSessionsOfTheCatchUpWindowPageByPage() {
+        LocalDate since = LocalDate.now().minusDays(2);
+        List<AttendanceSetupPolicy> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            firstPage.add(policy(id));
+        }
+        when(attendanceSetupRepository.findUnclosedSince(since, 0, PageRequest.ofSize(200))).thenReturn(firstPage);
+        when(attendanceSetupRepository.findUnclosedSince(since, 200, PageRequest.ofSize(200)))
+                .thenReturn(List.of(policy(201)));
+
+        service.closeExpiredSessions();
+
+        verify(attendanceSetupRepository, timeout(5000).times(201)).close(anyInt(), any(), anyInt(), anyInt());
+        verify(attendanceSetupRepository, never()).findUnclosedBefore(any(), anyInt(), any());
+    }
+
+    private static AttendanceSetupPolicy policy() {
+        return policy(1);
+    }
+
+    private static AttendanceSetupPolicy policy(int id) {
+        AttendanceSetupPolicy policy = AttendanceSetupPolicy.builder().code("1234").subjectId("CSC101")
+                .attendanceDate(MONDAY).build();
+        policy.setId(id);
+        return policy;
+    }
+}
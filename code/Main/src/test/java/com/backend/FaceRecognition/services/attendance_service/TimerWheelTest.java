@@ -0,0 +1,119 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a 100 ms, 8-bucket wheel by hand against a fake clock.
+ */
+class TimerWheelTest {
+    private final AtomicLong now = new AtomicLong();
+    private final TimerWheel wheel = new TimerWheel(Duration.ofMillis(100), 8, now::get);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void firesOnTheFirstTickAtOrAfterTheDeadline() {
+        wheel.schedule(() -> fired.add("a"), Duration.ofMillis(250));
+
+        tickTo(200);
+        assertTrue(fired.isEmpty());
+        tickTo(300);
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() {
+        TimerWheel.Timeout timeout = wheel.schedule(() -> fired.add("a"), Duration.ofMillis(100));
+
+        assertTrue(timeout.cancel());
+        tickTo(500);
+        assertTrue(fired.isEmpty());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void rescheduledTimeoutFiresOnlyAtItsNewDeadline() {
+        // What ActiveSessionRegistry does when a session is extended
+        TimerWheel.Timeout original = wheel.schedule(() -> fired.add("original"), Duration.ofMillis(300));
+        tickTo(100);
+        original.cancel();
+        wheel.schedule(() -> fired.add("extended"), Duration.ofMillis(500));
+
+        tickTo(400);
+        assertTrue(fired.isEmpty());
+        tickTo(600);
+        assertEquals(List.of("extended"), fired);
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirTurn() {
+        // Tick 11 shares a bucket with tick 3
+        wheel.schedule(() -> fired.add("later"), Duration.ofMillis(1100));
+        wheel.schedule(() -> fired.add("sooner"), Duration.ofMillis(300));
+
+        tickTo(300);
+        assertEquals(List.of("sooner"), fired);
+        tickTo(1000);
+        assertEquals(List.of("sooner"), fired);
+        tickTo(1100);
+        assertEquals(List.of("sooner", "later"), fired);
+    }
+
+    @Test
+    void lateDriverCatchesUpOnEverythingDue() {
+        for (int i = 1; i <= 20; i++) {
+            int delay = i * 100;
+            wheel.schedule(() -> fired.add(String.valueOf(delay)), Duration.ofMillis(delay));
+        }
+        wheel.schedule(() -> fired.add("future"), Duration.ofMillis(3000));
+
+        // One advance after more than two revolutions without a tick
+        now.set(Duration.ofMillis(2000).toNanos());
+        wheel.advance();
+
+        assertEquals(20, fired.size());
+        assertEquals(1, wheel.pending());
+        tickTo(3000);
+        assertEquals("future", fired.get(20));
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheOthers() {
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, Duration.ofMillis(100));
+        wheel.schedule(() -> fired.add("b"), Duration.ofMillis(100));
+
+        tickTo(100);
+        assertEquals(List.of("b"), fired);
+    }
+
+    @Test
+    void timeoutScheduledInThePastFiresOnTheNextTick() {
+        tickTo(500);
+        wheel.schedule(() -> fired.add("a"), Duration.ofMillis(-50));
+        tickTo(600);
+        assertEquals(List.of("a"), fired);
+    }
+
+    /**
+     * Moves the clock forward one tick at a time, as the driver thread would.
+     */
+    private void tickTo(long millis) {
+        long target = Duration.ofMillis(millis).toNanos();
+        long tick = Duration.ofMillis(100).toNanos();
+        while (now.get() < target) {
+            now.set(Math.min(target, now.get() + tick));
+            wheel.advance();
+        }
+    }
+}
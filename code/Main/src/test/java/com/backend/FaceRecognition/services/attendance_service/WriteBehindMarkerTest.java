@@ -0,0 +1,200 @@
+package com.backend.FaceRecognition.services.attendance_service;
+
+import com.backend.FaceRecognition.repository.AttendanceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The flush interval is an hour, so batches are only written when a test calls {@code flush()}.
+ */
+class WriteBehindMarkerTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 10, 7);
+
+    private final AttendanceRepository attendanceRepository = mock(AttendanceRepository.class);
+    private final AttendanceSessionCache attendanceSessionCache = mock(AttendanceSessionCache.class);
+    private final AttendanceLedger attendanceLedger = mock(AttendanceLedger.class);
+    private WriteBehindMarker marker;
+
+    private void start(boolean awaitFlush) {
+        marker = new WriteBehindMarker(attendanceRepository, attendanceSessionCache, attendanceLedger,
+                "write-behind", 3_600_000, awaitFlush, 5000, 3);
+        when(attendanceSessionCache.isActive(anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    void stop() {
+        marker.shutdown();
+    }
+
+    @Test
+    void decidesMarksInMemory() {
+        start(false);
+        session("AAAA", "CSC101", Set.of("STU1", "STU2", "STU3"), Set.of("STU3"));
+
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.MARKED), marker.mark("AAAA", TODAY, "STU1"));
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.ALREADY_MARKED), marker.mark("AAAA", TODAY, "STU1"));
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.SUSPENDED), marker.mark("AAAA", TODAY, "STU3"));
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.NOT_ENROLLED), marker.mark("AAAA", TODAY, "STU9"));
+        marker.markedElsewhere("AAAA", List.of("STU2"));
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.ALREADY_MARKED), marker.mark("AAAA", TODAY, "STU2"));
+    }
+
+    @Test
+    void flushWritesOneBatchPerSessionInArrivalOrder() {
+        start(false);
+        session("AAAA", "CSC101", Set.of("STU1", "STU2"), Set.of());
+        session("BBBB", "MTH201", Set.of("STU3"), Set.of());
+        marker.mark("AAAA", TODAY, "STU2");
+        marker.mark("BBBB", TODAY, "STU3");
+        marker.mark("AAAA", TODAY, "STU1");
+
+        marker.flush();
+
+        InOrder order = inOrder(attendanceLedger);
+        order.verify(attendanceLedger).markAllPresent("CSC101", TODAY, List.of("STU2", "STU1"));
+        order.verify(attendanceLedger).markAllPresent("MTH201", TODAY, List.of("STU3"));
+        marker.flush();
+        verify(attendanceLedger, times(2)).markAllPresent(anyString(), any(), anyCollection());
+    }
+
+    @Test
+    void awaitedMarkIsAcknowledgedOnlyAfterItsBatchIsWritten() throws Exception {
+        start(true);
+        session("AAAA", "CSC101", Set.of("STU1"), Set.of());
+        AtomicReference<Future<Optional<WriteBehindMarker.Outcome>>> submission = new AtomicReference<>();
+        doAnswer(invocation -> {
+            assertFalse(submission.get().isDone(), "Acknowledged before the batch was written");
+            return 1;
+        }).when(attendanceLedger).markAllPresent(eq("CSC101"), eq(TODAY), anyCollection());
+
+        submission.set(CompletableFuture.supplyAsync(() -> marker.mark("AAAA", TODAY, "STU1")));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(submission.get().isDone());
+        flushUntilDone(submission.get());
+
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.MARKED), submission.get().get());
+    }
+
+    @Test
+    void failedBatchIsRetriedThenDroppedSoTheStudentCanSubmitAgain() {
+        start(false);
+        session("AAAA", "CSC101", Set.of("STU1"), Set.of());
+        when(attendanceLedger.markAllPresent(eq("CSC101"), eq(TODAY), anyCollection()))
+                .thenThrow(new IllegalStateException("database down"));
+        marker.mark("AAAA", TODAY, "STU1");
+
+        for (int i = 0; i < 5; i++) {
+            marker.flush();
+        }
+
+        verify(attendanceLedger, times(3)).markAllPresent(eq("CSC101"), eq(TODAY), anyCollection());
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.MARKED), marker.mark("AAAA", TODAY, "STU1"));
+    }
+
+    @Test
+    void waitingCallerIsToldWhenItsMarkIsDropped() throws Exception {
+        start(true);
+        session("AAAA", "CSC101", Set.of("STU1"), Set.of());
+        when(attendanceLedger.markAllPresent(eq("CSC101"), eq(TODAY), anyCollection()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        Future<Optional<WriteBehindMarker.Outcome>> submission =
+                CompletableFuture.supplyAsync(() -> marker.mark("AAAA", TODAY, "STU1"));
+        flushUntilDone(submission);
+
+        assertEquals(Optional.of(WriteBehindMarker.Outcome.FAILED), submission.get());
+    }
+
+    @Test
+    void marksRacingWithRosterReloadsAreNeitherLostNorDoubled() throws Exception {
+        start(false);
+        Set<String> roster = new HashSet<>();
+        for (int i = 0; i < 400; i++) {
+            roster.add("STU" + i);
+        }
+        // Every fourth lookup sees a freshly reloaded working set, as after a suspension change
+        AtomicInteger lookups = new AtomicInteger();
+        AtomicReference<AttendanceSessionCache.SessionState> current = new AtomicReference<>(state("AAAA", "CSC101", roster, Set.of()));
+        when(attendanceSessionCache.get("AAAA")).thenAnswer(invocation -> {
+            if (lookups.incrementAndGet() % 4 == 0) {
+                current.set(state("AAAA", "CSC101", roster, Set.of()));
+            }
+            return Optional.of(current.get());
+        });
+        Set<String> written = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            Collection<String> students = invocation.getArgument(2);
+            students.forEach(student -> assertTrue(written.add(student), student + " written twice"));
+            return students.size();
+        }).when(attendanceLedger).markAllPresent(eq("CSC101"), eq(TODAY), anyCollection());
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<Optional<WriteBehindMarker.Outcome>>> outcomes = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (String student : roster) {
+                outcomes.add(threads.submit(() -> marker.mark("AAAA", TODAY, student)));
+            }
+        }
+        int marked = 0;
+        for (Future<Optional<WriteBehindMarker.Outcome>> outcome : outcomes) {
+            if (outcome.get().orElseThrow() == WriteBehindMarker.Outcome.MARKED) {
+                marked++;
+            }
+        }
+        threads.shutdown();
+        marker.flush();
+
+        assertEquals(roster.size(), marked);
+        assertEquals(roster, written);
+    }
+
+    private void flushUntilDone(Future<?> submission) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!submission.isDone() && System.nanoTime() < deadline) {
+            marker.flush();
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private void session(String code, String subjectCode, Set<String> roster, Set<String> suspended) {
+        when(attendanceSessionCache.get(code)).thenReturn(Optional.of(state(code, subjectCode, roster, suspended)));
+    }
+
+    private static AttendanceSessionCache.SessionState state(String code, String subjectCode, Set<String> roster,
+                                                             Set<String> suspended) {
+        return new AttendanceSessionCache.SessionState(code, subjectCode, LocalDateTime.now().plusMinutes(30), 0,
+                roster, suspended);
+    }
+}
@@ -0,0 +1,134 @@
+package com.backend.FaceRecognition.services.authorization_service.student_service;
+
+import com.backend.FaceRecognition.constants.EnrollmentStatus;
+import com.backend.FaceRecognition.entities.EnrollmentJob;
+import com.backend.FaceRecognition.entities.Student;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.EnrollmentJobRepository;
+import com.backend.FaceRecognition.services.jwt_service.JwtService;
+import com.backend.FaceRecognition.utils.EnrollmentJobResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EnrollmentServiceTest {
+    private final EnrollmentJobRepository enrollmentJobRepository = mock(EnrollmentJobRepository.class);
+    private final StudentService studentService = mock(StudentService.class);
+    private final JwtService jwtService = mock(JwtService.class);
+    private final Map<String, EnrollmentJob> jobs = new ConcurrentHashMap<>();
+    private EnrollmentService enrollmentService;
+
+    private void start(int workers, int queueCapacity) {
+        enrollmentService = new EnrollmentService(enrollmentJobRepository, studentService, jwtService,
+                new WorkerThreads(false), workers, queueCapacity);
+        when(jwtService.extractTokenFromHeader("Bearer token")).thenReturn("token");
+        when(jwtService.getId("token")).thenReturn("STU1");
+        when(studentService.getStudentById("STU1")).thenReturn(Optional.of(new Student()));
+        when(studentService.isAcceptableImage(any())).thenReturn(true);
+        when(enrollmentJobRepository.save(any(EnrollmentJob.class))).thenAnswer(invocation -> {
+            EnrollmentJob job = invocation.getArgument(0);
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        when(enrollmentJobRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+    }
+
+    @AfterEach
+    void stop() {
+        enrollmentService.shutdown();
+    }
+
+    @Test
+    void acceptsTheUploadAndEncodesItOnAWorker() {
+        start(1, 10);
+        when(studentService.encodeAndStore(eq("STU1"), any())).thenReturn(ResponseEntity.ok("Saved successfully"));
+
+        ResponseEntity<EnrollmentJobResponse> response = enrollmentService.submit(upload(), "Bearer token");
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(EnrollmentStatus.QUEUED, response.getBody().getStatus());
+        String jobId = response.getBody().getJobId();
+        verify(enrollmentJobRepository, timeout(5000))
+                .complete(eq(jobId), eq(EnrollmentStatus.SUCCEEDED), eq("Saved successfully"), any());
+    }
+
+    @Test
+    void failedEncodingFailsTheJobWithTheSidecarMessage() {
+        start(1, 10);
+        when(studentService.encodeAndStore(eq("STU1"), any()))
+                .thenReturn(ResponseEntity.badRequest().body("Invalid amount of faces detected"));
+
+        String jobId = enrollmentService.submit(upload(), "Bearer token").getBody().getJobId();
+
+        verify(enrollmentJobRepository, timeout(5000))
+                .complete(eq(jobId), eq(EnrollmentStatus.FAILED), eq("Invalid amount of faces detected"), any());
+    }
+
+    @Test
+    void rejectsUploadsWhenTheQueueIsFull() throws InterruptedException {
+        start(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(studentService.encodeAndStore(eq("STU1"), any())).thenAnswer(invocation -> {
+            release.await();
+            return ResponseEntity.ok("Saved successfully");
+        });
+        enrollmentService.submit(upload(), "Bearer token");
+        // Wait for the worker to take the first job, so the second one fills the queue
+        verify(enrollmentJobRepository, timeout(5000)).updateStatus(anyString(), eq(EnrollmentStatus.PROCESSING), any());
+        enrollmentService.submit(upload(), "Bearer token");
+
+        ResponseEntity<EnrollmentJobResponse> rejected = enrollmentService.submit(upload(), "Bearer token");
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        verify(enrollmentJobRepository).complete(eq(rejected.getBody().getJobId()), eq(EnrollmentStatus.FAILED), any(), any());
+        release.countDown();
+    }
+
+    @Test
+    void resumesABacklogLargerThanTheQueue() {
+        // Two workers and three queue slots for twenty jobs
+        start(2, 3);
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            EnrollmentJob job = new EnrollmentJob("job-" + i, "STU1", new byte[]{1});
+            jobs.put(job.getId(), job);
+            pending.add(job.getId());
+        }
+        when(enrollmentJobRepository.findIdsByStatusIn(any())).thenReturn(pending);
+        when(studentService.encodeAndStore(eq("STU1"), any())).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(20);
+            return ResponseEntity.ok("Saved successfully");
+        });
+
+        enrollmentService.resumePendingJobs();
+
+        for (String jobId : pending) {
+            verify(enrollmentJobRepository, timeout(10_000))
+                    .complete(eq(jobId), eq(EnrollmentStatus.SUCCEEDED), any(), any());
+        }
+    }
+
+    private static MockMultipartFile upload() {
+        return new MockMultipartFile("file", "face.jpg", "image/jpeg", new byte[]{1, 2, 3});
+    }
+}
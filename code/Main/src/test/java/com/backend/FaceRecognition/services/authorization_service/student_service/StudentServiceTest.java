@@ -0,0 +1,100 @@
+package com.backend.FaceRecognition.services.authorization_service.student_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.application_user.ApplicationUserService;
+import com.backend.FaceRecognition.services.attendance_service.AttendanceLedger;
+import com.backend.FaceRecognition.services.extras.ProfilePictureService;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarClient;
+import com.backend.FaceRecognition.services.face_recognition_service.VectorIndex;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import com.backend.FaceRecognition.services.image_request_service.TemplateConsolidationService;
+import com.backend.FaceRecognition.services.jwt_service.JwtService;
+import com.backend.FaceRecognition.utils.EncodedImage;
+import com.backend.FaceRecognition.utils.FaceRecognitionEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * encodeAndStore runs on an enrollment worker with no persistence context, so it must not
+ * touch lazy associations of the student.
+ */
+class StudentServiceTest {
+    private final EncodedImagesRepository encodedImagesRepository = mock(EncodedImagesRepository.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final SidecarClient sidecarClient = mock(SidecarClient.class);
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final CampusFaceIndex campusFaceIndex = mock(CampusFaceIndex.class);
+    private final TemplateConsolidationService templateConsolidationService = mock(TemplateConsolidationService.class);
+    private final StudentService studentService = new StudentService(encodedImagesRepository, studentRepository,
+            new FaceRecognitionEndpoints(Map.of("ip", "http://sidecar/api/v1/image-processing")), mock(JwtService.class),
+            mock(ApplicationUserService.class), mock(AttendanceLedger.class), mock(ProfilePictureService.class),
+            galleryCache, campusFaceIndex, sidecarClient, templateConsolidationService, 0.4);
+
+    @Test
+    void storesTheTemplateAndInvalidatesTheStudentsGalleries() {
+        when(studentRepository.existsById("STU1")).thenReturn(true);
+        when(studentRepository.findSubjectCodesByMatriculationNumber("STU1")).thenReturn(List.of("CSC101", "MTH201"));
+        sidecarReturns(new EncodedImage("Success", new double[128]));
+        when(campusFaceIndex.findOtherOwner(any(), eq("STU1"), anyDouble())).thenReturn(Optional.empty());
+        when(encodedImagesRepository.save(any(EncodedImages.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ResponseEntity<String> outcome = studentService.encodeAndStore("STU1", image());
+
+        assertEquals(HttpStatus.OK, outcome.getStatusCode());
+        verify(campusFaceIndex).add(any(EncodedImages.class));
+        verify(templateConsolidationService).consolidate("STU1");
+        verify(galleryCache).invalidate(List.of("CSC101", "MTH201"));
+        verify(studentRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void refusesAFaceEnrolledForAnotherStudent() {
+        when(studentRepository.existsById("STU1")).thenReturn(true);
+        sidecarReturns(new EncodedImage("Success", new double[128]));
+        when(campusFaceIndex.findOtherOwner(any(), eq("STU1"), eq(0.4)))
+                .thenReturn(Optional.of(new VectorIndex.Neighbour("STU2", 0.1)));
+
+        ResponseEntity<String> outcome = studentService.encodeAndStore("STU1", image());
+
+        assertEquals(HttpStatus.CONFLICT, outcome.getStatusCode());
+        verify(encodedImagesRepository, never()).save(any());
+    }
+
+    @Test
+    void unknownStudentIsNotSentToTheSidecar() {
+        ResponseEntity<String> outcome = studentService.encodeAndStore("STU9", image());
+
+        assertEquals(HttpStatus.NOT_FOUND, outcome.getStatusCode());
+        verify(sidecarClient, never()).exchange(anyString(), any(), any(), eq(EncodedImage.class));
+    }
+
+    private void sidecarReturns(EncodedImage encoded) {
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(EncodedImage.class)))
+                .thenReturn(ResponseEntity.ok(encoded));
+    }
+
+    private static ByteArrayResource image() {
+        return new ByteArrayResource(new byte[]{1, 2, 3});
+    }
+}
@@ -0,0 +1,98 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CampusFaceIndexTest {
+    private static final int DIMENSION = 4;
+
+    private final EncodedImagesRepository repository = mock(EncodedImagesRepository.class);
+    private final CampusFaceIndex index = new CampusFaceIndex(repository, 2000, 16, 100, 128);
+
+    @Test
+    void templatesStoredDuringTheBuildAreReplayedOnce() {
+        EncodedImages stored = template(1, "STU1", 0.1f);
+        EncodedImages storedMidBuild = template(2, "STU2", 0.5f);
+        when(repository.findTop1000ByIdGreaterThanOrderByIdAsc(anyInt())).thenAnswer(invocation -> {
+            int after = invocation.getArgument(0);
+            if (after > 0) {
+                return List.of();
+            }
+            // Saved after the build read its page, and another save the build will also see
+            index.add(storedMidBuild);
+            index.add(stored);
+            return List.of(stored);
+        });
+
+        index.build();
+
+        assertTrue(index.isReady());
+        assertEquals(2, index.size());
+        assertEquals("STU2", index.identify(vector(0.5f), 0.01).orElseThrow().label());
+    }
+
+    @Test
+    void buildPagesByIdUntilAShortPage() {
+        List<EncodedImages> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            firstPage.add(template(id, "STU" + id, id));
+        }
+        when(repository.findTop1000ByIdGreaterThanOrderByIdAsc(0)).thenReturn(firstPage);
+        when(repository.findTop1000ByIdGreaterThanOrderByIdAsc(1000)).thenReturn(List.of(template(1001, "LAST", 5000)));
+
+        index.build();
+
+        assertEquals(1001, index.size());
+        assertEquals("LAST", index.identify(vector(5000), 0.01).orElseThrow().label());
+    }
+
+    @Test
+    void replacedTemplatesStopMatching() {
+        when(repository.findTop1000ByIdGreaterThanOrderByIdAsc(anyInt())).thenReturn(List.of());
+        index.build();
+        index.add(template(1, "STU1", 0.1f));
+        index.add(template(2, "STU1", 0.9f));
+
+        index.replace("STU1", List.of(template(1, "STU1", 0.1f)));
+
+        assertEquals(1, index.size());
+        assertFalse(index.findOtherOwner(vector(0.9f), "STU2", 0.01).isPresent());
+    }
+
+    @Test
+    void otherOwnerIsFoundBehindManyOwnTemplates() {
+        when(repository.findTop1000ByIdGreaterThanOrderByIdAsc(anyInt())).thenReturn(List.of());
+        index.build();
+        for (int i = 0; i < 40; i++) {
+            index.add(template(i, "SELF", 0.5f + i * 0.0001f));
+        }
+        index.add(template(100, "OTHER", 0.52f));
+
+        assertEquals("OTHER", index.findOtherOwner(vector(0.5f), "SELF", 0.1).orElseThrow().label());
+        assertFalse(index.findOtherOwner(vector(0.5f), "SELF", 0.001).isPresent());
+    }
+
+    private static EncodedImages template(int id, String matriculationNumber, float value) {
+        EncodedImages image = EncodedImages.builder().matriculationNumber(matriculationNumber).vector(vector(value)).build();
+        image.setId(id);
+        return image;
+    }
+
+    private static float[] vector(float value) {
+        float[] vector = new float[DIMENSION];
+        Arrays.fill(vector, value);
+        return vector;
+    }
+}
@@ -0,0 +1,117 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the quantized centroid-first search with what the sidecar did before matching
+ * moved into the JVM: face_recognition.face_distance over the float64 encodings, then the
+ * closest one within the 0.6 tolerance. The synthetic 128-d encodings follow the distance
+ * profile of dlib's model, about 0.4 between two shots of one person and 0.9 between people.
+ */
+class FaceGalleryTest {
+    private static final int DIMENSION = 128;
+    private static final double TOLERANCE = 0.6;
+
+    @Test
+    void quantizedSearchAgreesWithFaceDistance() {
+        Random random = new Random(7);
+        List<EncodedImages> images = new ArrayList<>();
+        List<double[]> encodings = new ArrayList<>();
+        List<String> owners = new ArrayList<>();
+        List<double[]> identities = new ArrayList<>();
+        for (int student = 0; student < 500; student++) {
+            double[] identity = randomVector(random, 0.9 / Math.sqrt(2 * DIMENSION));
+            identities.add(identity);
+            for (int template = 0; template < 3; template++) {
+                double[] encoding = perturb(random, identity, 0.4 / Math.sqrt(2 * DIMENSION));
+                encodings.add(encoding);
+                owners.add("STU" + student);
+                images.add(EncodedImages.builder()
+                        .matriculationNumber("STU" + student)
+                        .vector(FaceGallery.toFloats(encoding))
+                        .build());
+            }
+        }
+        FaceGallery gallery = FaceGallery.of(images);
+
+        int probes = 1000;
+        int agreed = 0;
+        int sameDecision = 0;
+        double maxDistanceError = 0;
+        for (int i = 0; i < probes; i++) {
+            double[] probe = perturb(random, identities.get(random.nextInt(identities.size())),
+                    0.4 / Math.sqrt(2 * DIMENSION));
+            double[] distances = faceDistance(encodings, probe);
+            int best = 0;
+            for (int row = 1; row < distances.length; row++) {
+                if (distances[row] < distances[best]) {
+                    best = row;
+                }
+            }
+            FaceGallery.Match match = gallery.nearest(FaceGallery.toFloats(probe));
+            if (match.matriculationNumber().equals(owners.get(best))) {
+                agreed++;
+                maxDistanceError = Math.max(maxDistanceError, Math.abs(match.distance() - distances[best]));
+            }
+            if ((match.distance() <= TOLERANCE) == (distances[best] <= TOLERANCE)) {
+                sameDecision++;
+            }
+        }
+        double agreement = (double) agreed / probes;
+        assertTrue(agreement >= 0.99, "Top-1 agreement with face_distance was " + agreement);
+        assertTrue(sameDecision >= probes - 1, "Tolerance decision differed for " + (probes - sameDecision) + " probes");
+        // Only the float32 storage of the encodings separates the two distances
+        assertEquals(0, maxDistanceError, 1e-5);
+    }
+
+    @Test
+    void emptyGalleryAndWrongDimensionReturnNoMatch() {
+        assertNull(FaceGallery.empty().nearest(new float[DIMENSION]));
+        FaceGallery gallery = FaceGallery.of(List.of(EncodedImages.builder()
+                .matriculationNumber("STU0")
+                .vector(new float[DIMENSION])
+                .build()));
+        assertNull(gallery.nearest(new float[DIMENSION - 1]));
+    }
+
+    /**
+     * face_recognition.face_distance: np.linalg.norm(face_encodings - face_to_compare, axis=1).
+     */
+    private static double[] faceDistance(List<double[]> encodings, double[] probe) {
+        double[] distances = new double[encodings.size()];
+        for (int row = 0; row < distances.length; row++) {
+            double sum = 0;
+            for (int i = 0; i < DIMENSION; i++) {
+                double diff = encodings.get(row)[i] - probe[i];
+                sum += diff * diff;
+            }
+            distances[row] = Math.sqrt(sum);
+        }
+        return distances;
+    }
+
+    private static double[] randomVector(Random random, double spread) {
+        double[] vector = new double[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextGaussian() * spread;
+        }
+        return vector;
+    }
+
+    private static double[] perturb(Random random, double[] base, double noise) {
+        double[] vector = new double[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = base[i] + random.nextGaussian() * noise;
+        }
+        return vector;
+    }
+}
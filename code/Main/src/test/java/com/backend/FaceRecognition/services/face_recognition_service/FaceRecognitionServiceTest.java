@@ -0,0 +1,130 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.services.authorization_service.student_service.StudentService;
+import com.backend.FaceRecognition.services.image_request_service.GalleryCache;
+import com.backend.FaceRecognition.services.subject.SubjectService;
+import com.backend.FaceRecognition.utils.FaceRecognitionEndpoints;
+import com.backend.FaceRecognition.utils.ProbeEncodings;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.MultiValueMap;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A lecture-hall photo must reach the sidecar as taken: 12 MP with 30 faces about 60 px wide,
+ * each of which comes back as a match.
+ */
+class FaceRecognitionServiceTest {
+    private static final String EMBED = "http://sidecar/api/v1/embed";
+    private static final int STUDENTS = 30;
+
+    private final SidecarClient sidecarClient = mock(SidecarClient.class);
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final FaceRecognitionService service = new FaceRecognitionService(mock(StudentService.class),
+            mock(SubjectService.class), galleryCache, mock(CampusFaceIndex.class),
+            new FaceRecognitionEndpoints(Map.of("embed", EMBED)), sidecarClient,
+            new ProbeImagePreparer(640, 0.85f), 0.6);
+
+    @Test
+    void classroomPhotoReachesTheSidecarAtFullResolution() throws IOException {
+        Random random = new Random(1);
+        List<EncodedImages> templates = new ArrayList<>();
+        List<double[]> faces = new ArrayList<>();
+        for (int student = 0; student < STUDENTS; student++) {
+            double[] encoding = new double[128];
+            for (int i = 0; i < encoding.length; i++) {
+                encoding[i] = random.nextGaussian() * 0.06;
+            }
+            faces.add(encoding);
+            templates.add(EncodedImages.builder()
+                    .matriculationNumber("STU" + student)
+                    .vector(FaceGallery.toFloats(encoding))
+                    .build());
+        }
+        when(galleryCache.get("CSC101")).thenReturn(new GalleryCache.SubjectGallery("CSC101", 0, FaceGallery.of(templates)));
+        byte[] photo = lectureHall(4032, 3024);
+        AtomicReference<String> url = new AtomicReference<>();
+        AtomicReference<byte[]> sent = new AtomicReference<>();
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(ProbeEncodings.class)))
+                .thenAnswer(invocation -> {
+                    url.set(invocation.getArgument(0));
+                    sent.set(filePart(invocation.getArgument(2)));
+                    return ResponseEntity.ok(new ProbeEncodings("Success", faces));
+                });
+
+        FaceRecognitionService.ClassroomRecognition recognition = service.recognizeClassroom(
+                new MockMultipartFile("image", "hall.jpg", "image/jpeg", photo), "CSC101");
+
+        assertEquals(EMBED + "?full_resolution=true", url.get());
+        assertArrayEquals(photo, sent.get());
+        BufferedImage received = ImageIO.read(new ByteArrayInputStream(sent.get()));
+        assertEquals(4032, received.getWidth());
+        assertEquals(3024, received.getHeight());
+        assertEquals(STUDENTS, recognition.facesDetected());
+        assertEquals(STUDENTS, recognition.matches().size());
+    }
+
+    @Test
+    void singleProbesAreStillDownscaled() throws IOException {
+        AtomicReference<byte[]> sent = new AtomicReference<>();
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(ProbeEncodings.class)))
+                .thenAnswer(invocation -> {
+                    sent.set(filePart(invocation.getArgument(2)));
+                    return ResponseEntity.ok(new ProbeEncodings("Success", List.of()));
+                });
+
+        service.extractProbeEncodings(new MockMultipartFile("image", "probe.jpg", "image/jpeg", lectureHall(4032, 3024)));
+
+        BufferedImage received = ImageIO.read(new ByteArrayInputStream(sent.get()));
+        assertTrue(Math.max(received.getWidth(), received.getHeight()) <= 640);
+    }
+
+    private static byte[] filePart(HttpEntity<?> entity) throws IOException {
+        MultiValueMap<?, ?> body = (MultiValueMap<?, ?>) entity.getBody();
+        return ((Resource) body.get("file").get(0)).getContentAsByteArray();
+    }
+
+    /**
+     * Rows of 60 px "faces" spread over the frame, roughly what the back rows look like from the front.
+     */
+    private static byte[] lectureHall(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(new Color(224, 172, 105));
+        for (int face = 0; face < STUDENTS; face++) {
+            graphics.fillOval(200 + (face % 10) * 360, 600 + (face / 10) * 700, 60, 75);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", bytes);
+        return bytes.toByteArray();
+    }
+}
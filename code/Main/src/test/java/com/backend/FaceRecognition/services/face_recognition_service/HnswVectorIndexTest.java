@@ -0,0 +1,72 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the graph against an exact scan with the production defaults (M=16,
+ * efConstruction=100, efSearch=128) on random 128-d vectors, which are harder to
+ * search than clustered face encodings.
+ */
+class HnswVectorIndexTest {
+    private static final int DIMENSION = 128;
+
+    @Test
+    void recallAtOneAgainstExactSearch() {
+        Random random = new Random(11);
+        HnswVectorIndex hnsw = new HnswVectorIndex(16, 100, 128);
+        ExactVectorIndex exact = new ExactVectorIndex();
+        for (int i = 0; i < 10_000; i++) {
+            float[] vector = randomVector(random);
+            hnsw.add("V" + i, vector);
+            exact.add("V" + i, vector);
+        }
+        int queries = 500;
+        int hits = 0;
+        for (int i = 0; i < queries; i++) {
+            float[] query = randomVector(random);
+            if (hnsw.search(query, 1).get(0).label().equals(exact.search(query, 1).get(0).label())) {
+                hits++;
+            }
+        }
+        double recall = (double) hits / queries;
+        assertTrue(recall >= 0.95, "recall@1 was " + recall);
+    }
+
+    @Test
+    void removedLabelsAreNeverReturned() {
+        Random random = new Random(5);
+        HnswVectorIndex hnsw = new HnswVectorIndex(16, 100, 128);
+        float[] target = randomVector(random);
+        for (int i = 0; i < 3; i++) {
+            hnsw.add("GONE", target);
+        }
+        for (int i = 0; i < 500; i++) {
+            hnsw.add("V" + i, randomVector(random));
+        }
+
+        assertEquals(3, hnsw.remove("GONE"));
+        assertEquals(0, hnsw.remove("GONE"));
+        assertEquals(500, hnsw.size());
+        assertEquals(3, hnsw.removedCount());
+        List<VectorIndex.Neighbour> neighbours = hnsw.search(target, 10);
+        assertEquals(10, neighbours.size());
+        assertTrue(neighbours.stream().noneMatch(neighbour -> neighbour.label().equals("GONE")));
+        int[] live = {0};
+        hnsw.forEach((label, vector) -> live[0]++);
+        assertEquals(500, live[0]);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,149 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The fixture is an 80x40 blue JPEG with a red block in its top-left corner, so each
+ * orientation is recognisable by where the block ends up and which way the frame is turned.
+ */
+class ProbeImagePreparerTest {
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 40;
+
+    private final ProbeImagePreparer preparer = new ProbeImagePreparer(640, 0.95f);
+
+    @Test
+    void orientationOneIsLeftAsIs() throws IOException {
+        BufferedImage upright = prepare(withExif(exif(1, ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(WIDTH, upright.getWidth());
+        assertRed(upright, 0, 0);
+    }
+
+    @Test
+    void orientationThreeIsTurnedHalfway() throws IOException {
+        BufferedImage upright = prepare(withExif(exif(3, ByteOrder.BIG_ENDIAN)));
+        assertEquals(WIDTH, upright.getWidth());
+        assertRed(upright, WIDTH - 1, HEIGHT - 1);
+    }
+
+    @Test
+    void orientationSixIsTurnedClockwise() throws IOException {
+        BufferedImage upright = prepare(withExif(exif(6, ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(HEIGHT, upright.getWidth());
+        assertEquals(WIDTH, upright.getHeight());
+        assertRed(upright, HEIGHT - 1, 0);
+    }
+
+    @Test
+    void orientationEightIsTurnedAnticlockwise() throws IOException {
+        BufferedImage upright = prepare(withExif(exif(8, ByteOrder.BIG_ENDIAN)));
+        assertEquals(HEIGHT, upright.getWidth());
+        assertEquals(WIDTH, upright.getHeight());
+        assertRed(upright, 0, WIDTH - 1);
+    }
+
+    @Test
+    void malformedExifIsIgnored() throws IOException {
+        byte[] valid = exif(6, ByteOrder.LITTLE_ENDIAN);
+        // Too short for a TIFF header
+        assertEquals(0, ProbeImagePreparer.parseExifOrientation(Arrays.copyOf(valid, 13)));
+        // Not an EXIF block, e.g. XMP
+        assertEquals(0, ProbeImagePreparer.parseExifOrientation("http://ns.adobe.com/xap/1.0/\0".getBytes()));
+        // IFD offset pointing past the segment
+        byte[] badOffset = valid.clone();
+        ByteBuffer.wrap(badOffset).order(ByteOrder.LITTLE_ENDIAN).putInt(10, 4096);
+        assertEquals(0, ProbeImagePreparer.parseExifOrientation(badOffset));
+        // Entry count larger than the entries present
+        byte[] truncatedEntries = Arrays.copyOf(valid, valid.length - 10);
+        assertEquals(0, ProbeImagePreparer.parseExifOrientation(truncatedEntries));
+
+        BufferedImage upright = prepare(withExif(badOffset));
+        assertEquals(WIDTH, upright.getWidth());
+        assertRed(upright, 0, 0);
+    }
+
+    @Test
+    void truncatedApp1SegmentFallsBackToTheOriginalUpload() {
+        byte[] jpeg = withExif(exif(6, ByteOrder.LITTLE_ENDIAN));
+        // Cut the file off inside the APP1 segment
+        Resource upload = new ByteArrayResource(Arrays.copyOf(jpeg, 30));
+        assertSame(upload, preparer.prepare(upload));
+    }
+
+    private BufferedImage prepare(byte[] jpeg) throws IOException {
+        Resource prepared = preparer.prepare(new ByteArrayResource(jpeg));
+        return ImageIO.read(new ByteArrayInputStream(prepared.getContentAsByteArray()));
+    }
+
+    private static void assertRed(BufferedImage image, int x, int y) {
+        Color corner = new Color(image.getRGB(x, y));
+        assertTrue(corner.getRed() > 200 && corner.getBlue() < 80, "Expected red at " + x + "," + y + " but was " + corner);
+    }
+
+    /**
+     * "Exif\0\0", a TIFF header and one IFD holding only the orientation tag.
+     */
+    private static byte[] exif(int orientation, ByteOrder order) {
+        ByteBuffer segment = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4).order(order);
+        segment.put("Exif\0\0".getBytes());
+        segment.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        segment.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        segment.putShort((short) 42);
+        segment.putInt(8);
+        segment.putShort((short) 1);
+        segment.putShort((short) 0x0112);
+        segment.putShort((short) 3);
+        segment.putInt(1);
+        segment.putShort((short) orientation);
+        segment.putShort((short) 0);
+        segment.putInt(0);
+        return segment.array();
+    }
+
+    /**
+     * Writes the fixture and splices the APP1 segment in after the JFIF APP0 segment.
+     */
+    private static byte[] withExif(byte[] exif) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 20, 10);
+        graphics.dispose();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", encoded);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] jpeg = encoded.toByteArray();
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write((exif.length + 2) >> 8);
+        out.write((exif.length + 2) & 0xFF);
+        out.write(exif, 0, exif.length);
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+}
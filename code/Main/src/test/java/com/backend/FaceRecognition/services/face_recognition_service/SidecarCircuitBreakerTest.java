@@ -0,0 +1,77 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SidecarCircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong();
+    private final SidecarCircuitBreaker breaker = new SidecarCircuitBreaker(3, 30_000, now::get);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        breaker.tryAcquirePermission();
+        breaker.onSuccess();
+        assertEquals(0, breaker.getConsecutiveFailures());
+        fail(2);
+        assertEquals(SidecarCircuitBreaker.State.CLOSED, breaker.getState());
+        fail(1);
+        assertEquals(SidecarCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void letsOneTrialThroughOnceTheOpenPeriodEnds() {
+        fail(3);
+        advance(29_999);
+        assertFalse(breaker.tryAcquirePermission());
+        advance(1);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(SidecarCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onSuccess();
+        assertEquals(SidecarCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void failedTrialReopensForAFullPeriod() {
+        fail(3);
+        advance(30_000);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+        assertEquals(SidecarCircuitBreaker.State.OPEN, breaker.getState());
+        advance(29_999);
+        assertFalse(breaker.tryAcquirePermission());
+        advance(1);
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasedTrialLetsTheNextCallerTry() {
+        fail(3);
+        advance(30_000);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.release();
+        assertEquals(SidecarCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onFailure();
+        }
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,39 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.SimpleStatusAggregator;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SidecarHealthIndicatorTest {
+    private final SidecarClient sidecarClient = mock(SidecarClient.class);
+    private final SidecarHealthIndicator indicator = new SidecarHealthIndicator(sidecarClient, new SimpleMeterRegistry());
+
+    @Test
+    void reportsUpWhileTheCircuitIsClosed() {
+        when(sidecarClient.circuitState()).thenReturn(SidecarCircuitBreaker.State.CLOSED);
+        assertEquals(Status.UP, indicator.health().getStatus());
+    }
+
+    @Test
+    void reportsDegradedWhileTheCircuitIsOpenOrHalfOpen() {
+        when(sidecarClient.circuitState()).thenReturn(SidecarCircuitBreaker.State.OPEN);
+        assertEquals(SidecarHealthIndicator.DEGRADED, indicator.health().getStatus());
+        when(sidecarClient.circuitState()).thenReturn(SidecarCircuitBreaker.State.HALF_OPEN);
+        assertEquals(SidecarHealthIndicator.DEGRADED, indicator.health().getStatus());
+    }
+
+    @Test
+    void degradedSidecarLeavesAggregateHealthUp() {
+        // Same order as management.endpoint.health.status.order
+        SimpleStatusAggregator aggregator = new SimpleStatusAggregator("down", "out-of-service", "up", "degraded", "unknown");
+        assertEquals(Status.UP, aggregator.getAggregateStatus(Set.of(Status.UP, SidecarHealthIndicator.DEGRADED)));
+        assertEquals(Status.DOWN, aggregator.getAggregateStatus(Set.of(Status.DOWN, SidecarHealthIndicator.DEGRADED)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateConsolidationTest {
+
+    @Test
+    void startsWithTheMedoid() {
+        List<float[]> templates = List.of(
+                new float[]{0, 0}, new float[]{1, 0}, new float[]{0.4f, 0.1f}, new float[]{0, 1});
+        assertEquals(2, TemplateConsolidation.selectExemplars(templates, 1).get(0));
+    }
+
+    @Test
+    void coversEveryPoseBeforeRepeatingOne() {
+        // Three shots each of three poses; three exemplars should take one of each
+        List<float[]> templates = List.of(
+                new float[]{0, 0}, new float[]{0.01f, 0}, new float[]{0, 0.01f},
+                new float[]{5, 0}, new float[]{5.01f, 0}, new float[]{5, 0.01f},
+                new float[]{0, 5}, new float[]{0.01f, 5}, new float[]{0, 5.01f});
+        List<Integer> selected = TemplateConsolidation.selectExemplars(templates, 3);
+        Set<Integer> poses = new HashSet<>();
+        for (int index : selected) {
+            poses.add(index / 3);
+        }
+        assertEquals(Set.of(0, 1, 2), poses);
+    }
+
+    @Test
+    void stopsWhenOnlyDuplicatesAreLeft() {
+        List<float[]> templates = List.of(new float[]{1, 1}, new float[]{1, 1}, new float[]{2, 2}, new float[]{2, 2});
+        List<Integer> selected = TemplateConsolidation.selectExemplars(templates, 4);
+        assertEquals(2, selected.size());
+        assertEquals(2, new HashSet<>(selected).size());
+    }
+
+    @Test
+    void keepsEverythingBelowTheLimitAndNothingAtZero() {
+        List<float[]> templates = List.of(new float[]{0}, new float[]{1}, new float[]{3});
+        List<Integer> selected = TemplateConsolidation.selectExemplars(templates, 5);
+        assertEquals(Set.of(0, 1, 2), new HashSet<>(selected));
+        assertTrue(TemplateConsolidation.selectExemplars(templates, 0).isEmpty());
+        assertTrue(TemplateConsolidation.selectExemplars(List.of(), 3).isEmpty());
+    }
+}
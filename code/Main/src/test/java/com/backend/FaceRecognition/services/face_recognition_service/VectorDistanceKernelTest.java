@@ -0,0 +1,79 @@
+package com.backend.FaceRecognition.services.face_recognition_service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * The SIMD kernel must score exactly like the scalar one on int8 codes and to float rounding
+ * on float rows, including dimensions that leave a tail after the last full vector.
+ */
+class VectorDistanceKernelTest {
+    private static final int[] DIMENSIONS = {1, 3, 7, 8, 9, 15, 16, 17, 31, 33, 64, 127, 128, 129};
+    private static final int ROWS = 37;
+
+    private final DistanceKernel scalar = DistanceKernels.scalar();
+    // Surefire starts the JVM with --add-modules jdk.incubator.vector, so the kernel must load
+    private final DistanceKernel vector = DistanceKernels.vector();
+
+    @Test
+    void floatDistancesMatchScalar() {
+        assertNotNull(vector, "jdk.incubator.vector is not available to the test JVM");
+        Random random = new Random(3);
+        for (int dimension : DIMENSIONS) {
+            float[] probe = new float[dimension];
+            float[] gallery = new float[(ROWS + 2) * dimension];
+            for (int i = 0; i < probe.length; i++) {
+                probe[i] = (float) random.nextGaussian();
+            }
+            for (int i = 0; i < gallery.length; i++) {
+                gallery[i] = (float) random.nextGaussian();
+            }
+            float[] expected = new float[ROWS];
+            float[] actual = new float[ROWS];
+            scalar.squaredDistances(probe, gallery, 2, ROWS, expected);
+            vector.squaredDistances(probe, gallery, 2, ROWS, actual);
+            for (int r = 0; r < ROWS; r++) {
+                assertEquals(expected[r], actual[r], expected[r] * 1e-5, "dimension " + dimension + ", row " + r);
+            }
+        }
+    }
+
+    @Test
+    void byteDistancesMatchScalarExactly() {
+        assertNotNull(vector, "jdk.incubator.vector is not available to the test JVM");
+        Random random = new Random(4);
+        for (int dimension : DIMENSIONS) {
+            byte[] probe = new byte[dimension];
+            byte[] gallery = new byte[(ROWS + 2) * dimension];
+            for (int i = 0; i < probe.length; i++) {
+                probe[i] = (byte) (random.nextInt(255) - 127);
+            }
+            for (int i = 0; i < gallery.length; i++) {
+                gallery[i] = (byte) (random.nextInt(255) - 127);
+            }
+            int[] expected = new int[ROWS];
+            int[] actual = new int[ROWS];
+            scalar.squaredDistances(probe, gallery, 2, ROWS, expected);
+            vector.squaredDistances(probe, gallery, 2, ROWS, actual);
+            assertArrayEquals(expected, actual, "dimension " + dimension);
+        }
+    }
+
+    @Test
+    void extremeCodesDoNotOverflow() {
+        assertNotNull(vector, "jdk.incubator.vector is not available to the test JVM");
+        byte[] probe = new byte[128];
+        byte[] gallery = new byte[128];
+        Arrays.fill(probe, (byte) -127);
+        Arrays.fill(gallery, (byte) 127);
+        int[] out = new int[1];
+        vector.squaredDistances(probe, gallery, 0, 1, out);
+        assertEquals(128 * 254 * 254, out[0]);
+    }
+}
@@ -0,0 +1,199 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.helper.WorkerThreads;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarClient;
+import com.backend.FaceRecognition.services.face_recognition_service.SidecarUnavailableException;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport;
+import com.backend.FaceRecognition.utils.BulkEnrollmentReport.Outcome;
+import com.backend.FaceRecognition.utils.EncodedImage;
+import com.backend.FaceRecognition.utils.FaceRecognitionEndpoints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkEnrollmentServiceTest {
+    private final SidecarClient sidecarClient = mock(SidecarClient.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final EncodedImagesRepository encodedImagesRepository = mock(EncodedImagesRepository.class);
+    private final CampusFaceIndex campusFaceIndex = mock(CampusFaceIndex.class);
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final BulkEnrollmentService service = new BulkEnrollmentService(sidecarClient,
+            new FaceRecognitionEndpoints(Map.of("ip", "http://sidecar/api/v1/image-processing")), studentRepository,
+            encodedImagesRepository, campusFaceIndex, galleryCache, new WorkerThreads(false), 1, 100, 1024, 0.4, 1);
+    // Encoding returned by the sidecar for each file name
+    private final Map<String, double[]> faces = new HashMap<>();
+    private final List<Integer> savedBatches = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    @Test
+    void indexesTemplatesOnlyAfterTheyAreStored() throws IOException {
+        studentsExist("STU1", "STU2");
+        faces.put("STU1.jpg", face(0));
+        faces.put("STU2.jpg", face(1));
+        sidecarEncodes();
+        savesBatches();
+
+        BulkEnrollmentReport report = service.enroll(archive("STU1.jpg", "STU2.jpg", "notes.txt", "STU9.png")).getBody();
+
+        assertEquals(Map.of("STU1.jpg", Outcome.ENROLLED, "STU2.jpg", Outcome.ENROLLED,
+                "notes.txt", Outcome.SKIPPED, "STU9.png", Outcome.STUDENT_NOT_FOUND), outcomes(report));
+        assertEquals(List.of(2), savedBatches);
+        InOrder order = inOrder(encodedImagesRepository, campusFaceIndex, galleryCache);
+        order.verify(encodedImagesRepository).saveAll(anyIterable());
+        order.verify(campusFaceIndex, times(2)).add(any(EncodedImages.class));
+        order.verify(galleryCache).invalidateAll();
+    }
+
+    @Test
+    void failedBatchIsReportedAndNeverIndexed() throws IOException {
+        studentsExist("STU1", "STU2");
+        faces.put("STU1.jpg", face(0));
+        faces.put("STU2.jpg", face(1));
+        sidecarEncodes();
+        when(encodedImagesRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("connection lost"));
+
+        BulkEnrollmentReport report = service.enroll(archive("STU1.jpg", "STU2.jpg")).getBody();
+
+        assertEquals(0, report.getEnrolled());
+        assertEquals(Map.of("STU1.jpg", Outcome.FAILED, "STU2.jpg", Outcome.FAILED), outcomes(report));
+        verify(campusFaceIndex, never()).add(any());
+        verify(galleryCache, never()).invalidateAll();
+    }
+
+    @Test
+    void sameFaceTwiceInOneArchiveIsCaughtBeforeEitherIsStored() throws IOException {
+        studentsExist("STU1", "STU2");
+        faces.put("STU1.jpg", face(0));
+        double[] lookalike = face(0);
+        lookalike[0] += 0.05;
+        faces.put("STU2.jpg", lookalike);
+        sidecarEncodes();
+        savesBatches();
+
+        BulkEnrollmentReport report = service.enroll(archive("STU1.jpg", "STU2.jpg")).getBody();
+
+        assertEquals(Map.of("STU1.jpg", Outcome.ENROLLED, "STU2.jpg", Outcome.DUPLICATE_FACE), outcomes(report));
+        assertEquals(List.of(1), savedBatches);
+    }
+
+    @Test
+    void entryTurnedAwayByTheBulkheadIsRetried() throws IOException {
+        studentsExist("STU1");
+        faces.put("STU1.jpg", face(0));
+        AtomicInteger calls = new AtomicInteger();
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(EncodedImage.class)))
+                .thenAnswer(invocation -> {
+                    if (calls.incrementAndGet() == 1) {
+                        throw new SidecarUnavailableException("Too many concurrent calls");
+                    }
+                    return ResponseEntity.ok(new EncodedImage("Success", face(0)));
+                });
+        savesBatches();
+
+        BulkEnrollmentReport report = service.enroll(archive("STU1.jpg")).getBody();
+
+        assertEquals(Map.of("STU1.jpg", Outcome.ENROLLED), outcomes(report));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void entryIsFailedOnceRetriesRunOut() throws IOException {
+        studentsExist("STU1");
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(EncodedImage.class)))
+                .thenThrow(new SidecarUnavailableException("Circuit open"));
+
+        BulkEnrollmentReport report = service.enroll(archive("STU1.jpg")).getBody();
+
+        assertEquals(Map.of("STU1.jpg", Outcome.FAILED), outcomes(report));
+        verify(sidecarClient, times(3)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(EncodedImage.class));
+        verify(encodedImagesRepository, never()).saveAll(anyIterable());
+    }
+
+    private void studentsExist(String... matriculationNumbers) {
+        for (String matriculationNumber : matriculationNumbers) {
+            when(studentRepository.existsById(matriculationNumber)).thenReturn(true);
+        }
+    }
+
+    private void sidecarEncodes() {
+        when(sidecarClient.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(EncodedImage.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<?> request = invocation.getArgument(2);
+                    Resource file = (Resource) ((MultiValueMap<?, ?>) request.getBody()).get("file").get(0);
+                    return ResponseEntity.ok(new EncodedImage("Success", faces.get(file.getFilename())));
+                });
+    }
+
+    private void savesBatches() {
+        when(encodedImagesRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<EncodedImages> batch = new ArrayList<>();
+            invocation.<Iterable<EncodedImages>>getArgument(0).forEach(batch::add);
+            savedBatches.add(batch.size());
+            return batch;
+        });
+    }
+
+    private static Map<String, Outcome> outcomes(BulkEnrollmentReport report) {
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        report.getEntries().forEach(entry -> outcomes.put(entry.getEntry(), entry.getOutcome()));
+        return outcomes;
+    }
+
+    /**
+     * Faces with different seeds are about 1.4 apart, well past the 0.4 duplicate tolerance.
+     */
+    private static double[] face(int seed) {
+        double[] face = new double[128];
+        face[seed] = 1;
+        return face;
+    }
+
+    private static ByteArrayInputStream archive(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(new byte[]{1, 2, 3});
+                zip.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,84 @@
+package com.backend.FaceRecognition.services.image_request_service;
+
+import com.backend.FaceRecognition.entities.EncodedImages;
+import com.backend.FaceRecognition.repository.EncodedImagesRepository;
+import com.backend.FaceRecognition.repository.StudentRepository;
+import com.backend.FaceRecognition.services.face_recognition_service.CampusFaceIndex;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TemplateConsolidationServiceTest {
+    private final EncodedImagesRepository encodedImagesRepository = mock(EncodedImagesRepository.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final GalleryCache galleryCache = mock(GalleryCache.class);
+    private final CampusFaceIndex campusFaceIndex = mock(CampusFaceIndex.class);
+    private final TemplateConsolidationService service = new TemplateConsolidationService(encodedImagesRepository,
+            studentRepository, galleryCache, campusFaceIndex,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), 3);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deletesTemplatesThatAreNotExemplarsAndDropsThemFromTheIndex() {
+        // Two shots each of three poses
+        List<EncodedImages> images = List.of(
+                template(1, 0, 0), template(2, 0.01f, 0),
+                template(3, 5, 0), template(4, 5.01f, 0),
+                template(5, 0, 5), template(6, 0, 5.01f));
+        when(encodedImagesRepository.findAllByMatriculationNumber("STU1")).thenReturn(images);
+        when(studentRepository.findSubjectCodesByMatriculationNumber("STU1")).thenReturn(List.of("CSC101", "MTH201"));
+
+        assertEquals(3, service.consolidate("STU1"));
+
+        ArgumentCaptor<Iterable<EncodedImages>> deleted = ArgumentCaptor.forClass(Iterable.class);
+        verify(encodedImagesRepository).deleteAllInBatch(deleted.capture());
+        ArgumentCaptor<List<EncodedImages>> kept = ArgumentCaptor.forClass(List.class);
+        verify(campusFaceIndex).replace(any(), kept.capture());
+        Set<Integer> deletedPoses = poses(deleted.getValue());
+        Set<Integer> keptPoses = poses(kept.getValue());
+        assertEquals(3, kept.getValue().size());
+        assertEquals(Set.of(0, 1, 2), keptPoses);
+        assertEquals(Set.of(0, 1, 2), deletedPoses);
+        Set<Integer> ids = new HashSet<>();
+        deleted.getValue().forEach(image -> ids.add(image.getId()));
+        kept.getValue().forEach(image -> ids.add(image.getId()));
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6), ids);
+        verify(galleryCache).invalidate(List.of("CSC101", "MTH201"));
+    }
+
+    @Test
+    void leavesStudentsAtOrBelowTheLimitAlone() {
+        when(encodedImagesRepository.findAllByMatriculationNumber("STU1"))
+                .thenReturn(List.of(template(1, 0, 0), template(2, 1, 0), template(3, 0, 1)));
+
+        assertEquals(0, service.consolidate("STU1"));
+
+        verify(encodedImagesRepository, never()).deleteAllInBatch(any());
+        verify(campusFaceIndex, never()).replace(anyString(), any());
+    }
+
+    private static Set<Integer> poses(Iterable<EncodedImages> images) {
+        Set<Integer> poses = new HashSet<>();
+        images.forEach(image -> poses.add((image.getId() - 1) / 2));
+        return poses;
+    }
+
+    private static EncodedImages template(int id, float x, float y) {
+        EncodedImages image = EncodedImages.builder().matriculationNumber("STU1").vector(new float[]{x, y}).build();
+        image.setId(id);
+        return image;
+    }
+}